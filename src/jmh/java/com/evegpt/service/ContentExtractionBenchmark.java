@@ -0,0 +1,48 @@
+package com.evegpt.service;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** Main-text extraction of a saved wiki article, streamed and through a full DOM. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ContentExtractionBenchmark {
+
+    /** Text budget of the streamed extraction (web.scraping.max-page-chars) */
+    @Param({"2000", "20000"})
+    public int maxChars;
+
+    private String html;
+
+    @Setup
+    public void setUp() {
+        html = Fixtures.read("wiki-rifter.html");
+    }
+
+    /** As done for every fetched article */
+    @Benchmark
+    public String streamExtract() {
+        return PageTextExtractor.extract(html, Fixtures.WIKI_URL, maxChars);
+    }
+
+    /** Baseline: the whole page parsed into a DOM before the content container is selected */
+    @Benchmark
+    public String domExtract() {
+        Document document = Jsoup.parse(html, Fixtures.WIKI_URL);
+        document.select("script, style").remove();
+        Element content = document.selectFirst("#mw-content-text, .article-content, main, .content");
+        return content != null ? content.text() : document.body().text();
+    }
+}
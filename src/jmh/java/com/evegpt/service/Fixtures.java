@@ -0,0 +1,44 @@
+package com.evegpt.service;
+
+import com.evegpt.model.WebSearchResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/** Test fixtures shared by the benchmarks, read from {@code src/test/resources/fixtures}. */
+final class Fixtures {
+
+    static final String WIKI_URL = "https://wiki.eveuniversity.org/Rifter";
+
+    private Fixtures() {
+    }
+
+    static String read(String name) {
+        try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing fixture: " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Three enhanced results, as they reach prompt building after passage ranking. */
+    static List<WebSearchResult> searchResults() {
+        String text = PageTextExtractor.extract(read("wiki-rifter.html"), WIKI_URL, Integer.MAX_VALUE);
+        return List.of(
+                result(WIKI_URL, "Rifter", text.substring(0, 2000), "eve-university"),
+                result("https://wiki.eveuniversity.org/Autocannons", "Autocannons", text.substring(2000, 4000), "eve-university"),
+                result("https://www.eveonline.com/news/view/patch-notes", "Patch notes", text.substring(4000, 5500), "eve-online"));
+    }
+
+    private static WebSearchResult result(String url, String title, String content, String source) {
+        WebSearchResult result = new WebSearchResult(url, title, content, source);
+        result.setRelevanceScore(100);
+        return result;
+    }
+}
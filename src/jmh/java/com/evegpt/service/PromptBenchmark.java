@@ -0,0 +1,83 @@
+package com.evegpt.service;
+
+import com.evegpt.config.OpenAIProperties;
+import com.evegpt.config.UpstreamProperties;
+import com.evegpt.model.ChatResponse;
+import com.evegpt.model.WebSearchResult;
+import com.evegpt.model.ChatRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prompt assembly (with token budgeting), request serialization into a pooled buffer and response
+ * building, per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PromptBenchmark {
+
+    private static final String QUESTION = "What is the best way to fit a Rifter for faction warfare?";
+
+    private OpenAIService openAIService;
+    private OpenAICodec codec;
+    private NettyDataBufferFactory bufferFactory;
+    private CompletionRequest completionRequest;
+    private List<WebSearchResult> searchResults;
+    private CompletionResult completion;
+    private Map<String, Long> stageTimings;
+
+    @Setup
+    public void setUp() {
+        OpenAIProperties properties = new OpenAIProperties();
+        properties.setModel("gpt-4o-mini");
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ObjectMapper objectMapper = new ObjectMapper();
+        codec = new OpenAICodec(objectMapper.getFactory());
+        bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+        openAIService = new OpenAIService(WebClient.create(), objectMapper, properties,
+                new CompletionCache(properties, meterRegistry), new PromptTokenizer(properties), new ChatMetrics(meterRegistry),
+                new UpstreamRegistry(new UpstreamProperties(), meterRegistry), new OpenAIRateLimiter(properties, meterRegistry));
+        searchResults = Fixtures.searchResults();
+        completion = CompletionResult.fresh("For faction warfare, fit three 200mm autocannons...", 2762);
+        completionRequest = openAIService.buildRequest(new ChatRequest(QUESTION),
+                openAIService.buildSourceContext(QUESTION, searchResults, false), Conversation.History.NONE);
+        stageTimings = Map.of("wiki_search", 3L, "official_search", 420L, "page_extraction", 310L, "completion", 1900L);
+    }
+
+    @Benchmark
+    public SourceContext buildSourceContext() {
+        return openAIService.buildSourceContext(QUESTION, searchResults, false);
+    }
+
+    @Benchmark
+    public int serializeRequest() {
+        DataBuffer buffer = codec.write(completionRequest, bufferFactory);
+        try {
+            return buffer.readableByteCount();
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    @Benchmark
+    public ChatResponse buildChatResponse() {
+        return ChatService.buildChatResponse(completion, searchResults, System.currentTimeMillis(), true, stageTimings);
+    }
+}
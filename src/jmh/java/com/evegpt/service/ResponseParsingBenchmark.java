@@ -0,0 +1,70 @@
+package com.evegpt.service;
+
+import com.evegpt.config.OpenAIProperties;
+import com.evegpt.config.UpstreamProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a realistic chat completion payload (content plus usage), delivered in network-sized
+ * chunks, with the streaming codec; {@code treeModel} is the whole-body {@code readTree} baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResponseParsingBenchmark {
+
+    /** Chunk size of the body buffers fed to the parser */
+    private static final int CHUNK_BYTES = 1500;
+
+    private OpenAIService openAIService;
+    private OpenAICodec codec;
+    private ObjectMapper objectMapper;
+    private String completionResponse;
+    private byte[][] chunks;
+
+    @Setup
+    public void setUp() {
+        OpenAIProperties properties = new OpenAIProperties();
+        properties.setModel("gpt-4o-mini");
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        objectMapper = new ObjectMapper();
+        codec = new OpenAICodec(objectMapper.getFactory());
+        openAIService = new OpenAIService(WebClient.create(), objectMapper, properties,
+                new CompletionCache(properties, meterRegistry), new PromptTokenizer(properties), new ChatMetrics(meterRegistry),
+                new UpstreamRegistry(new UpstreamProperties(), meterRegistry), new OpenAIRateLimiter(properties, meterRegistry));
+        completionResponse = Fixtures.read("completion-response.json");
+        byte[] body = completionResponse.getBytes(StandardCharsets.UTF_8);
+        chunks = new byte[(body.length + CHUNK_BYTES - 1) / CHUNK_BYTES][];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = Arrays.copyOfRange(body, i * CHUNK_BYTES, Math.min(body.length, (i + 1) * CHUNK_BYTES));
+        }
+    }
+
+    @Benchmark
+    public CompletionResult parseCompletion() {
+        Flux<DataBuffer> body = Flux.fromArray(chunks).map(DefaultDataBufferFactory.sharedInstance::wrap);
+        return openAIService.toResult(codec.readCompletion(body).block());
+    }
+
+    @Benchmark
+    public String treeModel() throws IOException {
+        return objectMapper.readTree(completionResponse).path("choices").path(0).path("message").path("content").asText();
+    }
+}
@@ -0,0 +1,281 @@
+package com.evegpt.loadtest;
+
+import com.evegpt.EveGptApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load test of {@code /api/v1/chat}. Starts a stub OpenAI endpoint and stub wiki and
+ * official sites, runs the application in-process against them, then keeps {@code c} requests in
+ * flight for each concurrency level and reports throughput, p50/p99 latency and error rate.
+ * Requests answered without sources although web search was asked for are reported as fallbacks.
+ *
+ * <p>Options ({@code --name=value}): {@code levels} (1,4,16,64), {@code duration} (30s), {@code warmup}
+ * (5s), {@code openai-latency} (800ms), {@code chunk-delay} (20ms), {@code site-latency} (50ms),
+ * {@code stream} (false), {@code web-search} (true), {@code caches} (false), {@code prompts} (0, every
+ * request asks a distinct question), {@code admission} (true; false runs every request at once),
+ * {@code log-level} (OFF, for the application's own loggers) and {@code out} (target/loadtest-result.csv).
+ * Requests shed with 429 or 503 are reported apart from errors, and their worker waits for the
+ * {@code Retry-After} delay before sending again, like a well-behaved client.
+ */
+public final class LoadTest {
+
+    private static final String[] QUESTIONS = {
+            "How do I fit a Rifter for faction warfare",
+            "Which autocannons should a new Minmatar pilot train",
+            "What is the best frigate for exploration",
+            "How does armor tanking compare to shield tanking on frigates",
+            "Where can a Rifter pilot find good solo fights",
+    };
+
+    private final Map<String, String> options;
+    private final AtomicLong promptCounter = new AtomicLong();
+
+    private LoadTest(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        new LoadTest(options).run();
+        // Reactor and application threads would otherwise keep the JVM alive
+        System.exit(0);
+    }
+
+    private void run() throws IOException {
+        List<Integer> levels = Arrays.stream(option("levels", "1,4,16,64").split(","))
+                .map(String::trim).map(Integer::parseInt).toList();
+        Duration duration = Duration.parse("PT" + option("duration", "30s"));
+        Duration warmup = Duration.parse("PT" + option("warmup", "5s"));
+        boolean stream = Boolean.parseBoolean(option("stream", "false"));
+        boolean webSearch = Boolean.parseBoolean(option("web-search", "true"));
+        int maxConcurrency = levels.stream().mapToInt(Integer::intValue).max().orElse(1);
+
+        try (StubOpenAIServer openAI = new StubOpenAIServer(millis("openai-latency", "800ms"), millis("chunk-delay", "20ms"));
+             StubSitesServer sites = new StubSitesServer(millis("site-latency", "50ms"));
+             ConfigurableApplicationContext application = startApplication(openAI, sites, maxConcurrency)) {
+            int port = Integer.parseInt(application.getEnvironment().getRequiredProperty("local.server.port"));
+            WebClient client = newClient("http://127.0.0.1:" + port, maxConcurrency);
+
+            System.out.printf(Locale.ROOT, "Warming up for %ds%n", warmup.toSeconds());
+            runLevel(client, Math.min(4, maxConcurrency), warmup, stream, webSearch);
+
+            List<Result> results = new ArrayList<>();
+            System.out.println(Result.HEADER);
+            for (int concurrency : levels) {
+                Result result = runLevel(client, concurrency, duration, stream, webSearch);
+                results.add(result);
+                System.out.println(result.row());
+            }
+            System.out.printf(Locale.ROOT, "Stub upstreams served %d completions and %d pages%n",
+                    openAI.requests(), sites.requests());
+            // Driver, stubs and application together; in-flight requests should not need threads of their own
+            System.out.printf(Locale.ROOT, "Peak JVM threads: %d%n", ManagementFactory.getThreadMXBean().getPeakThreadCount());
+            writeCsv(Path.of(option("out", "target/loadtest-result.csv")), results);
+        }
+    }
+
+    private ConfigurableApplicationContext startApplication(StubOpenAIServer openAI, StubSitesServer sites,
+                                                            int maxConcurrency) {
+        String caches = option("caches", "false");
+        // Devtools would otherwise restart the application by re-running this class's main method
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        // Command-line arguments, so they take precedence over application.properties
+        return new SpringApplicationBuilder(EveGptApplication.class).run(
+                "--server.port=0",
+                "--openai.api.url=" + openAI.url(),
+                "--openai.api.key=loadtest",
+                // The stub speaks plain HTTP/1.1, so unlike HTTP/2 to the real API every request needs a connection
+                "--openai.pool.max-connections=" + Math.max(500, maxConcurrency),
+                // The stub has no account limits to pace against
+                "--openai.rate-limit.enabled=false",
+                "--eve.sources.wiki.base-url=" + sites.wikiBaseUrl(),
+                "--eve.sources.official.base-url=" + sites.officialBaseUrl(),
+                "--eve.sources.official.search-url=" + sites.officialSearchUrl(),
+                "--eve.sources.wiki.index.enabled=" + caches,
+                "--openai.cache.enabled=" + caches,
+                "--chat.semantic-cache.enabled=" + caches,
+                "--web.scraping.cache.search.enabled=" + caches,
+                "--web.scraping.cache.page.enabled=" + caches,
+                "--web.scraping.page-store.enabled=false",
+                "--chat.admission.enabled=" + option("admission", "true"),
+                "--spring.devtools.livereload.enabled=false",
+                "--logging.level.com.evegpt=" + option("log-level", "OFF"),
+                "--spring.main.banner-mode=off");
+    }
+
+    private Result runLevel(WebClient client, int concurrency, Duration duration, boolean stream, boolean webSearch) {
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        AtomicLong errors = new AtomicLong();
+        AtomicLong shed = new AtomicLong();
+        AtomicLong fallbacks = new AtomicLong();
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+
+        Flux.range(0, concurrency)
+                .flatMap(worker -> Mono.defer(() -> {
+                            long requestStart = System.nanoTime();
+                            return send(client, stream, webSearch)
+                                    .doOnNext(searched -> {
+                                        latencies.add(System.nanoTime() - requestStart);
+                                        if (webSearch && !searched) {
+                                            fallbacks.incrementAndGet();
+                                        }
+                                    })
+                                    .onErrorResume(LoadTest::isShed, error -> {
+                                        shed.incrementAndGet();
+                                        return Mono.delay(retryAfter((WebClientResponseException) error)).then(Mono.empty());
+                                    })
+                                    .onErrorResume(error -> {
+                                        errors.incrementAndGet();
+                                        return Mono.empty();
+                                    });
+                        })
+                        .repeat(() -> System.nanoTime() < deadline), concurrency)
+                .blockLast();
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        return new Result(concurrency, sorted, errors.get(), shed.get(), fallbacks.get(), System.nanoTime() - start);
+    }
+
+    private static boolean isShed(Throwable error) {
+        return error instanceof WebClientResponseException response
+                && (response.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS
+                || response.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    private static Duration retryAfter(WebClientResponseException error) {
+        String seconds = error.getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+        return Duration.ofSeconds(seconds != null ? Long.parseLong(seconds) : 1);
+    }
+
+    /** Emits whether web search was performed, or an error for failed requests */
+    private Mono<Boolean> send(WebClient client, boolean stream, boolean webSearch) {
+        Map<String, Object> body = Map.of("prompt", nextPrompt(), "include_web_search", webSearch);
+        WebClient.RequestBodySpec request = client.post()
+                .uri(stream ? "/api/v1/chat/stream" : "/api/v1/chat")
+                .contentType(MediaType.APPLICATION_JSON);
+        if (stream) {
+            return request.accept(MediaType.TEXT_EVENT_STREAM).bodyValue(body).retrieve()
+                    .bodyToFlux(String.class)
+                    .reduce(webSearch, (searched, data) -> data.contains("\"web_search_performed\":false") ? false : searched)
+                    .timeout(Duration.ofSeconds(60));
+        }
+        return request.bodyValue(body).retrieve()
+                .bodyToMono(JsonNode.class)
+                .map(response -> response.path("web_search_performed").asBoolean())
+                .timeout(Duration.ofSeconds(60));
+    }
+
+    private String nextPrompt() {
+        long n = promptCounter.getAndIncrement();
+        int distinct = Integer.parseInt(option("prompts", "0"));
+        long id = distinct > 0 ? n % distinct : n;
+        // The suffix keeps prompts distinct so coalescing and caches only help where asked to
+        return QUESTIONS[(int) (id % QUESTIONS.length)] + " (pilot " + id + ")?";
+    }
+
+    private static WebClient newClient(String baseUrl, int maxConcurrency) {
+        ConnectionProvider connections = ConnectionProvider.builder("loadtest")
+                .maxConnections(maxConcurrency)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        return WebClient.builder()
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)))
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(1024 * 1024))
+                .build();
+    }
+
+    private static void writeCsv(Path path, List<Result> results) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("concurrency,requests,throughput_per_s,p50_ms,p99_ms,max_ms,error_rate,shed_rate,fallbacks");
+        results.forEach(result -> lines.add(result.csv()));
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Files.write(path, lines);
+        System.out.println("Results written to " + path);
+    }
+
+    private String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    private Duration millis(String name, String defaultValue) {
+        String value = option(name, defaultValue);
+        return value.endsWith("ms")
+                ? Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)))
+                : Duration.parse("PT" + value);
+    }
+
+    private record Result(int concurrency, long[] latencies, long errors, long shed, long fallbacks, long elapsedNanos) {
+
+        static final String HEADER = String.format(Locale.ROOT, "%11s %9s %12s %8s %8s %8s %8s %8s %9s",
+                "concurrency", "requests", "throughput/s", "p50 ms", "p99 ms", "max ms", "errors", "shed", "fallbacks");
+
+        long requests() {
+            return latencies.length + errors + shed;
+        }
+
+        double throughput() {
+            return latencies.length / (elapsedNanos / 1e9);
+        }
+
+        double errorRate() {
+            return requests() == 0 ? 0 : (double) errors / requests();
+        }
+
+        double shedRate() {
+            return requests() == 0 ? 0 : (double) shed / requests();
+        }
+
+        long percentileMillis(double percentile) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile * latencies.length) - 1;
+            return latencies[Math.max(0, index)] / 1_000_000;
+        }
+
+        String row() {
+            return String.format(Locale.ROOT, "%11d %9d %12.1f %8d %8d %8d %7.2f%% %7.2f%% %9d", concurrency, requests(),
+                    throughput(), percentileMillis(0.5), percentileMillis(0.99), percentileMillis(1), 100 * errorRate(),
+                    100 * shedRate(), fallbacks);
+        }
+
+        String csv() {
+            return String.format(Locale.ROOT, "%d,%d,%.2f,%d,%d,%d,%.4f,%.4f,%d", concurrency, requests(), throughput(),
+                    percentileMillis(0.5), percentileMillis(0.99), percentileMillis(1), errorRate(), shedRate(), fallbacks);
+        }
+    }
+}
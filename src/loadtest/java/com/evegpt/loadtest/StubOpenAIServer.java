@@ -0,0 +1,140 @@
+package com.evegpt.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OpenAI-compatible chat completions endpoint with configurable latency. Plain requests are answered
+ * after {@code latency}; streaming requests send their first chunk after {@code latency} and the
+ * remaining chunks {@code chunkDelay} apart, followed by a usage chunk when it was asked for.
+ */
+final class StubOpenAIServer implements AutoCloseable {
+
+    private static final String ANSWER = "The Rifter is a Minmatar frigate that excels at close range. "
+            + "Fit three 200mm autocannons, a 5MN microwarpdrive, a warp scrambler and a small armor repairer, "
+            + "and keep transversal high while your autocannons work. Fly safe, pilot.";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Duration latency;
+    private final Duration chunkDelay;
+    private final List<String> chunks;
+    private final AtomicLong requests = new AtomicLong();
+    private final DisposableServer server;
+
+    StubOpenAIServer(Duration latency, Duration chunkDelay) {
+        this.latency = latency;
+        this.chunkDelay = chunkDelay;
+        this.chunks = split(ANSWER);
+        this.server = HttpServer.create()
+                .host("127.0.0.1")
+                .port(0)
+                .route(routes -> routes.post("/v1/chat/completions", this::complete))
+                .bindNow();
+    }
+
+    String url() {
+        return "http://127.0.0.1:" + server.port() + "/v1/chat/completions";
+    }
+
+    long requests() {
+        return requests.get();
+    }
+
+    private Mono<Void> complete(HttpServerRequest request, HttpServerResponse response) {
+        requests.incrementAndGet();
+        return request.receive().aggregate().asString()
+                .map(this::readTree)
+                .flatMap(body -> {
+                    if (!body.path("stream").asBoolean()) {
+                        return response.header("Content-Type", "application/json")
+                                .sendString(Mono.delay(latency).map(tick -> completion(body)))
+                                .then();
+                    }
+                    Flux<String> events = Flux.fromIterable(chunks)
+                            .index()
+                            .concatMap(chunk -> Mono.delay(chunk.getT1() == 0 ? latency : chunkDelay)
+                                    .map(tick -> event(delta(chunk.getT2()))));
+                    if (body.path("stream_options").path("include_usage").asBoolean()) {
+                        events = events.concatWith(Mono.fromSupplier(() -> event(usage(body))));
+                    }
+                    return response.header("Content-Type", "text/event-stream")
+                            .sendString(events.concatWith(Mono.just("data: [DONE]\n\n")))
+                            .then();
+                })
+                .onErrorResume(error -> response.status(HttpResponseStatus.BAD_REQUEST).send());
+    }
+
+    private String completion(JsonNode body) {
+        ObjectNode completion = objectMapper.createObjectNode()
+                .put("id", "chatcmpl-loadtest")
+                .put("object", "chat.completion")
+                .put("model", body.path("model").asText());
+        ObjectNode choice = completion.putArray("choices").addObject();
+        choice.put("index", 0).put("finish_reason", "stop");
+        choice.putObject("message").put("role", "assistant").put("content", ANSWER);
+        completion.set("usage", usage(body).get("usage"));
+        return completion.toString();
+    }
+
+    private ObjectNode delta(String content) {
+        ObjectNode chunk = objectMapper.createObjectNode().put("object", "chat.completion.chunk");
+        chunk.putArray("choices").addObject().put("index", 0).putObject("delta").put("content", content);
+        return chunk;
+    }
+
+    /** Rough usage: a token per four characters of the request, as the real counts are irrelevant here */
+    private ObjectNode usage(JsonNode body) {
+        int promptTokens = body.path("messages").toString().length() / 4;
+        int completionTokens = ANSWER.length() / 4;
+        ObjectNode chunk = objectMapper.createObjectNode();
+        chunk.putArray("choices");
+        chunk.putObject("usage")
+                .put("prompt_tokens", promptTokens)
+                .put("completion_tokens", completionTokens)
+                .put("total_tokens", promptTokens + completionTokens);
+        return chunk;
+    }
+
+    private JsonNode readTree(String body) {
+        try {
+            return objectMapper.readTree(body);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Malformed completion request", e);
+        }
+    }
+
+    private static String event(JsonNode data) {
+        return "data: " + data + "\n\n";
+    }
+
+    /** Word-sized chunks, as the upstream streams roughly a token at a time */
+    private static List<String> split(String text) {
+        List<String> chunks = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= text.length(); i++) {
+            if (i == text.length() || text.charAt(i) == ' ') {
+                chunks.add(text.substring(start, i));
+                start = i;
+            }
+        }
+        return chunks;
+    }
+
+    @Override
+    public void close() {
+        server.disposeNow();
+    }
+}
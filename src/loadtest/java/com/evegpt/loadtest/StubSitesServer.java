@@ -0,0 +1,132 @@
+package com.evegpt.loadtest;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves both scraped sites from one port: the wiki under {@code /wiki} (search page and articles)
+ * and the official site under {@code /official} (a Google-style result page and news articles).
+ * Every article is the saved wiki fixture with its title swapped in, and each response waits
+ * {@code latency} first.
+ */
+final class StubSitesServer implements AutoCloseable {
+
+    private static final List<String> ARTICLES = List.of(
+            "Rifter", "Autocannons", "Frigates", "Faction_Warfare", "Armor_tanking", "Fitting_guide");
+
+    private final String articleHtml = readFixture("wiki-rifter.html");
+    private final Duration latency;
+    private final AtomicLong requests = new AtomicLong();
+    private final DisposableServer server;
+
+    StubSitesServer(Duration latency) {
+        this.latency = latency;
+        this.server = HttpServer.create()
+                .host("127.0.0.1")
+                .port(0)
+                .route(routes -> routes
+                        .get("/wiki/index.php", this::wikiSearch)
+                        .get("/wiki/{title}", (request, response) -> article(request.param("title"), response))
+                        .get("/official/search", this::officialSearch)
+                        .get("/official/news/view/{title}", (request, response) -> article(request.param("title"), response)))
+                .bindNow();
+    }
+
+    String wikiBaseUrl() {
+        return baseUrl() + "/wiki";
+    }
+
+    String officialBaseUrl() {
+        return baseUrl() + "/official";
+    }
+
+    /** The query is appended to this, like the Google site search it replaces */
+    String officialSearchUrl() {
+        return officialBaseUrl() + "/search?q=";
+    }
+
+    long requests() {
+        return requests.get();
+    }
+
+    private String baseUrl() {
+        return "http://127.0.0.1:" + server.port();
+    }
+
+    private Mono<Void> wikiSearch(HttpServerRequest request, HttpServerResponse response) {
+        String query = queryParam(request, "search");
+        StringBuilder html = new StringBuilder("<html><body><ul class=\"mw-search-results\">");
+        for (String title : ARTICLES) {
+            html.append("<li class=\"mw-search-result\"><div class=\"mw-search-result-heading\"><a href=\"/")
+                    .append(title).append("\">").append(title.replace('_', ' ')).append("</a></div>")
+                    .append("<div class=\"searchresult\">").append(title.replace('_', ' '))
+                    .append(" in relation to ").append(escape(query)).append("</div></li>");
+        }
+        return send(response, html.append("</ul></body></html>").toString());
+    }
+
+    private Mono<Void> officialSearch(HttpServerRequest request, HttpServerResponse response) {
+        String query = queryParam(request, "q");
+        StringBuilder html = new StringBuilder("<html><body><div id=\"search\">");
+        for (String title : ARTICLES.subList(0, 3)) {
+            html.append("<div class=\"g\"><a href=\"").append(officialBaseUrl()).append("/news/view/").append(title)
+                    .append("\"><h3>").append(title.replace('_', ' ')).append(" - EVE Online</h3></a>")
+                    .append("<div class=\"VwiC3b\">News about ").append(escape(query)).append("</div></div>");
+        }
+        return send(response, html.append("</div></body></html>").toString());
+    }
+
+    private Mono<Void> article(String title, HttpServerResponse response) {
+        if (!ARTICLES.contains(title)) {
+            return response.status(HttpResponseStatus.NOT_FOUND).send();
+        }
+        String name = title.replace('_', ' ');
+        return send(response, articleHtml.replace("Rifter - EVE University Wiki", name + " - EVE University Wiki")
+                .replace("<h1 id=\"firstHeading\" class=\"firstHeading\">Rifter", "<h1 id=\"firstHeading\" class=\"firstHeading\">" + name));
+    }
+
+    private Mono<Void> send(HttpServerResponse response, String html) {
+        requests.incrementAndGet();
+        return response.header("Content-Type", "text/html; charset=UTF-8")
+                .sendString(Mono.delay(latency).map(tick -> html), StandardCharsets.UTF_8)
+                .then();
+    }
+
+    private static String queryParam(HttpServerRequest request, String name) {
+        List<String> values = new QueryStringDecoder(request.uri()).parameters().get(name);
+        return values != null && !values.isEmpty() ? values.get(0) : "";
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    static String readFixture(String name) {
+        try (InputStream in = StubSitesServer.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing fixture: " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.disposeNow();
+    }
+}
@@ -0,0 +1,183 @@
+package com.evegpt.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Binds chat pipeline properties (chat.*) that sit in front of retrieval and completion.
+ */
+@ConfigurationProperties(prefix = "chat")
+public class ChatProperties {
+
+    /** Semantic answer cache (chat.semantic-cache.*) */
+    private final SemanticCache semanticCache = new SemanticCache();
+
+    /** Retrieved context placed in the prompt (chat.context.*) */
+    private final Context context = new Context();
+
+    /** Batch endpoint limits (chat.batch.*) */
+    private final Batch batch = new Batch();
+
+    /** Admission control in front of the chat pipeline (chat.admission.*) */
+    private final Admission admission = new Admission();
+
+    /** Multi-turn conversation sessions (chat.session.*) */
+    private final Session session = new Session();
+
+    /** Background refresh of caches for frequently asked topics (chat.warmer.*) */
+    private final Warmer warmer = new Warmer();
+
+    public SemanticCache getSemanticCache() { return semanticCache; }
+    public Context getContext() { return context; }
+    public Batch getBatch() { return batch; }
+    public Admission getAdmission() { return admission; }
+    public Session getSession() { return session; }
+    public Warmer getWarmer() { return warmer; }
+
+    public static class SemanticCache {
+        /** Whether answers to similarly worded prompts are reused */
+        private boolean enabled = true;
+        /** Minimum cosine similarity between prompt embeddings for a cached answer to be reused */
+        private Double similarityThreshold = 0.9;
+        /** Maximum number of cached answers; the oldest are evicted first */
+        private Integer maxEntries = 5000;
+        /** Time (ms) a cached answer is reused */
+        private Long ttl = 3_600_000L;
+        /** Dimensions of the hashed prompt embedding */
+        private Integer dimensions = 512;
+        /** Requests with a temperature above this are too random to cache */
+        private Double maxTemperature = 0.7;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public Double getSimilarityThreshold() { return similarityThreshold; }
+        public void setSimilarityThreshold(Double similarityThreshold) { this.similarityThreshold = similarityThreshold; }
+        public Integer getMaxEntries() { return maxEntries; }
+        public void setMaxEntries(Integer maxEntries) { this.maxEntries = maxEntries; }
+        public Long getTtl() { return ttl; }
+        public void setTtl(Long ttl) { this.ttl = ttl; }
+        public Integer getDimensions() { return dimensions; }
+        public void setDimensions(Integer dimensions) { this.dimensions = dimensions; }
+        public Double getMaxTemperature() { return maxTemperature; }
+        public void setMaxTemperature(Double maxTemperature) { this.maxTemperature = maxTemperature; }
+    }
+
+    public static class Context {
+        /** Total characters of retrieved passages placed in the prompt, across all sources */
+        private Integer maxChars = 6000;
+        /** Approximate size of the passages pages are split into before ranking */
+        private Integer passageChars = 500;
+
+        public Integer getMaxChars() { return maxChars; }
+        public void setMaxChars(Integer maxChars) { this.maxChars = maxChars; }
+        public Integer getPassageChars() { return passageChars; }
+        public void setPassageChars(Integer passageChars) { this.passageChars = passageChars; }
+    }
+
+    public static class Batch {
+        /** Maximum prompts accepted in one batch request */
+        private Integer maxPrompts = 50;
+        /** Distinct prompts of a batch answered at the same time */
+        private Integer concurrency = 4;
+
+        public Integer getMaxPrompts() { return maxPrompts; }
+        public void setMaxPrompts(Integer maxPrompts) { this.maxPrompts = maxPrompts; }
+        public Integer getConcurrency() { return concurrency; }
+        public void setConcurrency(Integer concurrency) { this.concurrency = concurrency; }
+    }
+
+    public static class Admission {
+        /** Whether concurrent chats are limited; when disabled every request runs at once */
+        private boolean enabled = true;
+        /** Concurrent chats allowed at startup, before the limit adapts */
+        private Integer initialLimit = 50;
+        /** Lowest the limit backs off to */
+        private Integer minLimit = 8;
+        /** Highest the limit grows to */
+        private Integer maxLimit = 500;
+        /** Factor the limit is multiplied by when a chat fails upstream or is too slow */
+        private Double backoffRatio = 0.9;
+        /** Chats slower than this (ms, to the first streamed event) count as overload */
+        private Long latencyThreshold = 20_000L;
+        /** Chats waiting for a slot; further requests are rejected with 429 */
+        private Integer maxQueueSize = 200;
+        /** Time (ms) a chat may wait for a slot before it is rejected with 503 */
+        private Long maxQueueTime = 5_000L;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public Integer getInitialLimit() { return initialLimit; }
+        public void setInitialLimit(Integer initialLimit) { this.initialLimit = initialLimit; }
+        public Integer getMinLimit() { return minLimit; }
+        public void setMinLimit(Integer minLimit) { this.minLimit = minLimit; }
+        public Integer getMaxLimit() { return maxLimit; }
+        public void setMaxLimit(Integer maxLimit) { this.maxLimit = maxLimit; }
+        public Double getBackoffRatio() { return backoffRatio; }
+        public void setBackoffRatio(Double backoffRatio) { this.backoffRatio = backoffRatio; }
+        public Long getLatencyThreshold() { return latencyThreshold; }
+        public void setLatencyThreshold(Long latencyThreshold) { this.latencyThreshold = latencyThreshold; }
+        public Integer getMaxQueueSize() { return maxQueueSize; }
+        public void setMaxQueueSize(Integer maxQueueSize) { this.maxQueueSize = maxQueueSize; }
+        public Long getMaxQueueTime() { return maxQueueTime; }
+        public void setMaxQueueTime(Long maxQueueTime) { this.maxQueueTime = maxQueueTime; }
+    }
+
+    public static class Session {
+        /** Whether requests with a session_id take part in a conversation; when disabled the id is ignored */
+        private boolean enabled = true;
+        /** Maximum number of sessions kept */
+        private Integer maxEntries = 10_000;
+        /** Approximate memory budget (bytes) for all sessions; the least recently used are evicted */
+        private Long maxWeightBytes = 64L * 1024 * 1024;
+        /** Time (ms) a session is kept after its last turn */
+        private Long ttl = 1_800_000L;
+        /** Share (0-1) of a follow-up's terms one pinned passage must contain for the session's sources to be reused */
+        private Double followUpCoverage = 0.75;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public Integer getMaxEntries() { return maxEntries; }
+        public void setMaxEntries(Integer maxEntries) { this.maxEntries = maxEntries; }
+        public Long getMaxWeightBytes() { return maxWeightBytes; }
+        public void setMaxWeightBytes(Long maxWeightBytes) { this.maxWeightBytes = maxWeightBytes; }
+        public Long getTtl() { return ttl; }
+        public void setTtl(Long ttl) { this.ttl = ttl; }
+        public Double getFollowUpCoverage() { return followUpCoverage; }
+        public void setFollowUpCoverage(Double followUpCoverage) { this.followUpCoverage = followUpCoverage; }
+    }
+
+    public static class Warmer {
+        /** Whether popular topics are tracked and their searches and pages refreshed in the background */
+        private boolean enabled = true;
+        /** Time (ms) between warming runs */
+        private Long interval = 60_000L;
+        /** Number of most frequent topics tracked */
+        private Integer topK = 50;
+        /** Estimated asks (decayed over time) before a topic is warmed */
+        private Integer minCount = 3;
+        /** Upstream loads (searches and pages) one run may make */
+        private Integer maxRequests = 30;
+        /** Pages warmed per topic, from its first search results */
+        private Integer pagesPerTopic = 3;
+        /** A run is skipped while more chats than this are running or queued */
+        private Integer maxInFlight = 2;
+        /** Counters per row of the frequency sketch; counts halve after ten times this many queries */
+        private Integer sketchWidth = 4096;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public Long getInterval() { return interval; }
+        public void setInterval(Long interval) { this.interval = interval; }
+        public Integer getTopK() { return topK; }
+        public void setTopK(Integer topK) { this.topK = topK; }
+        public Integer getMinCount() { return minCount; }
+        public void setMinCount(Integer minCount) { this.minCount = minCount; }
+        public Integer getMaxRequests() { return maxRequests; }
+        public void setMaxRequests(Integer maxRequests) { this.maxRequests = maxRequests; }
+        public Integer getPagesPerTopic() { return pagesPerTopic; }
+        public void setPagesPerTopic(Integer pagesPerTopic) { this.pagesPerTopic = pagesPerTopic; }
+        public Integer getMaxInFlight() { return maxInFlight; }
+        public void setMaxInFlight(Integer maxInFlight) { this.maxInFlight = maxInFlight; }
+        public Integer getSketchWidth() { return sketchWidth; }
+        public void setSketchWidth(Integer sketchWidth) { this.sketchWidth = sketchWidth; }
+    }
+}
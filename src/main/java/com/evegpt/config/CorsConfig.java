@@ -1,15 +1,15 @@
 package com.evegpt.config;
 
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.servlet.config.annotation.CorsRegistry;
-import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.reactive.config.CorsRegistry;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
 
 /**
- * Global CORS configuration for the Spring MVC application.
+ * Global CORS configuration for the WebFlux application.
  * Allows the local frontend (Vite dev server) to access the API without CORS errors.
  */
 @Configuration
-public class CorsConfig implements WebMvcConfigurer {
+public class CorsConfig implements WebFluxConfigurer {
 
     @Override
     public void addCorsMappings(CorsRegistry registry) {
@@ -2,28 +2,96 @@ package com.evegpt.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.List;
+
 @ConfigurationProperties(prefix = "eve.sources")
 public class EveSourcesProperties {
 
     private Wiki wiki = new Wiki();
     private Official official = new Official();
+    /** CCP's Static Data Export loaded from disk (eve.sources.sde.*) */
+    private Sde sde = new Sde();
 
     public Wiki getWiki() { return wiki; }
     public void setWiki(Wiki wiki) { this.wiki = wiki; }
     public Official getOfficial() { return official; }
     public void setOfficial(Official official) { this.official = official; }
+    public Sde getSde() { return sde; }
+    public void setSde(Sde sde) { this.sde = sde; }
 
     public static class Wiki {
         /** Base URL for EVE University Wiki */
         private String baseUrl;
+        /** Local full-text index of wiki articles (eve.sources.wiki.index.*) */
+        private Index index = new Index();
         public String getBaseUrl() { return baseUrl; }
         public void setBaseUrl(String baseUrl) { this.baseUrl = baseUrl; }
+        public Index getIndex() { return index; }
+        public void setIndex(Index index) { this.index = index; }
+    }
+
+    public static class Index {
+        /** Whether wiki searches are answered from the local index before falling back to live search */
+        private boolean enabled = true;
+        /** Optional MediaWiki XML export (.xml or .xml.gz) loaded into the index at startup */
+        private String dumpPath;
+        /** Maximum number of articles returned per search */
+        private Integer maxResults = 5;
+        /** Live search is used when the index finds fewer articles than this */
+        private Integer minResults = 3;
+        /** Fraction of the distinct query terms an article must contain to be returned */
+        private Double minTermCoverage = 0.5;
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public String getDumpPath() { return dumpPath; }
+        public void setDumpPath(String dumpPath) { this.dumpPath = dumpPath; }
+        public Integer getMaxResults() { return maxResults; }
+        public void setMaxResults(Integer maxResults) { this.maxResults = maxResults; }
+        public Integer getMinResults() { return minResults; }
+        public void setMinResults(Integer minResults) { this.minResults = minResults; }
+        public Double getMinTermCoverage() { return minTermCoverage; }
+        public void setMinTermCoverage(Double minTermCoverage) { this.minTermCoverage = minTermCoverage; }
     }
 
     public static class Official {
-        /** Base URL for official EVE Online site */
+        /** Base URL for official EVE Online site; search results are kept only from its domain */
         private String baseUrl;
+        /** Site search used for the official site; the URL-encoded query is appended */
+        private String searchUrl = "https://www.google.com/search?q=site:eveonline.com+";
         public String getBaseUrl() { return baseUrl; }
         public void setBaseUrl(String baseUrl) { this.baseUrl = baseUrl; }
+        public String getSearchUrl() { return searchUrl; }
+        public void setSearchUrl(String searchUrl) { this.searchUrl = searchUrl; }
+    }
+
+    public static class Sde {
+        /** Directory holding the JSONL export (types, groups, categories, dogmaAttributes, typeDogma); unset disables static data */
+        private String directory;
+        /** Categories whose published types are indexed: ships, modules, charges, skills and drones */
+        private List<Integer> categories = List.of(6, 7, 8, 16, 18);
+        /** Language of the localized names */
+        private String language = "en";
+        /** Maximum number of items recognised in one question */
+        private Integer maxEntities = 3;
+        /** Whether misspelt item names are matched within a small edit distance */
+        private boolean fuzzyMatching = true;
+        /** Whether questions that only ask for static values are answered without a completion */
+        private boolean directAnswers = true;
+        /** Attributes listed per item besides the grouped ones (slots, fitting, skills...) */
+        private Integer maxAttributes = 25;
+        public String getDirectory() { return directory; }
+        public void setDirectory(String directory) { this.directory = directory; }
+        public List<Integer> getCategories() { return categories; }
+        public void setCategories(List<Integer> categories) { this.categories = categories; }
+        public String getLanguage() { return language; }
+        public void setLanguage(String language) { this.language = language; }
+        public Integer getMaxEntities() { return maxEntities; }
+        public void setMaxEntities(Integer maxEntities) { this.maxEntities = maxEntities; }
+        public boolean isFuzzyMatching() { return fuzzyMatching; }
+        public void setFuzzyMatching(boolean fuzzyMatching) { this.fuzzyMatching = fuzzyMatching; }
+        public boolean isDirectAnswers() { return directAnswers; }
+        public void setDirectAnswers(boolean directAnswers) { this.directAnswers = directAnswers; }
+        public Integer getMaxAttributes() { return maxAttributes; }
+        public void setMaxAttributes(Integer maxAttributes) { this.maxAttributes = maxAttributes; }
     }
 }
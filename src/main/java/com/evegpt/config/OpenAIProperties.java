@@ -13,8 +13,20 @@ public class OpenAIProperties {
     private final Api api = new Api();
     /** Model name (openai.model) */
     private String model;
+    /** Exact-match completion cache (openai.cache.*) */
+    private final Cache cache = new Cache();
+    /** Prompt assembly limits (openai.prompt.*) */
+    private final Prompt prompt = new Prompt();
+    /** Connection pool for API calls (openai.pool.*) */
+    private final Pool pool = new Pool();
+    /** Client-side request and token rate limits (openai.rate-limit.*) */
+    private final RateLimit rateLimit = new RateLimit();
 
     public Api getApi() { return api; }
+    public Cache getCache() { return cache; }
+    public Prompt getPrompt() { return prompt; }
+    public Pool getPool() { return pool; }
+    public RateLimit getRateLimit() { return rateLimit; }
     public String getModel() { return model; }
     public void setModel(String model) { this.model = model; }
 
@@ -23,10 +35,106 @@ public class OpenAIProperties {
         private String key;
         /** Endpoint URL (openai.api.url) */
         private String url;
+        /** Longest time (ms) to wait for a completion, or between streamed chunks (openai.api.timeout) */
+        private Integer timeout = 60000;
+        /** Retries of a failed completion: connection errors, timeouts, 429 and 5xx (openai.api.max-retries) */
+        private Integer maxRetries = 2;
 
         public String getKey() { return key; }
         public void setKey(String key) { this.key = key; }
         public String getUrl() { return url; }
         public void setUrl(String url) { this.url = url; }
+        public Integer getTimeout() { return timeout; }
+        public void setTimeout(Integer timeout) { this.timeout = timeout; }
+        public Integer getMaxRetries() { return maxRetries; }
+        public void setMaxRetries(Integer maxRetries) { this.maxRetries = maxRetries; }
+    }
+
+    public static class Cache {
+        /** Whether identical completion requests are answered from the cache */
+        private boolean enabled = true;
+        /** Time (ms) a cached completion is reused */
+        private Long ttl = 3_600_000L;
+        /** Maximum number of cached completions */
+        private Integer maxEntries = 10_000;
+        /** Upper bound (bytes, estimated) for all cached completions */
+        private Long maxWeightBytes = 64L * 1024 * 1024;
+        /** Requests with a temperature above this are too random to cache */
+        private Double maxTemperature = 0.7;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public Long getTtl() { return ttl; }
+        public void setTtl(Long ttl) { this.ttl = ttl; }
+        public Integer getMaxEntries() { return maxEntries; }
+        public void setMaxEntries(Integer maxEntries) { this.maxEntries = maxEntries; }
+        public Long getMaxWeightBytes() { return maxWeightBytes; }
+        public void setMaxWeightBytes(Long maxWeightBytes) { this.maxWeightBytes = maxWeightBytes; }
+        public Double getMaxTemperature() { return maxTemperature; }
+        public void setMaxTemperature(Double maxTemperature) { this.maxTemperature = maxTemperature; }
+    }
+
+    public static class Prompt {
+        /** Input tokens (system prompt, sources, conversation and question) a request may use; sources are cut to fit */
+        private Integer maxInputTokens = 6000;
+        /** Sources are not added once fewer tokens than this remain */
+        private Integer minSourceTokens = 64;
+        /** Tokens of earlier turns a session keeps verbatim; older turns are folded into its summary */
+        private Integer historyMaxTokens = 2000;
+        /** Maximum length (tokens) of a session's summary of its older turns */
+        private Integer summaryMaxTokens = 300;
+
+        public Integer getMaxInputTokens() { return maxInputTokens; }
+        public void setMaxInputTokens(Integer maxInputTokens) { this.maxInputTokens = maxInputTokens; }
+        public Integer getMinSourceTokens() { return minSourceTokens; }
+        public void setMinSourceTokens(Integer minSourceTokens) { this.minSourceTokens = minSourceTokens; }
+        public Integer getHistoryMaxTokens() { return historyMaxTokens; }
+        public void setHistoryMaxTokens(Integer historyMaxTokens) { this.historyMaxTokens = historyMaxTokens; }
+        public Integer getSummaryMaxTokens() { return summaryMaxTokens; }
+        public void setSummaryMaxTokens(Integer summaryMaxTokens) { this.summaryMaxTokens = summaryMaxTokens; }
+    }
+
+    public static class Pool {
+        /** Maximum open connections; HTTP/2 connections carry many concurrent requests each */
+        private Integer maxConnections = 500;
+        /** Maximum requests waiting for a pooled connection */
+        private Integer pendingAcquireMaxCount = 10_000;
+        /** Time (ms) a request may wait for a pooled connection */
+        private Integer pendingAcquireTimeout = 30000;
+        /** Time (ms) after which an idle connection is closed */
+        private Integer maxIdleTime = 30000;
+        /** Timeout (ms) for establishing a TCP connection */
+        private Integer connectTimeout = 5000;
+
+        public Integer getMaxConnections() { return maxConnections; }
+        public void setMaxConnections(Integer maxConnections) { this.maxConnections = maxConnections; }
+        public Integer getPendingAcquireMaxCount() { return pendingAcquireMaxCount; }
+        public void setPendingAcquireMaxCount(Integer pendingAcquireMaxCount) { this.pendingAcquireMaxCount = pendingAcquireMaxCount; }
+        public Integer getPendingAcquireTimeout() { return pendingAcquireTimeout; }
+        public void setPendingAcquireTimeout(Integer pendingAcquireTimeout) { this.pendingAcquireTimeout = pendingAcquireTimeout; }
+        public Integer getMaxIdleTime() { return maxIdleTime; }
+        public void setMaxIdleTime(Integer maxIdleTime) { this.maxIdleTime = maxIdleTime; }
+        public Integer getConnectTimeout() { return connectTimeout; }
+        public void setConnectTimeout(Integer connectTimeout) { this.connectTimeout = connectTimeout; }
+    }
+
+    public static class RateLimit {
+        /** Whether completions are paced to stay within the account's limits */
+        private boolean enabled = true;
+        /** Requests per minute; replaced by x-ratelimit-limit-requests once the API reports it */
+        private Integer requestsPerMinute = 500;
+        /** Tokens per minute; replaced by x-ratelimit-limit-tokens once the API reports it */
+        private Integer tokensPerMinute = 200_000;
+        /** Longest time (ms) a completion may wait for budget before it is rejected */
+        private Long maxWait = 30_000L;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public Integer getRequestsPerMinute() { return requestsPerMinute; }
+        public void setRequestsPerMinute(Integer requestsPerMinute) { this.requestsPerMinute = requestsPerMinute; }
+        public Integer getTokensPerMinute() { return tokensPerMinute; }
+        public void setTokensPerMinute(Integer tokensPerMinute) { this.tokensPerMinute = tokensPerMinute; }
+        public Long getMaxWait() { return maxWait; }
+        public void setMaxWait(Long maxWait) { this.maxWait = maxWait; }
     }
 }
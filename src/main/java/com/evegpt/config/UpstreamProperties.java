@@ -0,0 +1,79 @@
+package com.evegpt.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Binds upstream resilience properties (upstreams.*): latency-based timeouts, hedged page fetches
+ * and per-upstream circuit breakers. Upstreams are the scraped hosts and the OpenAI API.
+ */
+@ConfigurationProperties(prefix = "upstreams")
+public class UpstreamProperties {
+
+    /** Recent call latencies kept per upstream for percentiles */
+    private Integer latencyWindow = 200;
+    /** Calls observed before timeouts and hedging adapt; until then the configured maximum applies */
+    private Integer minSamples = 20;
+    /** Timeouts are this multiple of the observed p99 latency, capped by the upstream's configured timeout */
+    private Double timeoutMultiplier = 1.5;
+    /** Lower bound (ms) for latency-based timeouts */
+    private Long minTimeout = 1000L;
+    /** Hedged page fetches (upstreams.hedge.*) */
+    private final Hedge hedge = new Hedge();
+    /** Circuit breakers (upstreams.breaker.*) */
+    private final Breaker breaker = new Breaker();
+
+    public Integer getLatencyWindow() { return latencyWindow; }
+    public void setLatencyWindow(Integer latencyWindow) { this.latencyWindow = latencyWindow; }
+    public Integer getMinSamples() { return minSamples; }
+    public void setMinSamples(Integer minSamples) { this.minSamples = minSamples; }
+    public Double getTimeoutMultiplier() { return timeoutMultiplier; }
+    public void setTimeoutMultiplier(Double timeoutMultiplier) { this.timeoutMultiplier = timeoutMultiplier; }
+    public Long getMinTimeout() { return minTimeout; }
+    public void setMinTimeout(Long minTimeout) { this.minTimeout = minTimeout; }
+    public Hedge getHedge() { return hedge; }
+    public Breaker getBreaker() { return breaker; }
+
+    public static class Hedge {
+        /** Whether a slow page fetch gets a second, concurrent request */
+        private boolean enabled = true;
+        /** A second request is sent once the first has run longer than this latency percentile */
+        private Double percentile = 0.95;
+        /** Most hedged requests as a fraction of all calls, so a slow host is not sent twice the load */
+        private Double maxRatio = 0.1;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public Double getPercentile() { return percentile; }
+        public void setPercentile(Double percentile) { this.percentile = percentile; }
+        public Double getMaxRatio() { return maxRatio; }
+        public void setMaxRatio(Double maxRatio) { this.maxRatio = maxRatio; }
+    }
+
+    public static class Breaker {
+        /** Whether failing upstreams are skipped until they recover */
+        private boolean enabled = true;
+        /** Recent calls the failure rate is computed over */
+        private Integer windowSize = 20;
+        /** Calls needed in the window before the breaker may open */
+        private Integer minCalls = 10;
+        /** Failure rate (0-1) at which the breaker opens */
+        private Double failureRateThreshold = 0.5;
+        /** Time (ms) calls are rejected before trial calls are let through */
+        private Long openDuration = 30_000L;
+        /** Successful trial calls needed to close the breaker again */
+        private Integer halfOpenCalls = 2;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public Integer getWindowSize() { return windowSize; }
+        public void setWindowSize(Integer windowSize) { this.windowSize = windowSize; }
+        public Integer getMinCalls() { return minCalls; }
+        public void setMinCalls(Integer minCalls) { this.minCalls = minCalls; }
+        public Double getFailureRateThreshold() { return failureRateThreshold; }
+        public void setFailureRateThreshold(Double failureRateThreshold) { this.failureRateThreshold = failureRateThreshold; }
+        public Long getOpenDuration() { return openDuration; }
+        public void setOpenDuration(Long openDuration) { this.openDuration = openDuration; }
+        public Integer getHalfOpenCalls() { return halfOpenCalls; }
+        public void setHalfOpenCalls(Integer halfOpenCalls) { this.halfOpenCalls = halfOpenCalls; }
+    }
+}
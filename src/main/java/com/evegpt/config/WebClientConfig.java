@@ -1,8 +1,18 @@
 package com.evegpt.config;
 
+import io.netty.channel.ChannelOption;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
 
 @Configuration
 public class WebClientConfig {
@@ -11,4 +21,91 @@ public class WebClientConfig {
     WebClient.Builder webClientBuilder() {
         return WebClient.builder();
     }
-}
\ No newline at end of file
+
+    /**
+     * Connection pool for page fetches. Each configured EVE source host gets its own slice of the
+     * pool so a slow host cannot take every connection; other hosts (search engines, linked pages)
+     * share the global limits.
+     */
+    @Bean(destroyMethod = "dispose")
+    ConnectionProvider scrapingConnectionProvider(WebScrapingProperties webScrapingProperties,
+                                                  EveSourcesProperties eveSourcesProperties) {
+        WebScrapingProperties.Pool pool = webScrapingProperties.getPool();
+        ConnectionProvider.Builder builder = ConnectionProvider.builder("scraping")
+                .maxConnections(pool.getMaxConnections())
+                .pendingAcquireMaxCount(pool.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(Duration.ofMillis(pool.getPendingAcquireTimeout()))
+                .maxIdleTime(Duration.ofMillis(pool.getMaxIdleTime()))
+                .maxLifeTime(Duration.ofMillis(pool.getMaxLifeTime()))
+                .evictInBackground(Duration.ofSeconds(30))
+                .metrics(true);
+
+        for (String baseUrl : List.of(eveSourcesProperties.getWiki().getBaseUrl(),
+                                      eveSourcesProperties.getOfficial().getBaseUrl())) {
+            URI uri = URI.create(baseUrl);
+            int port = uri.getPort() != -1 ? uri.getPort() : ("https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80);
+            builder.forRemoteHost(InetSocketAddress.createUnresolved(uri.getHost(), port), host -> host
+                    .maxConnections(pool.getMaxConnectionsPerHost())
+                    .pendingAcquireMaxCount(pool.getPendingAcquireMaxCount())
+                    .pendingAcquireTimeout(Duration.ofMillis(pool.getPendingAcquireTimeout()))
+                    .maxIdleTime(Duration.ofMillis(pool.getMaxIdleTime()))
+                    .maxLifeTime(Duration.ofMillis(pool.getMaxLifeTime())));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Non-blocking client for fetching HTML. Keeps connections alive between fetches, negotiates
+     * HTTP/2 over TLS where the server offers it and requests compressed bodies (gzip/deflate, plus
+     * brotli when a brotli codec is on the classpath).
+     */
+    @Bean
+    WebClient scrapingWebClient(WebClient.Builder webClientBuilder, ConnectionProvider scrapingConnectionProvider,
+                                WebScrapingProperties webScrapingProperties) {
+        HttpClient httpClient = HttpClient.create(scrapingConnectionProvider)
+                .protocol(HttpProtocol.H2, HttpProtocol.HTTP11)
+                .compress(true)
+                .followRedirect(true)
+                .responseTimeout(Duration.ofMillis(webScrapingProperties.getTimeout()))
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, webScrapingProperties.getPool().getConnectTimeout());
+
+        return webClientBuilder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(webScrapingProperties.getMaxPageBytes()))
+                .build();
+    }
+
+    /**
+     * Connection pool for the OpenAI API, sized for many concurrent long-running completions and
+     * streams rather than Reactor Netty's small default pool.
+     */
+    @Bean(destroyMethod = "dispose")
+    ConnectionProvider openAIConnectionProvider(OpenAIProperties openAIProperties) {
+        OpenAIProperties.Pool pool = openAIProperties.getPool();
+        return ConnectionProvider.builder("openai")
+                .maxConnections(pool.getMaxConnections())
+                .pendingAcquireMaxCount(pool.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(Duration.ofMillis(pool.getPendingAcquireTimeout()))
+                .maxIdleTime(Duration.ofMillis(pool.getMaxIdleTime()))
+                .evictInBackground(Duration.ofSeconds(30))
+                .metrics(true)
+                .build();
+    }
+
+    /**
+     * Client for the OpenAI API on its own pool. HTTP/2 is negotiated over TLS so concurrent
+     * requests share connections.
+     */
+    @Bean
+    WebClient openAIWebClient(WebClient.Builder webClientBuilder, ConnectionProvider openAIConnectionProvider,
+                              OpenAIProperties openAIProperties) {
+        HttpClient httpClient = HttpClient.create(openAIConnectionProvider)
+                .protocol(HttpProtocol.H2, HttpProtocol.HTTP11)
+                .compress(true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, openAIProperties.getPool().getConnectTimeout());
+
+        return webClientBuilder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+}
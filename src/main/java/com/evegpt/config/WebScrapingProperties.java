@@ -4,13 +4,162 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 
 @ConfigurationProperties(prefix = "web.scraping")
 public class WebScrapingProperties {
-    /** Timeout (ms) for web scraping operations */
+    /** Longest time (ms) a page fetch may take; per-host timeouts adapt below it (upstreams.*) */
     private Integer timeout = 30000;
     /** User-Agent header sent with scraping requests */
     private String userAgent;
+    /** Deadline (ms) for each search stage (wiki, official site) before it is dropped from the result */
+    private Integer searchTimeout = 8000;
+    /** Deadline (ms) for extracting a single page before its search snippet is used instead */
+    private Integer extractTimeout = 8000;
+    /** Largest search page body (bytes) buffered for parsing; bigger pages are rejected */
+    private Integer maxPageBytes = 2 * 1024 * 1024;
+    /** Text (characters) extracted from an article before the rest of its body is left unread */
+    private Integer maxPageChars = 20000;
+    /** Execution model and limits for blocking scrape calls (web.scraping.executor.*) */
+    private final Executor executor = new Executor();
+    /** HTTP connection pool used for fetching pages (web.scraping.pool.*) */
+    private final Pool pool = new Pool();
+    /** In-memory caches for search results and page content (web.scraping.cache.*) */
+    private final Cache cache = new Cache();
+    /** Durable on-disk store for extracted page text (web.scraping.page-store.*) */
+    private final PageStore pageStore = new PageStore();
 
     public Integer getTimeout() { return timeout; }
     public void setTimeout(Integer timeout) { this.timeout = timeout; }
     public String getUserAgent() { return userAgent; }
     public void setUserAgent(String userAgent) { this.userAgent = userAgent; }
-}
+    public Integer getSearchTimeout() { return searchTimeout; }
+    public void setSearchTimeout(Integer searchTimeout) { this.searchTimeout = searchTimeout; }
+    public Integer getExtractTimeout() { return extractTimeout; }
+    public void setExtractTimeout(Integer extractTimeout) { this.extractTimeout = extractTimeout; }
+    public Integer getMaxPageBytes() { return maxPageBytes; }
+    public void setMaxPageBytes(Integer maxPageBytes) { this.maxPageBytes = maxPageBytes; }
+    public Integer getMaxPageChars() { return maxPageChars; }
+    public void setMaxPageChars(Integer maxPageChars) { this.maxPageChars = maxPageChars; }
+    public Executor getExecutor() { return executor; }
+    public Pool getPool() { return pool; }
+    public Cache getCache() { return cache; }
+    public PageStore getPageStore() { return pageStore; }
+
+    public enum ExecutionMode {
+        /** One Java 21 virtual thread per scrape */
+        VIRTUAL_THREADS,
+        /** Dedicated bounded elastic Reactor scheduler */
+        BOUNDED_ELASTIC
+    }
+
+    public static class Executor {
+        /** Threading model used to run blocking scrape calls */
+        private ExecutionMode mode = ExecutionMode.VIRTUAL_THREADS;
+        /** Maximum number of scrapes running at the same time */
+        private Integer maxConcurrency = 32;
+        /** Maximum number of scrapes waiting for a slot before new ones are rejected */
+        private Integer maxQueued = 256;
+
+        public ExecutionMode getMode() { return mode; }
+        public void setMode(ExecutionMode mode) { this.mode = mode; }
+        public Integer getMaxConcurrency() { return maxConcurrency; }
+        public void setMaxConcurrency(Integer maxConcurrency) { this.maxConcurrency = maxConcurrency; }
+        public Integer getMaxQueued() { return maxQueued; }
+        public void setMaxQueued(Integer maxQueued) { this.maxQueued = maxQueued; }
+    }
+
+    public static class Pool {
+        /** Maximum open connections across all hosts */
+        private Integer maxConnections = 64;
+        /** Maximum open connections to each configured EVE source host */
+        private Integer maxConnectionsPerHost = 16;
+        /** Maximum requests waiting for a pooled connection */
+        private Integer pendingAcquireMaxCount = 256;
+        /** Time (ms) a request may wait for a pooled connection */
+        private Integer pendingAcquireTimeout = 5000;
+        /** Time (ms) after which an idle connection is closed */
+        private Integer maxIdleTime = 30000;
+        /** Time (ms) after which a connection is closed regardless of use */
+        private Integer maxLifeTime = 300000;
+        /** Timeout (ms) for establishing a TCP connection */
+        private Integer connectTimeout = 5000;
+
+        public Integer getMaxConnections() { return maxConnections; }
+        public void setMaxConnections(Integer maxConnections) { this.maxConnections = maxConnections; }
+        public Integer getMaxConnectionsPerHost() { return maxConnectionsPerHost; }
+        public void setMaxConnectionsPerHost(Integer maxConnectionsPerHost) { this.maxConnectionsPerHost = maxConnectionsPerHost; }
+        public Integer getPendingAcquireMaxCount() { return pendingAcquireMaxCount; }
+        public void setPendingAcquireMaxCount(Integer pendingAcquireMaxCount) { this.pendingAcquireMaxCount = pendingAcquireMaxCount; }
+        public Integer getPendingAcquireTimeout() { return pendingAcquireTimeout; }
+        public void setPendingAcquireTimeout(Integer pendingAcquireTimeout) { this.pendingAcquireTimeout = pendingAcquireTimeout; }
+        public Integer getMaxIdleTime() { return maxIdleTime; }
+        public void setMaxIdleTime(Integer maxIdleTime) { this.maxIdleTime = maxIdleTime; }
+        public Integer getMaxLifeTime() { return maxLifeTime; }
+        public void setMaxLifeTime(Integer maxLifeTime) { this.maxLifeTime = maxLifeTime; }
+        public Integer getConnectTimeout() { return connectTimeout; }
+        public void setConnectTimeout(Integer connectTimeout) { this.connectTimeout = connectTimeout; }
+    }
+
+    public static class Cache {
+        /** Search results keyed by normalized query (web.scraping.cache.search.*) */
+        private final CacheSpec search = new CacheSpec(600_000L, 4L * 1024 * 1024);
+        /** Extracted page text keyed by URL (web.scraping.cache.page.*) */
+        private final CacheSpec page = new CacheSpec(3_600_000L, 32L * 1024 * 1024);
+
+        public CacheSpec getSearch() { return search; }
+        public CacheSpec getPage() { return page; }
+    }
+
+    public static class CacheSpec {
+        /** Whether the cache is used at all */
+        private boolean enabled = true;
+        /** Time (ms) an entry is served as fresh */
+        private Long ttl;
+        /** Upper bound (bytes, estimated) for all cached entries */
+        private Long maxWeightBytes;
+        /** Serve expired entries while they are reloaded in the background */
+        private boolean staleWhileRevalidate = true;
+        /** Time (ms) past the TTL during which a stale entry may still be served */
+        private Long staleTtl;
+
+        public CacheSpec() {}
+
+        CacheSpec(Long ttl, Long maxWeightBytes) {
+            this.ttl = ttl;
+            this.maxWeightBytes = maxWeightBytes;
+            this.staleTtl = ttl;
+        }
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public Long getTtl() { return ttl; }
+        public void setTtl(Long ttl) { this.ttl = ttl; }
+        public Long getMaxWeightBytes() { return maxWeightBytes; }
+        public void setMaxWeightBytes(Long maxWeightBytes) { this.maxWeightBytes = maxWeightBytes; }
+        public boolean isStaleWhileRevalidate() { return staleWhileRevalidate; }
+        public void setStaleWhileRevalidate(boolean staleWhileRevalidate) { this.staleWhileRevalidate = staleWhileRevalidate; }
+        public Long getStaleTtl() { return staleTtl; }
+        public void setStaleTtl(Long staleTtl) { this.staleTtl = staleTtl; }
+    }
+
+    public static class PageStore {
+        /** Whether extracted pages are persisted to disk */
+        private boolean enabled = false;
+        /** Directory holding the append-only page file */
+        private String directory = "data/page-store";
+        /** Time (ms) a stored page is used without revalidating it upstream */
+        private Long ttl = 86_400_000L;
+        /** Time (ms) past the TTL an entry is kept for conditional revalidation before compaction drops it */
+        private Long retention = 604_800_000L;
+        /** Size (bytes) the page file is compacted back under; must stay below 2 GB */
+        private Long maxFileBytes = 512L * 1024 * 1024;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public String getDirectory() { return directory; }
+        public void setDirectory(String directory) { this.directory = directory; }
+        public Long getTtl() { return ttl; }
+        public void setTtl(Long ttl) { this.ttl = ttl; }
+        public Long getRetention() { return retention; }
+        public void setRetention(Long retention) { this.retention = retention; }
+        public Long getMaxFileBytes() { return maxFileBytes; }
+        public void setMaxFileBytes(Long maxFileBytes) { this.maxFileBytes = maxFileBytes; }
+    }
+}
\ No newline at end of file
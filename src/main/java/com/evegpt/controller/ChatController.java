@@ -1,15 +1,31 @@
 package com.evegpt.controller;
 
+import com.evegpt.config.ChatProperties;
+import com.evegpt.model.BatchChatRequest;
+import com.evegpt.model.BatchChatResponse;
+import com.evegpt.model.BatchChatResult;
 import com.evegpt.model.ChatRequest;
 import com.evegpt.model.ChatResponse;
+import com.evegpt.service.ChatRejectedException;
 import com.evegpt.service.ChatService;
+import com.evegpt.service.RateLimitedException;
+import com.evegpt.service.UpstreamUnavailableException;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/v1")
 public class ChatController {
@@ -17,9 +33,11 @@ public class ChatController {
     private static final Logger logger = LoggerFactory.getLogger(ChatController.class);
     
     private final ChatService chatService;
+    private final ChatProperties chatProperties;
     
-    public ChatController(ChatService chatService) {
+    public ChatController(ChatService chatService, ChatProperties chatProperties) {
         this.chatService = chatService;
+        this.chatProperties = chatProperties;
     }
     
     @PostMapping("/chat")
@@ -29,10 +47,83 @@ public class ChatController {
         return chatService.processChat(request)
                 .map(ResponseEntity::ok)
                 .doOnNext(response -> logger.info("Chat request processed successfully"))
-                .doOnError(error -> logger.error("Error processing chat request", error))
+                .doOnError(error -> !ChatService.isShed(error), error -> logger.error("Error processing chat request", error))
+                .onErrorResume(error -> !ChatService.isShed(error),
+                        error -> Mono.just(ResponseEntity.internalServerError().build()));
+    }
+    
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> chatStream(@Valid @RequestBody ChatRequest request) {
+        logger.info("Received streaming chat request");
+        
+        return chatService.streamChat(request)
+                .doOnComplete(() -> logger.info("Streaming chat request completed"));
+    }
+    
+    @PostMapping("/chat/batch")
+    public Mono<ResponseEntity<BatchChatResponse>> chatBatch(@Valid @RequestBody BatchChatRequest request) {
+        logger.info("Received batch chat request");
+        checkBatchSize(request);
+        
+        return chatService.processBatch(request)
+                .map(ResponseEntity::ok)
+                .doOnError(error -> logger.error("Error processing batch chat request", error))
                 .onErrorReturn(ResponseEntity.internalServerError().build());
     }
     
+    /** Streams one JSON line per prompt as each is answered; {@code index} gives its request position. */
+    @PostMapping(value = "/chat/batch/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BatchChatResult> chatBatchStream(@Valid @RequestBody BatchChatRequest request) {
+        logger.info("Received streaming batch chat request");
+        checkBatchSize(request);
+        
+        return chatService.streamBatch(request)
+                .doOnComplete(() -> logger.info("Streaming batch chat request completed"));
+    }
+    
+    private void checkBatchSize(BatchChatRequest request) {
+        int maxPrompts = chatProperties.getBatch().getMaxPrompts();
+        if (request.getPrompts().size() > maxPrompts) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "A batch cannot exceed " + maxPrompts + " prompts");
+        }
+    }
+    
+    /** Shed chats: 429 when too many are already waiting, 503 when one waited too long for a slot. */
+    @ExceptionHandler(ChatRejectedException.class)
+    public ResponseEntity<Map<String, String>> chatRejected(ChatRejectedException error) {
+        logger.warn("Chat request rejected: {}", error.getMessage());
+        HttpStatus status = error.isQueueFull() ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(status)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(error.getRetryAfter().toSeconds()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("error", error.getMessage()));
+    }
+    
+    /** Out of OpenAI rate-limit budget: 429 with the time until the limits allow another completion. */
+    @ExceptionHandler(RateLimitedException.class)
+    public ResponseEntity<Map<String, String>> rateLimited(RateLimitedException error) {
+        logger.warn("Chat request rate limited: {}", error.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(error.getRetryAfter()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("error", error.getMessage()));
+    }
+    
+    /** OpenAI's circuit breaker is open: 503 with the time until it lets a trial call through. */
+    @ExceptionHandler(UpstreamUnavailableException.class)
+    public ResponseEntity<Map<String, String>> upstreamUnavailable(UpstreamUnavailableException error) {
+        logger.warn("Chat request not sent upstream: {}", error.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(error.getRetryAfter()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("error", error.getMessage()));
+    }
+    
+    /** Retry-After is in whole seconds, rounded up. */
+    private static String retryAfterSeconds(Duration retryAfter) {
+        return String.valueOf(Math.max(1, (retryAfter.toMillis() + 999) / 1000));
+    }
+    
     @GetMapping("/health")
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("EVE ChatGPT Proxy API is running");
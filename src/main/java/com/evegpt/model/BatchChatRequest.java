@@ -0,0 +1,78 @@
+package com.evegpt.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * Several prompts answered in one call, sharing the same options. Each prompt is answered as if it
+ * had been sent on its own as a {@link ChatRequest}.
+ */
+public class BatchChatRequest {
+    
+    @NotEmpty(message = "Prompts cannot be empty")
+    @JsonProperty("prompts")
+    private List<@NotBlank(message = "User prompt cannot be blank")
+                 @Size(max = 4000, message = "User prompt cannot exceed 4000 characters") String> prompts;
+    
+    @JsonProperty("include_web_search")
+    private boolean includeWebSearch = true;
+    
+    @JsonProperty("max_tokens")
+    private Integer maxTokens = 1500;
+    
+    @JsonProperty("temperature")
+    private Double temperature = 0.7;
+    
+    // Constructors
+    public BatchChatRequest() {}
+    
+    public BatchChatRequest(List<String> prompts) {
+        this.prompts = prompts;
+    }
+    
+    /** The single-prompt request for {@code prompt}, with this batch's options. */
+    public ChatRequest toChatRequest(String prompt) {
+        ChatRequest request = new ChatRequest(prompt);
+        request.setIncludeWebSearch(includeWebSearch);
+        request.setMaxTokens(maxTokens);
+        request.setTemperature(temperature);
+        return request;
+    }
+    
+    // Getters and Setters
+    public List<String> getPrompts() {
+        return prompts;
+    }
+    
+    public void setPrompts(List<String> prompts) {
+        this.prompts = prompts;
+    }
+    
+    public boolean isIncludeWebSearch() {
+        return includeWebSearch;
+    }
+    
+    public void setIncludeWebSearch(boolean includeWebSearch) {
+        this.includeWebSearch = includeWebSearch;
+    }
+    
+    public Integer getMaxTokens() {
+        return maxTokens;
+    }
+    
+    public void setMaxTokens(Integer maxTokens) {
+        this.maxTokens = maxTokens;
+    }
+    
+    public Double getTemperature() {
+        return temperature;
+    }
+    
+    public void setTemperature(Double temperature) {
+        this.temperature = temperature;
+    }
+}
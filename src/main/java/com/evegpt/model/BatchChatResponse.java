@@ -0,0 +1,52 @@
+package com.evegpt.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public class BatchChatResponse {
+    
+    @JsonProperty("results")
+    private List<BatchChatResult> results;
+    
+    /** Prompts actually answered after duplicates were folded together */
+    @JsonProperty("unique_prompts")
+    private int uniquePrompts;
+    
+    @JsonProperty("processing_time_ms")
+    private Long processingTimeMs;
+    
+    // Constructors
+    public BatchChatResponse() {}
+    
+    public BatchChatResponse(List<BatchChatResult> results, int uniquePrompts, Long processingTimeMs) {
+        this.results = results;
+        this.uniquePrompts = uniquePrompts;
+        this.processingTimeMs = processingTimeMs;
+    }
+    
+    // Getters and Setters
+    public List<BatchChatResult> getResults() {
+        return results;
+    }
+    
+    public void setResults(List<BatchChatResult> results) {
+        this.results = results;
+    }
+    
+    public int getUniquePrompts() {
+        return uniquePrompts;
+    }
+    
+    public void setUniquePrompts(int uniquePrompts) {
+        this.uniquePrompts = uniquePrompts;
+    }
+    
+    public Long getProcessingTimeMs() {
+        return processingTimeMs;
+    }
+    
+    public void setProcessingTimeMs(Long processingTimeMs) {
+        this.processingTimeMs = processingTimeMs;
+    }
+}
@@ -0,0 +1,76 @@
+package com.evegpt.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Outcome of one prompt of a batch: either its response or an error message. {@code index} is the
+ * prompt's position in the request, as streamed results arrive in completion order.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchChatResult {
+    
+    @JsonProperty("index")
+    private int index;
+    
+    @JsonProperty("prompt")
+    private String prompt;
+    
+    @JsonProperty("response")
+    private ChatResponse response;
+    
+    @JsonProperty("error")
+    private String error;
+    
+    // Constructors
+    public BatchChatResult() {}
+    
+    public static BatchChatResult success(int index, String prompt, ChatResponse response) {
+        BatchChatResult result = new BatchChatResult();
+        result.index = index;
+        result.prompt = prompt;
+        result.response = response;
+        return result;
+    }
+    
+    public static BatchChatResult failure(int index, String prompt, String error) {
+        BatchChatResult result = new BatchChatResult();
+        result.index = index;
+        result.prompt = prompt;
+        result.error = error;
+        return result;
+    }
+    
+    // Getters and Setters
+    public int getIndex() {
+        return index;
+    }
+    
+    public void setIndex(int index) {
+        this.index = index;
+    }
+    
+    public String getPrompt() {
+        return prompt;
+    }
+    
+    public void setPrompt(String prompt) {
+        this.prompt = prompt;
+    }
+    
+    public ChatResponse getResponse() {
+        return response;
+    }
+    
+    public void setResponse(ChatResponse response) {
+        this.response = response;
+    }
+    
+    public String getError() {
+        return error;
+    }
+    
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -20,6 +20,15 @@ public class ChatRequest {
     @JsonProperty("temperature")
     private Double temperature = 0.7;
     
+    /** Continues the session the server issued this id for; an unknown id starts a new session */
+    @Size(max = 128, message = "Session id cannot exceed 128 characters")
+    @JsonProperty("session_id")
+    private String sessionId;
+    
+    /** Starts a new session, whose id is returned with the answer, in place of any {@code session_id} */
+    @JsonProperty("new_session")
+    private boolean newSession = false;
+    
     // Constructors
     public ChatRequest() {}
     
@@ -59,4 +68,20 @@ public class ChatRequest {
     public void setTemperature(Double temperature) {
         this.temperature = temperature;
     }
-}
\ No newline at end of file
+    
+    public String getSessionId() {
+        return sessionId;
+    }
+    
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+    
+    public boolean isNewSession() {
+        return newSession;
+    }
+    
+    public void setNewSession(boolean newSession) {
+        this.newSession = newSession;
+    }
+}
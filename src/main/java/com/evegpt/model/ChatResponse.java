@@ -3,6 +3,7 @@ package com.evegpt.model;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 public class ChatResponse {
     
@@ -24,6 +25,15 @@ public class ChatResponse {
     @JsonProperty("processing_time_ms")
     private Long processingTimeMs;
     
+    @JsonProperty("stage_timings_ms")
+    private Map<String, Long> stageTimingsMs;
+    
+    @JsonProperty("cache_hit")
+    private boolean cacheHit;
+    
+    @JsonProperty("session_id")
+    private String sessionId;
+    
     // Constructors
     public ChatResponse() {
         this.timestamp = LocalDateTime.now();
@@ -82,4 +92,28 @@ public class ChatResponse {
     public void setProcessingTimeMs(Long processingTimeMs) {
         this.processingTimeMs = processingTimeMs;
     }
+    
+    public Map<String, Long> getStageTimingsMs() {
+        return stageTimingsMs;
+    }
+    
+    public void setStageTimingsMs(Map<String, Long> stageTimingsMs) {
+        this.stageTimingsMs = stageTimingsMs;
+    }
+    
+    public boolean isCacheHit() {
+        return cacheHit;
+    }
+    
+    public void setCacheHit(boolean cacheHit) {
+        this.cacheHit = cacheHit;
+    }
+    
+    public String getSessionId() {
+        return sessionId;
+    }
+    
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
 }
\ No newline at end of file
@@ -18,6 +18,11 @@ public class WebSearchResult {
         this.source = source;
     }
     
+    public WebSearchResult(WebSearchResult other) {
+        this(other.url, other.title, other.content, other.source);
+        this.relevanceScore = other.relevanceScore;
+    }
+    
     // Getters and Setters
     public String getUrl() {
         return url;
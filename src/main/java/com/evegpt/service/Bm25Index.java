@@ -0,0 +1,166 @@
+package com.evegpt.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * In-memory inverted index ranked with Okapi BM25. Each term's postings are one growable
+ * {@code int[]} of interleaved (document id, term frequency) pairs in ascending id order, so the
+ * index holds no per-posting objects. Removal marks a document as deleted; its postings are purged
+ * once deleted documents make up half of the index. Document frequencies include deleted documents
+ * until then, which only slightly skews the idf of churned terms.
+ *
+ * <p>Not thread-safe: callers must serialize writes against reads.
+ */
+public class Bm25Index {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private int[] lengths = new int[1024];
+    private int documentCount;
+    private int deletedCount;
+    /** Deleted documents whose postings have already been dropped */
+    private int purgedCount;
+    private long totalLength;
+
+    public int size() {
+        return documentCount - deletedCount;
+    }
+
+    public int termCount() {
+        return postings.size();
+    }
+
+    /** Indexes an analyzed document and returns its id. */
+    public int add(List<String> terms) {
+        int id = documentCount++;
+        if (id == lengths.length) {
+            lengths = Arrays.copyOf(lengths, lengths.length * 2);
+        }
+        lengths[id] = terms.size();
+        totalLength += terms.size();
+
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String term : terms) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        frequencies.forEach((term, frequency) -> postings.computeIfAbsent(term, t -> new Postings()).add(id, frequency));
+        return id;
+    }
+
+    public void remove(int id) {
+        if (id < 0 || id >= documentCount || deleted.get(id)) {
+            return;
+        }
+        deleted.set(id);
+        deletedCount++;
+        totalLength -= lengths[id];
+        int unpurged = deletedCount - purgedCount;
+        if (unpurged * 2 > documentCount - purgedCount) {
+            purgeDeleted();
+        }
+    }
+
+    /**
+     * Returns up to {@code k} documents by descending BM25 score. Only documents containing at
+     * least {@code minCoverage} of the distinct query terms are considered.
+     */
+    public List<Match> search(List<String> queryTerms, int k, double minCoverage) {
+        Set<String> distinct = new LinkedHashSet<>(queryTerms);
+        int live = size();
+        if (distinct.isEmpty() || live == 0) {
+            return List.of();
+        }
+        float averageLength = (float) totalLength / live;
+        int requiredTerms = (int) Math.ceil(distinct.size() * minCoverage);
+
+        float[] scores = new float[documentCount];
+        short[] matchedTerms = new short[documentCount];
+        int[] touched = new int[16];
+        int touchedCount = 0;
+
+        for (String term : distinct) {
+            Postings list = postings.get(term);
+            if (list == null) {
+                continue;
+            }
+            int df = list.size / 2;
+            float idf = (float) Math.log(1 + (live - df + 0.5) / (df + 0.5));
+            for (int i = 0; i < list.size; i += 2) {
+                int id = list.data[i];
+                if (deleted.get(id)) {
+                    continue;
+                }
+                int tf = list.data[i + 1];
+                float norm = K1 * (1 - B + B * lengths[id] / averageLength);
+                if (matchedTerms[id]++ == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = id;
+                }
+                scores[id] += idf * tf * (K1 + 1) / (tf + norm);
+            }
+        }
+
+        PriorityQueue<Match> top = new PriorityQueue<>(k + 1, (a, b) -> Float.compare(a.score(), b.score()));
+        for (int i = 0; i < touchedCount; i++) {
+            int id = touched[i];
+            if (matchedTerms[id] < requiredTerms) {
+                continue;
+            }
+            if (top.size() < k || scores[id] > top.peek().score()) {
+                top.add(new Match(id, scores[id]));
+                if (top.size() > k) {
+                    top.poll();
+                }
+            }
+        }
+        List<Match> matches = new ArrayList<>(top);
+        matches.sort((a, b) -> Float.compare(b.score(), a.score()));
+        return matches;
+    }
+
+    private void purgeDeleted() {
+        postings.values().removeIf(list -> {
+            int kept = 0;
+            for (int i = 0; i < list.size; i += 2) {
+                if (!deleted.get(list.data[i])) {
+                    list.data[kept++] = list.data[i];
+                    list.data[kept++] = list.data[i + 1];
+                }
+            }
+            list.size = kept;
+            if (kept < list.data.length / 2) {
+                list.data = Arrays.copyOf(list.data, Math.max(kept, 2));
+            }
+            return kept == 0;
+        });
+        purgedCount = deletedCount;
+    }
+
+    public record Match(int id, float score) {}
+
+    private static final class Postings {
+        int[] data = new int[2];
+        int size;
+
+        void add(int id, int frequency) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size++] = id;
+            data[size++] = frequency;
+        }
+    }
+}
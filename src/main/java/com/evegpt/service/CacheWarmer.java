@@ -0,0 +1,130 @@
+package com.evegpt.service;
+
+import com.evegpt.config.ChatProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the scraping caches warm for the topics asked most often, so the head of the query
+ * distribution is answered at cache speed. Web-search chats are counted per normalized query in a
+ * {@link CountMinSketch}, and the {@code chat.warmer.top-k} most frequent are tracked. Every
+ * {@code chat.warmer.interval}, while the service is quiet (no more than
+ * {@code chat.warmer.max-in-flight} chats running or queued), the searches and pages of the hottest
+ * topics are refreshed before they expire, spending at most {@code chat.warmer.max-requests}
+ * upstream loads per run. Counts halve after ten times the sketch width of queries, so topics that
+ * stop being asked drop out.
+ */
+@Component
+public class CacheWarmer {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheWarmer.class);
+
+    private final ChatProperties.Warmer settings;
+    private final WebScrapingService webScrapingService;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final CountMinSketch sketch;
+    /** Tracked topics and their estimated counts; guarded by this */
+    private final Map<String, Integer> topics = new HashMap<>();
+    private final int sampleSize;
+    private int additions;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Counter completedRuns;
+    private final Counter busyRuns;
+    private final Counter requests;
+
+    public CacheWarmer(ChatProperties chatProperties, WebScrapingService webScrapingService,
+                       ConcurrencyLimiter concurrencyLimiter, MeterRegistry meterRegistry) {
+        this.settings = chatProperties.getWarmer();
+        this.webScrapingService = webScrapingService;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.sketch = new CountMinSketch(settings.getSketchWidth());
+        this.sampleSize = 10 * sketch.width();
+        this.completedRuns = meterRegistry.counter("evegpt.warmer.runs", "outcome", "completed");
+        this.busyRuns = meterRegistry.counter("evegpt.warmer.runs", "outcome", "busy");
+        this.requests = meterRegistry.counter("evegpt.warmer.requests");
+        Gauge.builder("evegpt.warmer.topics", this, warmer -> warmer.hotTopics().size()).register(meterRegistry);
+    }
+
+    /** Counts one web-search chat about {@code query}. */
+    public void recordQuery(String query) {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        String topic = WebScrapingService.normalizeQuery(query);
+        synchronized (this) {
+            int count = sketch.add(topic);
+            if (topics.containsKey(topic) || topics.size() < settings.getTopK()) {
+                topics.put(topic, count);
+            } else {
+                Map.Entry<String, Integer> coldest = Collections.min(topics.entrySet(), Map.Entry.comparingByValue());
+                if (count > coldest.getValue()) {
+                    topics.remove(coldest.getKey());
+                    topics.put(topic, count);
+                }
+            }
+            if (++additions == sampleSize) {
+                additions = 0;
+                sketch.halve();
+                topics.replaceAll((key, value) -> value >>> 1);
+                topics.values().removeIf(value -> value == 0);
+            }
+        }
+    }
+
+    /** Topics asked at least {@code chat.warmer.min-count} times, most frequent first. */
+    public synchronized List<String> hotTopics() {
+        return topics.entrySet().stream()
+                .filter(entry -> entry.getValue() >= settings.getMinCount())
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    @Scheduled(initialDelayString = "${chat.warmer.interval:60000}", fixedDelayString = "${chat.warmer.interval:60000}")
+    void scheduledWarm() {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        if (concurrencyLimiter.inFlight() + concurrencyLimiter.queued() > settings.getMaxInFlight()) {
+            busyRuns.increment();
+            logger.debug("Skipping cache warming while chats are running");
+            return;
+        }
+        if (running.compareAndSet(false, true)) {
+            warm().doFinally(signal -> running.set(false))
+                    .subscribe(null, error -> logger.warn("Cache warming failed", error));
+        }
+    }
+
+    /** Refreshes the hottest topics within the request budget and returns the upstream loads made. */
+    public Mono<Integer> warm() {
+        return Mono.defer(() -> {
+            int maxRequests = settings.getMaxRequests();
+            AtomicInteger budget = new AtomicInteger(maxRequests);
+            List<String> hot = hotTopics();
+            return Flux.fromIterable(hot)
+                    .takeWhile(topic -> budget.get() > 0)
+                    .concatMap(topic -> webScrapingService.warm(topic, settings.getPagesPerTopic(), budget))
+                    .then(Mono.fromSupplier(() -> maxRequests - budget.get()))
+                    .doOnNext(used -> {
+                        completedRuns.increment();
+                        requests.increment(used);
+                        logger.debug("Warmed {} hot topics with {} upstream loads", hot.size(), used);
+                    });
+        });
+    }
+}
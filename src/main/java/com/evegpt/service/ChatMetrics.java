@@ -0,0 +1,119 @@
+package com.evegpt.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Micrometer meters for the chat pipeline:
+ * <ul>
+ *   <li>{@code evegpt.chat.stage} - timer per pipeline stage, tagged with the stage and its outcome
+ *       ({@code success}, {@code error} or {@code cancelled}, the latter mostly deadlines)</li>
+ *   <li>{@code evegpt.chat.requests} - end-to-end timer per answered request</li>
+ *   <li>{@code evegpt.chat.responses} - where answers came from: upstream, completion or semantic cache, or static data</li>
+ *   <li>{@code evegpt.chat.fallbacks} - web-search requests answered without sources after a failure</li>
+ *   <li>{@code evegpt.scraping.errors} - failed searches and page extractions</li>
+ *   <li>{@code evegpt.openai.tokens} - prompt and completion tokens reported by the upstream</li>
+ * </ul>
+ * Timers publish percentile histograms so latency percentiles can be aggregated across instances.
+ */
+@Component
+public class ChatMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final Counter fallbacks;
+    private final Counter promptTokens;
+    private final Counter completionTokens;
+
+    public ChatMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.fallbacks = Counter.builder("evegpt.chat.fallbacks")
+                .description("Web-search requests answered without sources after retrieval or generation failed")
+                .register(meterRegistry);
+        this.promptTokens = Counter.builder("evegpt.openai.tokens").tag("type", "prompt").register(meterRegistry);
+        this.completionTokens = Counter.builder("evegpt.openai.tokens").tag("type", "completion").register(meterRegistry);
+    }
+
+    /** Times {@code mono} from subscription to its first signal or cancellation as {@code stage}. */
+    public <T> Mono<T> timed(String stage, Mono<T> mono) {
+        return timed(stage, mono, null);
+    }
+
+    /**
+     * Like {@link #timed(String, Mono)}, also recording the elapsed milliseconds in
+     * {@code stageTimings}. Stages that run more than once per request keep the slowest run there.
+     */
+    public <T> Mono<T> timed(String stage, Mono<T> mono, Map<String, Long> stageTimings) {
+        return Mono.defer(() -> {
+            long stageStart = System.nanoTime();
+            AtomicBoolean recorded = new AtomicBoolean();
+            // Recorded on the first signal, before it reaches downstream operators that read the timings
+            return mono
+                    .doOnEach(signal -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            record(stage, signal.isOnError() ? "error" : "success", stageStart, stageTimings);
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (recorded.compareAndSet(false, true)) {
+                            record(stage, "cancelled", stageStart, stageTimings);
+                        }
+                    });
+        });
+    }
+
+    /** Records a synchronous stage that started at {@code stageStart} ({@link System#nanoTime()}). */
+    public void recordStage(String stage, long stageStart) {
+        record(stage, "success", stageStart, null);
+    }
+
+    public void recordRequest(boolean streaming, boolean webSearch, long processingTimeMs) {
+        Timer.builder("evegpt.chat.requests")
+                .tag("endpoint", streaming ? "stream" : "chat")
+                .tag("web_search", String.valueOf(webSearch))
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(processingTimeMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Counts an answer by origin: {@code upstream}, {@code completion_cache}, {@code semantic_cache} or {@code static_data}. */
+    public void recordResponse(String source) {
+        meterRegistry.counter("evegpt.chat.responses", "source", source).increment();
+    }
+
+    public void recordFallback() {
+        fallbacks.increment();
+    }
+
+    public void recordScrapeError(String operation) {
+        meterRegistry.counter("evegpt.scraping.errors", "operation", operation).increment();
+    }
+
+    public void recordTokens(Integer prompt, Integer completion) {
+        if (prompt != null) {
+            promptTokens.increment(prompt);
+        }
+        if (completion != null) {
+            completionTokens.increment(completion);
+        }
+    }
+
+    private void record(String stage, String outcome, long stageStart, Map<String, Long> stageTimings) {
+        long elapsed = System.nanoTime() - stageStart;
+        if (stageTimings != null) {
+            stageTimings.merge(stage, elapsed / 1_000_000, Math::max);
+        }
+        Timer.builder("evegpt.chat.stage")
+                .tag("stage", stage)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+    }
+}
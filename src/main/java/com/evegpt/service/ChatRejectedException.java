@@ -0,0 +1,30 @@
+package com.evegpt.service;
+
+import java.time.Duration;
+
+/**
+ * Thrown when the {@link ConcurrencyLimiter} sheds a chat, either straight away because its wait
+ * queue is full or after waiting too long for a slot. Carries no stack trace, as it is expected
+ * and frequent under overload.
+ */
+public class ChatRejectedException extends RuntimeException {
+
+    private final boolean queueFull;
+    private final Duration retryAfter;
+
+    public ChatRejectedException(boolean queueFull, Duration retryAfter) {
+        super(queueFull ? "Too many chats waiting" : "Timed out waiting for a chat slot", null, false, false);
+        this.queueFull = queueFull;
+        this.retryAfter = retryAfter;
+    }
+
+    /** Whether the chat was rejected without waiting, rather than after its queue time ran out. */
+    public boolean isQueueFull() {
+        return queueFull;
+    }
+
+    /** When a retry is likely to be admitted, estimated from the queue and recent chat latency. */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
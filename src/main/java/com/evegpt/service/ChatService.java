@@ -1,15 +1,31 @@
 package com.evegpt.service;
 
+import com.evegpt.config.ChatProperties;
+import com.evegpt.config.WebScrapingProperties;
+import com.evegpt.model.BatchChatRequest;
+import com.evegpt.model.BatchChatResponse;
+import com.evegpt.model.BatchChatResult;
 import com.evegpt.model.ChatRequest;
 import com.evegpt.model.ChatResponse;
 import com.evegpt.model.WebSearchResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -17,82 +33,434 @@ public class ChatService {
     
     private static final Logger logger = LoggerFactory.getLogger(ChatService.class);
     
+    /** Number of top search results enhanced with full page content */
+    private static final int ENHANCED_RESULT_LIMIT = 3;
+    
     private final WebScrapingService webScrapingService;
     private final OpenAIService openAIService;
+    private final SemanticCache semanticCache;
+    private final PassageRanker passageRanker;
+    private final ChatMetrics chatMetrics;
+    private final WebScrapingProperties webScrapingProperties;
+    private final ChatProperties.Batch batchSettings;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final ConversationStore conversationStore;
+    private final CacheWarmer cacheWarmer;
+    private final StaticData staticData;
     
-    public ChatService(WebScrapingService webScrapingService, OpenAIService openAIService) {
+    public ChatService(WebScrapingService webScrapingService, OpenAIService openAIService,
+                       SemanticCache semanticCache, PassageRanker passageRanker, ChatMetrics chatMetrics,
+                       WebScrapingProperties webScrapingProperties, ChatProperties chatProperties,
+                       ConcurrencyLimiter concurrencyLimiter, ConversationStore conversationStore,
+                       CacheWarmer cacheWarmer, StaticData staticData) {
         this.webScrapingService = webScrapingService;
         this.openAIService = openAIService;
+        this.semanticCache = semanticCache;
+        this.passageRanker = passageRanker;
+        this.chatMetrics = chatMetrics;
+        this.webScrapingProperties = webScrapingProperties;
+        this.batchSettings = chatProperties.getBatch();
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.conversationStore = conversationStore;
+        this.cacheWarmer = cacheWarmer;
+        this.staticData = staticData;
     }
     
+    /** Answers a chat once the {@link ConcurrencyLimiter} admits it; fails with {@link ChatRejectedException} otherwise. */
     public Mono<ChatResponse> processChat(ChatRequest request) {
+        return concurrencyLimiter.admit(() -> processChat(request, webScrapingService::extractPageContent));
+    }
+    
+    /**
+     * Answers every prompt of a batch, in request order. See {@link #streamBatch(BatchChatRequest)}
+     * for how work is shared between prompts.
+     */
+    public Mono<BatchChatResponse> processBatch(BatchChatRequest batch) {
+        long startTime = System.currentTimeMillis();
+        return streamBatch(batch)
+                .collectSortedList(Comparator.comparingInt(BatchChatResult::getIndex))
+                .map(results -> new BatchChatResponse(results, groupDuplicates(batch.getPrompts()).size(),
+                        System.currentTimeMillis() - startTime));
+    }
+    
+    /**
+     * Answers every prompt of a batch, emitting each result as soon as it is ready. Prompts that
+     * differ only in case, spacing or trailing punctuation are answered once. Distinct prompts run
+     * at most {@code chat.batch.concurrency} at a time and share page extraction, so a page
+     * retrieved for several prompts is fetched once per batch. Each prompt is admitted by the
+     * {@link ConcurrencyLimiter} like a single chat, and its completion waits for OpenAI rate-limit
+     * budget behind interactive chats. A failed or rejected prompt yields a result with an error
+     * instead of failing the batch.
+     */
+    public Flux<BatchChatResult> streamBatch(BatchChatRequest batch) {
+        return Flux.defer(() -> {
+            List<String> prompts = batch.getPrompts();
+            logger.info("Processing batch of {} prompts", prompts.size());
+            
+            Map<String, Mono<String>> pages = new ConcurrentHashMap<>();
+            Function<String, Mono<String>> pageContent = url -> pages.computeIfAbsent(url,
+                    key -> webScrapingService.extractPageContent(key).cache());
+            
+            return Flux.fromIterable(groupDuplicates(prompts).values())
+                    .flatMap(positions -> {
+                        String prompt = prompts.get(positions.get(0));
+                        return concurrencyLimiter.admit(() -> processChat(batch.toChatRequest(prompt), pageContent))
+                                .contextWrite(OpenAIRateLimiter::batchPriority)
+                                .map(response -> positions.stream()
+                                        .map(index -> BatchChatResult.success(index, prompts.get(index), response))
+                                        .toList())
+                                .onErrorResume(error -> {
+                                    String message;
+                                    if (isShed(error)) {
+                                        logger.warn("Batch prompt rejected: {}", error.getMessage());
+                                        message = "Server busy, try again later";
+                                    } else {
+                                        logger.error("Error answering batch prompt: {}", prompt, error);
+                                        message = "Error generating response";
+                                    }
+                                    return Mono.just(positions.stream()
+                                            .map(index -> BatchChatResult.failure(index, prompts.get(index), message))
+                                            .toList());
+                                })
+                                .flatMapIterable(Function.identity());
+                    }, batchSettings.getConcurrency());
+        });
+    }
+    
+    /**
+     * Whether a chat failed because the service is saturated rather than broken: rejected by the
+     * {@link ConcurrencyLimiter}, out of OpenAI rate-limit budget or turned away by OpenAI's open
+     * circuit breaker. Such chats are worth retrying later.
+     */
+    public static boolean isShed(Throwable error) {
+        return error instanceof ChatRejectedException || error instanceof RateLimitedException
+                || error instanceof UpstreamUnavailableException;
+    }
+    
+    /** Positions of each distinct prompt, keyed by its normalized form, in order of first appearance. */
+    private static Map<String, List<Integer>> groupDuplicates(List<String> prompts) {
+        Map<String, List<Integer>> positions = new LinkedHashMap<>();
+        for (int i = 0; i < prompts.size(); i++) {
+            positions.computeIfAbsent(WebScrapingService.normalizeQuery(prompts.get(i)), key -> new ArrayList<>()).add(i);
+        }
+        return positions;
+    }
+    
+    private Mono<ChatResponse> processChat(ChatRequest request, Function<String, Mono<String>> pageContent) {
         long startTime = System.currentTimeMillis();
         
         logger.info("Processing chat request: {}", request.getUserPrompt());
         
+        Conversation conversation = conversationStore.open(request.getSessionId(), request.isNewSession());
+        Conversation.History history = conversation != null ? conversation.history() : Conversation.History.NONE;
+        StaticData.Lookup lookup = lookupStaticData(request);
+        if (lookup.directAnswer() != null) {
+            return Mono.just(answerFromStaticData(request, lookup, startTime, conversation, false));
+        }
+        // A follow-up's answer depends on the conversation, so it is neither looked up nor stored by prompt
+        boolean followUp = !history.isEmpty();
+        if (request.isIncludeWebSearch() && !followUp && !lookup.answered()) {
+            cacheWarmer.recordQuery(request.getUserPrompt());
+        }
+        
+        Optional<ChatResponse> similarAnswer = followUp ? Optional.empty() : semanticCache.lookup(request);
+        if (similarAnswer.isPresent()) {
+            ChatResponse response = reuseCachedResponse(similarAnswer.get(), startTime);
+            chatMetrics.recordResponse("semantic_cache");
+            chatMetrics.recordRequest(false, request.isIncludeWebSearch(), response.getProcessingTimeMs());
+            remember(conversation, request, response);
+            return Mono.just(response);
+        }
+        
+        Mono<ChatResponse> response;
         if (request.isIncludeWebSearch()) {
-            return performWebSearchAndGenerate(request, startTime);
+            response = performWebSearchAndGenerate(request, startTime, pageContent, conversation, history, lookup);
         } else {
-            return generateDirectResponse(request, startTime);
+            response = generateDirectResponse(request, startTime, new ConcurrentHashMap<>(), history);
         }
+        // Fallback answers (web search requested but failed) are not worth reusing
+        return response.doOnNext(chatResponse -> {
+            chatMetrics.recordResponse(chatResponse.isCacheHit() ? "completion_cache" : "upstream");
+            chatMetrics.recordRequest(false, request.isIncludeWebSearch(), chatResponse.getProcessingTimeMs());
+            if (!followUp && chatResponse.isWebSearchPerformed() == request.isIncludeWebSearch()) {
+                semanticCache.store(request, chatResponse);
+            }
+            remember(conversation, request, chatResponse);
+        });
     }
     
-    private Mono<ChatResponse> performWebSearchAndGenerate(ChatRequest request, long startTime) {
-        return Mono.fromCallable(() -> {
-            List<WebSearchResult> searchResults = new ArrayList<>();
-            
-            // Search EVE University Wiki first (prioritized)
-            List<WebSearchResult> wikiResults = webScrapingService.searchEveWiki(request.getUserPrompt());
-            searchResults.addAll(wikiResults);
-            
-            // Search official EVE Online site
-            List<WebSearchResult> officialResults = webScrapingService.searchEveOnline(request.getUserPrompt());
-            searchResults.addAll(officialResults);
+    /** Static data facts for a web-search request; local data counts as a source like the web. */
+    private StaticData.Lookup lookupStaticData(ChatRequest request) {
+        if (!request.isIncludeWebSearch()) {
+            return StaticData.Lookup.NONE;
+        }
+        long lookupStart = System.nanoTime();
+        StaticData.Lookup lookup = staticData.lookup(request.getUserPrompt());
+        chatMetrics.recordStage("static_data", lookupStart);
+        return lookup;
+    }
+    
+    /** Answers a pure lookup with the facts themselves: no search, no completion. */
+    private ChatResponse answerFromStaticData(ChatRequest request, StaticData.Lookup lookup, long startTime,
+                                              Conversation conversation, boolean streaming) {
+        logger.debug("Answering from static data: {}", request.getUserPrompt());
+        ChatResponse response = buildChatResponse(lookup.directAnswer(), lookup.sources(), startTime, true,
+                Map.of("static_data", System.currentTimeMillis() - startTime));
+        chatMetrics.recordResponse("static_data");
+        chatMetrics.recordRequest(streaming, true, response.getProcessingTimeMs());
+        remember(conversation, request, response);
+        return response;
+    }
+    
+    /**
+     * Adds the answered turn to the session, if the request belongs to one. The session id is only
+     * returned once the turn is stored: a new session with a placeholder answer was never stored.
+     */
+    private void remember(Conversation conversation, ChatRequest request, ChatResponse response) {
+        if (conversation != null && conversationStore.record(conversation, request.getUserPrompt(), response.getResponse())) {
+            response.setSessionId(conversation.id());
+        }
+    }
+    
+    /**
+     * Streams the answer as server-sent events: one {@code delta} event per content fragment, then a
+     * final {@code done} event carrying the full response, sources consulted and stage timings.
+     * Failures after the stream has started are reported as an {@code error} event. A chat that is
+     * shed (see {@link #isShed(Throwable)}) fails before any event instead.
+     */
+    public Flux<ServerSentEvent<Object>> streamChat(ChatRequest request) {
+        return concurrencyLimiter.admitMany(() -> streamAnswer(request))
+                .doOnError(error -> !isShed(error), error -> logger.error("Error in streaming chat", error))
+                .onErrorResume(error -> !isShed(error),
+                        error -> Flux.just(ServerSentEvent.<Object>builder(
+                                Map.of("message", "Error generating response")).event("error").build()));
+    }
+    
+    private Flux<ServerSentEvent<Object>> streamAnswer(ChatRequest request) {
+        return Flux.defer(() -> {
+            long startTime = System.currentTimeMillis();
+            Map<String, Long> stageTimings = new ConcurrentHashMap<>();
             
-            // Enhance search results with full page content for top results
-            enhanceSearchResults(searchResults);
+            logger.info("Processing streaming chat request: {}", request.getUserPrompt());
             
-            logger.info("Found {} web search results", searchResults.size());
+            Conversation conversation = conversationStore.open(request.getSessionId(), request.isNewSession());
+            Conversation.History history = conversation != null ? conversation.history() : Conversation.History.NONE;
+            StaticData.Lookup lookup = lookupStaticData(request);
+            if (lookup.directAnswer() != null) {
+                ChatResponse response = answerFromStaticData(request, lookup, startTime, conversation, true);
+                return Flux.just(
+                        ServerSentEvent.<Object>builder(Map.of("content", response.getResponse())).event("delta").build(),
+                        ServerSentEvent.<Object>builder(response).event("done").build());
+            }
+            if (request.isIncludeWebSearch() && history.isEmpty() && !lookup.answered()) {
+                cacheWarmer.recordQuery(request.getUserPrompt());
+            }
+            Mono<SourceContext> retrieval = request.isIncludeWebSearch()
+                    ? retrieveContext(request, stageTimings, webScrapingService::extractPageContent, conversation, lookup)
+                    : Mono.just(SourceContext.NONE);
             
-            return searchResults;
-        })
-        .flatMap(searchResults -> 
-            openAIService.generateResponse(request, searchResults)
-                .map(response -> buildChatResponse(response, searchResults, startTime, true))
-        )
-        .doOnError(error -> logger.error("Error in web search and generation", error))
-        .onErrorResume(error -> generateDirectResponse(request, startTime));
-    }
-    
-    private Mono<ChatResponse> generateDirectResponse(ChatRequest request, long startTime) {
-        return openAIService.generateResponse(request, List.of())
-                .map(response -> buildChatResponse(response, List.of(), startTime, false))
-                .doOnError(error -> logger.error("Error in direct response generation", error));
+            return retrieval.flatMapMany(context -> {
+                StringBuilder fullResponse = new StringBuilder();
+                AtomicReference<Integer> tokensUsed = new AtomicReference<>();
+                long completionStart = System.nanoTime();
+                
+                Flux<ServerSentEvent<Object>> deltas = openAIService.streamResponse(request, context, history)
+                        .doOnNext(delta -> {
+                            if (!delta.hasContent()) {
+                                tokensUsed.set(delta.tokensUsed());
+                                return;
+                            }
+                            if (fullResponse.isEmpty()) {
+                                stageTimings.put("first_token", (System.nanoTime() - completionStart) / 1_000_000);
+                            }
+                            fullResponse.append(delta.content());
+                        })
+                        .filter(CompletionDelta::hasContent)
+                        .map(delta -> ServerSentEvent.<Object>builder(Map.of("content", delta.content())).event("delta").build());
+                
+                Mono<ServerSentEvent<Object>> done = Mono.fromSupplier(() -> {
+                    stageTimings.put("completion", (System.nanoTime() - completionStart) / 1_000_000);
+                    ChatResponse response = buildChatResponse(fullResponse.toString(), context.sources(), startTime,
+                            request.isIncludeWebSearch(), stageTimings);
+                    response.setTokensUsed(tokensUsed.get());
+                    remember(conversation, request, response);
+                    chatMetrics.recordResponse("upstream");
+                    chatMetrics.recordRequest(true, request.isIncludeWebSearch(), response.getProcessingTimeMs());
+                    return ServerSentEvent.<Object>builder(response).event("done").build();
+                });
+                
+                return deltas.concatWith(done);
+            });
+        });
+    }
+    
+    private Mono<ChatResponse> performWebSearchAndGenerate(ChatRequest request, long startTime,
+                                                           Function<String, Mono<String>> pageContent,
+                                                           Conversation conversation, Conversation.History history,
+                                                           StaticData.Lookup lookup) {
+        Map<String, Long> stageTimings = new ConcurrentHashMap<>();
+        
+        return retrieveContext(request, stageTimings, pageContent, conversation, lookup)
+                .flatMap(context ->
+                    timed("completion", openAIService.generateResponse(request, context, history), stageTimings)
+                        .map(response -> buildChatResponse(response, context.sources(), startTime, true, stageTimings))
+                )
+                .doOnError(error -> logger.error("Error in web search and generation", error))
+                // Without rate-limit budget or with OpenAI's breaker open a direct answer would fail the same way
+                .onErrorResume(error -> !isShed(error), error -> {
+                    chatMetrics.recordFallback();
+                    return generateDirectResponse(request, startTime, stageTimings, history);
+                });
     }
     
-    private void enhanceSearchResults(List<WebSearchResult> searchResults) {
-        // Enhance top 3 results with full page content
-        for (int i = 0; i < Math.min(3, searchResults.size()); i++) {
-            WebSearchResult result = searchResults.get(i);
-            try {
-                String fullContent = webScrapingService.extractPageContent(result.getUrl());
-                if (!fullContent.isEmpty()) {
-                    // Limit content to avoid overwhelming the prompt
-                    String limitedContent = fullContent.length() > 2000 ? 
-                        fullContent.substring(0, 2000) + "..." : fullContent;
-                    result.setContent(limitedContent);
-                }
-            } catch (Exception e) {
-                logger.warn("Failed to enhance search result: {}", result.getUrl(), e);
+    /**
+     * Sources for the question. Static data facts that answer it are the only sources, without
+     * searching. Otherwise a session's follow-up reuses the context pinned by an earlier turn while
+     * the question stays on its topic, without searching or scraping again; failing that the web is
+     * searched, with the facts of any items named in the question ahead of the results. In a
+     * session the new context is pinned for the follow-ups.
+     */
+    private Mono<SourceContext> retrieveContext(ChatRequest request, Map<String, Long> stageTimings,
+                                                Function<String, Mono<String>> pageContent, Conversation conversation,
+                                                StaticData.Lookup lookup) {
+        if (lookup.answered()) {
+            return Mono.just(pin(conversation,
+                    openAIService.buildSourceContext(request.getUserPrompt(), lookup.sources(), conversation != null)));
+        }
+        if (conversation != null) {
+            Optional<SourceContext> pinned = conversation.contextFor(request.getUserPrompt());
+            if (pinned.isPresent()) {
+                logger.debug("Reusing the sources of session {}", conversation.id());
+                return Mono.just(pinned.get());
             }
         }
+        return timed("retrieval", searchAndEnhance(request.getUserPrompt(), stageTimings, pageContent), stageTimings)
+                .doOnNext(searchResults -> logger.info("Found {} web search results", searchResults.size()))
+                .map(searchResults -> {
+                    List<WebSearchResult> sources = new ArrayList<>(lookup.sources());
+                    sources.addAll(searchResults);
+                    return pin(conversation, openAIService.buildSourceContext(request.getUserPrompt(), sources, conversation != null));
+                });
+    }
+    
+    private static SourceContext pin(Conversation conversation, SourceContext context) {
+        if (conversation != null && !context.isEmpty()) {
+            conversation.pin(context);
+        }
+        return context;
+    }
+    
+    /**
+     * Runs both searches concurrently and enhances each top result as soon as its search returns.
+     * Every stage has its own deadline; a stage that misses it contributes nothing (searches) or
+     * keeps its search snippet (page extraction), so a slow source only costs its own results.
+     * The best passages across all results are then selected for the prompt. Page text comes from
+     * {@code pageContent}, which batches share between their prompts.
+     */
+    private Mono<List<WebSearchResult>> searchAndEnhance(String query, Map<String, Long> stageTimings,
+                                                         Function<String, Mono<String>> pageContent) {
+        Duration searchTimeout = Duration.ofMillis(webScrapingProperties.getSearchTimeout());
+        
+        Mono<List<WebSearchResult>> wikiSearch = timed("wiki_search",
+                webScrapingService.searchEveWiki(query), stageTimings)
+                .timeout(searchTimeout)
+                .onErrorResume(error -> {
+                    logger.warn("EVE Wiki search failed or timed out for query: {}", query, error);
+                    return Mono.just(List.of());
+                })
+                .cache();
+        
+        Mono<List<WebSearchResult>> officialSearch = timed("official_search",
+                webScrapingService.searchEveOnline(query), stageTimings)
+                .timeout(searchTimeout)
+                .onErrorResume(error -> {
+                    logger.warn("EVE Online search failed or timed out for query: {}", query, error);
+                    return Mono.just(List.of());
+                })
+                .cache();
+        
+        // Wiki results are prioritised: they are enhanced as soon as the wiki search returns, while
+        // official results only fill the slots the wiki left over once both searches are known.
+        Flux<WebSearchResult> wikiEnhanced = wikiSearch
+                .flatMapMany(Flux::fromIterable)
+                .take(ENHANCED_RESULT_LIMIT)
+                .flatMap(result -> enhanceSearchResult(result, stageTimings, pageContent));
+        
+        Flux<WebSearchResult> officialEnhanced = Mono.zip(wikiSearch, officialSearch)
+                .flatMapMany(results -> Flux.fromIterable(results.getT2())
+                        .take(Math.max(0, ENHANCED_RESULT_LIMIT - results.getT1().size())))
+                .flatMap(result -> enhanceSearchResult(result, stageTimings, pageContent));
+        
+        return Flux.merge(wikiEnhanced, officialEnhanced)
+                .then(Mono.zip(wikiSearch, officialSearch, (wikiResults, officialResults) -> {
+                    List<WebSearchResult> searchResults = new ArrayList<>(wikiResults);
+                    searchResults.addAll(officialResults);
+                    return searchResults;
+                }))
+                .flatMap(searchResults -> timed("passage_ranking",
+                        Mono.fromSupplier(() -> passageRanker.select(query, searchResults)), stageTimings));
+    }
+    
+    private Mono<ChatResponse> generateDirectResponse(ChatRequest request, long startTime, Map<String, Long> stageTimings,
+                                                      Conversation.History history) {
+        return timed("completion", openAIService.generateResponse(request, SourceContext.NONE, history), stageTimings)
+                .map(response -> buildChatResponse(response, List.of(), startTime, false, stageTimings))
+                .doOnError(error -> logger.error("Error in direct response generation", error));
+    }
+    
+    private Mono<WebSearchResult> enhanceSearchResult(WebSearchResult result, Map<String, Long> stageTimings,
+                                                      Function<String, Mono<String>> pageContent) {
+        return timed("page_extraction", pageContent.apply(result.getUrl()), stageTimings)
+                .timeout(Duration.ofMillis(webScrapingProperties.getExtractTimeout()))
+                .map(fullContent -> {
+                    // The whole page is kept; passage ranking decides what reaches the prompt
+                    if (!fullContent.isEmpty()) {
+                        result.setContent(fullContent);
+                    }
+                    return result;
+                })
+                .onErrorResume(error -> {
+                    logger.warn("Failed to enhance search result: {}", result.getUrl(), error);
+                    return Mono.just(result);
+                });
+    }
+    
+    /**
+     * Records the wall-clock time of a stage from subscription to termination (including cancellation
+     * by a deadline) in the response timings and the stage timer. Stages that run more than once,
+     * such as page extraction, report the slowest run in the response.
+     */
+    private <T> Mono<T> timed(String stage, Mono<T> mono, Map<String, Long> stageTimings) {
+        return chatMetrics.timed(stage, mono, stageTimings);
+    }
+    
+    private ChatResponse reuseCachedResponse(ChatResponse cached, long startTime) {
+        ChatResponse response = new ChatResponse(cached.getResponse());
+        response.setSourcesConsulted(cached.getSourcesConsulted());
+        response.setWebSearchPerformed(cached.isWebSearchPerformed());
+        response.setCacheHit(true);
+        long elapsed = System.currentTimeMillis() - startTime;
+        response.setProcessingTimeMs(elapsed);
+        response.setStageTimingsMs(Map.of("semantic_cache", elapsed));
+        return response;
+    }
+    
+    static ChatResponse buildChatResponse(CompletionResult completion, List<WebSearchResult> searchResults,
+                                         long startTime, boolean webSearchPerformed,
+                                         Map<String, Long> stageTimings) {
+        ChatResponse response = buildChatResponse(completion.content(), searchResults, startTime, webSearchPerformed, stageTimings);
+        response.setCacheHit(completion.cached());
+        response.setTokensUsed(completion.tokensUsed());
+        return response;
     }
     
-    private ChatResponse buildChatResponse(String aiResponse, List<WebSearchResult> searchResults, 
-                                         long startTime, boolean webSearchPerformed) {
+    static ChatResponse buildChatResponse(String aiResponse, List<WebSearchResult> searchResults, 
+                                         long startTime, boolean webSearchPerformed,
+                                         Map<String, Long> stageTimings) {
         ChatResponse response = new ChatResponse(aiResponse);
         response.setWebSearchPerformed(webSearchPerformed);
         response.setProcessingTimeMs(System.currentTimeMillis() - startTime);
+        response.setStageTimingsMs(new TreeMap<>(stageTimings));
         
         if (!searchResults.isEmpty()) {
             List<String> sources = searchResults.stream()
@@ -103,4 +471,4 @@ public class ChatService {
         
         return response;
     }
-}
\ No newline at end of file
+}
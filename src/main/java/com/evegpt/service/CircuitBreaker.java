@@ -0,0 +1,127 @@
+package com.evegpt.service;
+
+import com.evegpt.config.UpstreamProperties;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker. While closed, the outcomes of the last {@code window-size} calls are
+ * kept; once at least {@code min-calls} were seen and the failure rate reaches the threshold, the
+ * breaker opens and rejects calls for {@code open-duration}. It then lets {@code half-open-calls}
+ * trial calls through: if they all succeed it closes, and any failure opens it again. Thread-safe.
+ */
+final class CircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final UpstreamProperties.Breaker settings;
+    private final LongSupplier clock;
+    private final boolean[] failed;
+    private int count;
+    private int next;
+    private int failures;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int trialPermits;
+    private int trialSuccesses;
+
+    /** {@code clock} returns milliseconds, as {@link System#currentTimeMillis()} does. */
+    CircuitBreaker(UpstreamProperties.Breaker settings, LongSupplier clock) {
+        this.settings = settings;
+        this.clock = clock;
+        this.failed = new boolean[settings.getWindowSize()];
+    }
+
+    /** Whether a call may go ahead; every permitted call must end in exactly one outcome callback. */
+    synchronized boolean tryAcquire() {
+        if (!settings.isEnabled()) {
+            return true;
+        }
+        if (state == State.OPEN) {
+            if (clock.getAsLong() - openedAt < settings.getOpenDuration()) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialPermits = settings.getHalfOpenCalls();
+            trialSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialPermits == 0) {
+                return false;
+            }
+            trialPermits--;
+        }
+        return true;
+    }
+
+    synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++trialSuccesses >= settings.getHalfOpenCalls()) {
+                close();
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (count >= settings.getMinCalls() && failures >= settings.getFailureRateThreshold() * count) {
+                open();
+            }
+        }
+    }
+
+    /** A permitted call was cancelled before it had an outcome; a trial permit is handed back. */
+    synchronized void onCancel() {
+        if (state == State.HALF_OPEN) {
+            trialPermits++;
+        }
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    /**
+     * Milliseconds until an open breaker lets trial calls through; 0 once it may already do so,
+     * though the trial permits can be taken.
+     */
+    synchronized long remainingOpenMillis() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, settings.getOpenDuration() - (clock.getAsLong() - openedAt));
+    }
+
+    /** Failure rate (0-1) over the window that was last recorded while closed. */
+    synchronized double failureRate() {
+        return count == 0 ? 0 : (double) failures / count;
+    }
+
+    private void record(boolean failure) {
+        if (count == failed.length) {
+            failures -= failed[next] ? 1 : 0;
+        } else {
+            count++;
+        }
+        failed[next] = failure;
+        failures += failure ? 1 : 0;
+        next = (next + 1) % failed.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = clock.getAsLong();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        count = 0;
+        next = 0;
+        failures = 0;
+    }
+}
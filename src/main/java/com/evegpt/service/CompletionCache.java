@@ -0,0 +1,66 @@
+package com.evegpt.service;
+
+import com.evegpt.config.OpenAIProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Exact-match cache of completions, keyed by the SHA-256 of the fully serialized request body
+ * (model, system prompt, enhanced prompt with its source context, max_tokens, temperature).
+ * Requests hotter than {@code openai.cache.max-temperature} bypass it.
+ */
+@Component
+public class CompletionCache {
+    
+    private final OpenAIProperties.Cache settings;
+    private final Cache<String, String> cache;
+    
+    public CompletionCache(OpenAIProperties openAIProperties, MeterRegistry meterRegistry) {
+        this.settings = openAIProperties.getCache();
+        // Caffeine cannot bound both count and weight, so every entry weighs at least budget / maxEntries:
+        // staying under the byte budget then also keeps the entry count under maxEntries.
+        long minimumWeight = Math.max(1, settings.getMaxWeightBytes() / settings.getMaxEntries());
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(settings.getTtl()))
+                .maximumWeight(settings.getMaxWeightBytes())
+                .<String, String>weigher((key, content) ->
+                        (int) Math.max(minimumWeight, ReactiveCache.estimateBytes(key) + ReactiveCache.estimateBytes(content)))
+                .recordStats()
+                .build(), "openai.completion");
+    }
+    
+    public boolean isCacheable(Double temperature) {
+        return settings.isEnabled() && (temperature == null || temperature <= settings.getMaxTemperature());
+    }
+    
+    public Optional<String> get(String key) {
+        return Optional.ofNullable(cache.getIfPresent(key));
+    }
+    
+    public void put(String key, String content) {
+        cache.put(key, content);
+    }
+    
+    /** Digest to feed the serialized request body into; see {@link #keyFor(MessageDigest)}. */
+    public static MessageDigest newKeyDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    /** Cache key for the request body fed into {@code digest}. */
+    public static String keyFor(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
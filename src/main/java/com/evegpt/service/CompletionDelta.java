@@ -0,0 +1,20 @@
+package com.evegpt.service;
+
+/**
+ * One piece of a streamed completion: a content fragment, or the token usage the upstream reports
+ * in its final chunk.
+ */
+public record CompletionDelta(String content, Integer tokensUsed) {
+    
+    public static CompletionDelta content(String content) {
+        return new CompletionDelta(content, null);
+    }
+    
+    public static CompletionDelta usage(int tokensUsed) {
+        return new CompletionDelta(null, tokensUsed);
+    }
+    
+    public boolean hasContent() {
+        return content != null;
+    }
+}
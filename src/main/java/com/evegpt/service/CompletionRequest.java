@@ -0,0 +1,18 @@
+package com.evegpt.service;
+
+import java.util.List;
+
+/**
+ * A chat completion request as sent to the API, and the tokens it counts against the rate limit
+ * (prompt plus {@code max_tokens}). Serialized by {@link OpenAICodec}.
+ */
+public record CompletionRequest(String model, List<Message> messages, Integer maxTokens, Double temperature,
+                                boolean stream, int estimatedTokens) {
+
+    public record Message(String role, String content) {}
+
+    /** The same request in streaming mode, with token usage reported in the last chunk. */
+    public CompletionRequest streaming() {
+        return new CompletionRequest(model, messages, maxTokens, temperature, true, estimatedTokens);
+    }
+}
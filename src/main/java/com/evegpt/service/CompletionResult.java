@@ -0,0 +1,17 @@
+package com.evegpt.service;
+
+/**
+ * Outcome of a completion call: the generated text, whether it was served from the completion
+ * cache instead of the upstream API, and the tokens the upstream reported for it (null when
+ * cached or not reported).
+ */
+public record CompletionResult(String content, boolean cached, Integer tokensUsed) {
+    
+    public static CompletionResult fresh(String content, Integer tokensUsed) {
+        return new CompletionResult(content, false, tokensUsed);
+    }
+    
+    public static CompletionResult fromCache(String content) {
+        return new CompletionResult(content, true, null);
+    }
+}
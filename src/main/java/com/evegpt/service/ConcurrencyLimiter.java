@@ -0,0 +1,283 @@
+package com.evegpt.service;
+
+import com.evegpt.config.ChatProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Limits how many chats run at once, with an AIMD limit: every chat that completes in time while
+ * the limit is at least half used raises it by {@code 1/limit} (about one per round of chats), and
+ * every chat that fails upstream (including running out of OpenAI rate-limit budget) or exceeds
+ * {@code chat.admission.latency-threshold} multiplies it by {@code chat.admission.backoff-ratio}.
+ * Chats beyond the limit wait in a bounded FIFO queue; a full queue rejects new chats at once and a
+ * chat that waits longer than {@code chat.admission.max-queue-time} is rejected too, both with a
+ * {@link ChatRejectedException}.
+ * <p>
+ * Meters: {@code evegpt.admission.queue} (time spent waiting, including rejected waits),
+ * {@code evegpt.admission.rejected} tagged with the reason ({@code queue_full} or
+ * {@code queue_timeout}), and gauges {@code evegpt.admission.limit},
+ * {@code evegpt.admission.in_flight} and {@code evegpt.admission.queued}.
+ */
+@Component
+public class ConcurrencyLimiter {
+
+    private static final Duration MAX_RETRY_AFTER = Duration.ofSeconds(60);
+
+    private final ChatProperties.Admission settings;
+    private final Deque<Waiter> queue = new ArrayDeque<>();
+    private final Timer queueTimer;
+    private final Counter queueFull;
+    private final Counter queueTimeouts;
+    /** Exponentially weighted average chat latency (ms), for Retry-After estimates */
+    private final AtomicLong averageLatency = new AtomicLong(1_000);
+    /** Releases waiting to hand freed slots out; only the first one drains the queue */
+    private final AtomicInteger pendingDrains = new AtomicInteger();
+    private double limit;
+    private int inFlight;
+
+    public ConcurrencyLimiter(ChatProperties chatProperties, MeterRegistry meterRegistry) {
+        this.settings = chatProperties.getAdmission();
+        this.limit = settings.getInitialLimit();
+        this.queueTimer = Timer.builder("evegpt.admission.queue")
+                .description("Time chats waited for a slot")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.queueFull = meterRegistry.counter("evegpt.admission.rejected", "reason", "queue_full");
+        this.queueTimeouts = meterRegistry.counter("evegpt.admission.rejected", "reason", "queue_timeout");
+        Gauge.builder("evegpt.admission.limit", this, ConcurrencyLimiter::limit).register(meterRegistry);
+        Gauge.builder("evegpt.admission.in_flight", this, ConcurrencyLimiter::inFlight).register(meterRegistry);
+        Gauge.builder("evegpt.admission.queued", this, ConcurrencyLimiter::queued).register(meterRegistry);
+    }
+
+    /** Runs {@code chat} once a slot is free, holding the slot until it terminates or is cancelled. */
+    public <T> Mono<T> admit(Supplier<Mono<T>> chat) {
+        if (!settings.isEnabled()) {
+            return Mono.defer(chat);
+        }
+        return acquire().flatMap(permit -> Mono.defer(chat)
+                .doOnSuccess(value -> permit.release(null))
+                .doOnError(permit::release)
+                .doOnCancel(permit::cancel));
+    }
+
+    /**
+     * Like {@link #admit(Supplier)} for a stream of events. The slot is held until the stream ends,
+     * but only the time to its first event is compared with the latency threshold, as long answers
+     * take long to stream without the service being overloaded.
+     */
+    public <T> Flux<T> admitMany(Supplier<Flux<T>> chat) {
+        if (!settings.isEnabled()) {
+            return Flux.defer(chat);
+        }
+        return acquire().flatMapMany(permit -> Flux.defer(chat)
+                .doOnNext(event -> permit.firstEvent())
+                .doOnComplete(() -> permit.release(null))
+                .doOnError(permit::release)
+                .doOnCancel(permit::cancel));
+    }
+
+    public synchronized int limit() {
+        return (int) limit;
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public synchronized int queued() {
+        return queue.size();
+    }
+
+    private Mono<Permit> acquire() {
+        return Mono.create(sink -> {
+            Waiter waiter = new Waiter(sink);
+            boolean admitted = false;
+            boolean rejected = false;
+            synchronized (this) {
+                if (queue.isEmpty() && inFlight < (int) limit) {
+                    inFlight++;
+                    waiter.permit = new Permit();
+                    admitted = true;
+                } else if (queue.size() >= settings.getMaxQueueSize()) {
+                    rejected = true;
+                } else {
+                    queue.addLast(waiter);
+                }
+            }
+            if (admitted) {
+                waiter.grant();
+                return;
+            }
+            if (rejected) {
+                queueFull.increment();
+                sink.error(new ChatRejectedException(true, retryAfter()));
+                return;
+            }
+            Disposable expiry = Schedulers.parallel()
+                    .schedule(() -> expire(waiter), settings.getMaxQueueTime(), TimeUnit.MILLISECONDS);
+            sink.onCancel(() -> {
+                expiry.dispose();
+                abandon(waiter);
+            });
+        });
+    }
+
+    private void expire(Waiter waiter) {
+        synchronized (this) {
+            if (!queue.remove(waiter)) {
+                return;
+            }
+        }
+        queueTimer.record(System.nanoTime() - waiter.enqueued, TimeUnit.NANOSECONDS);
+        queueTimeouts.increment();
+        waiter.sink.error(new ChatRejectedException(false, retryAfter()));
+    }
+
+    /** The caller went away while waiting; a slot granted in the meantime is handed back. */
+    private void abandon(Waiter waiter) {
+        Permit permit;
+        synchronized (this) {
+            if (queue.remove(waiter)) {
+                return;
+            }
+            permit = waiter.permit;
+        }
+        // No permit when the wait expired just before
+        if (permit != null) {
+            permit.cancel();
+        }
+    }
+
+    /**
+     * Frees a slot and hands the freed capacity to waiting chats. The limit grows after a success,
+     * shrinks after an overload and stays put when {@code success} is null (cancelled chats, errors
+     * unrelated to load).
+     */
+    private void release(Boolean success, long latencyMillis) {
+        synchronized (this) {
+            if (Boolean.FALSE.equals(success)) {
+                limit = Math.max(settings.getMinLimit(), limit * settings.getBackoffRatio());
+            } else if (Boolean.TRUE.equals(success) && inFlight * 2 >= limit) {
+                limit = Math.min(settings.getMaxLimit(), limit + 1 / limit);
+            }
+            inFlight--;
+        }
+        if (success != null) {
+            averageLatency.getAndUpdate(average -> (average * 7 + latencyMillis) / 8);
+        }
+        drainQueue();
+    }
+
+    /**
+     * Admits waiting chats up to the limit. A granted chat that fails at once releases its slot on
+     * the granting thread; that nested release only registers here instead of recursing through
+     * the whole queue.
+     */
+    private void drainQueue() {
+        if (pendingDrains.getAndIncrement() != 0) {
+            return;
+        }
+        do {
+            List<Waiter> granted = new ArrayList<>();
+            synchronized (this) {
+                while (!queue.isEmpty() && inFlight < (int) limit) {
+                    inFlight++;
+                    Waiter waiter = queue.pollFirst();
+                    waiter.permit = new Permit();
+                    granted.add(waiter);
+                }
+            }
+            granted.forEach(Waiter::grant);
+        } while (pendingDrains.decrementAndGet() != 0);
+    }
+
+    /** Time for the chats ahead of a new one to drain at the current limit and latency. */
+    private Duration retryAfter() {
+        double rounds;
+        synchronized (this) {
+            rounds = (queue.size() + 1) / Math.max(1, limit);
+        }
+        long millis = (long) Math.ceil(rounds * averageLatency.get());
+        Duration estimate = Duration.ofSeconds(Math.max(1, (millis + 999) / 1000));
+        return estimate.compareTo(MAX_RETRY_AFTER) > 0 ? MAX_RETRY_AFTER : estimate;
+    }
+
+    /**
+     * Failures that mean the upstreams are saturated. A chat turned away by an open circuit breaker
+     * never reached its upstream, whose failures already counted when they opened the breaker.
+     */
+    private static boolean isOverload(Throwable error) {
+        return error instanceof RateLimitedException || error instanceof TimeoutException
+                || Upstream.isUpstreamFailure(error);
+    }
+
+    private final class Waiter {
+
+        private final MonoSink<Permit> sink;
+        private final long enqueued = System.nanoTime();
+        /** Assigned under the limiter's lock when the waiter is admitted */
+        private Permit permit;
+
+        private Waiter(MonoSink<Permit> sink) {
+            this.sink = sink;
+        }
+
+        private void grant() {
+            queueTimer.record(System.nanoTime() - enqueued, TimeUnit.NANOSECONDS);
+            sink.success(permit);
+        }
+    }
+
+    private final class Permit {
+
+        private final long start = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile long firstEvent;
+
+        private void firstEvent() {
+            if (firstEvent == 0) {
+                firstEvent = System.nanoTime();
+            }
+        }
+
+        /** Releases after a chat ended, with {@code error} null when it succeeded. */
+        private void release(Throwable error) {
+            if (released.compareAndSet(false, true)) {
+                long latency = ((firstEvent != 0 ? firstEvent : System.nanoTime()) - start) / 1_000_000;
+                Boolean success;
+                if (error == null) {
+                    success = latency <= settings.getLatencyThreshold();
+                } else {
+                    success = isOverload(error) ? Boolean.FALSE : null;
+                }
+                ConcurrencyLimiter.this.release(success, latency);
+            }
+        }
+
+        private void cancel() {
+            if (released.compareAndSet(false, true)) {
+                ConcurrencyLimiter.this.release(null, 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.evegpt.service;
+
+import com.evegpt.model.WebSearchResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * One session of a multi-turn chat: the source context pinned by its first web-search turn, a
+ * summary of its older turns and its recent turns verbatim. Requests of one session may overlap,
+ * so all state is guarded by the instance lock. Kept by the {@link ConversationStore}.
+ */
+public final class Conversation {
+
+    /** An answered question; {@code tokens} is its prompt cost as two chat messages */
+    public record Turn(String question, String answer, int tokens) {}
+
+    /** What a follow-up sends before its question: the summary of older turns, then the recent turns in order. */
+    public record History(String summary, List<Turn> turns) {
+
+        public static final History NONE = new History(null, List.of());
+
+        public boolean isEmpty() {
+            return summary == null && turns.isEmpty();
+        }
+    }
+
+    /** Turns being folded into a summary, and the summary they extend */
+    record Compaction(String previousSummary, List<Turn> turns) {}
+
+    private static final Pattern PASSAGE_GAP = Pattern.compile(Pattern.quote(PassageRanker.GAP));
+
+    private final String id;
+    private final double followUpCoverage;
+    private SourceContext context = SourceContext.NONE;
+    /** Pinned passages with their source's title, to tell follow-ups from new topics; null until pinned */
+    private Bm25Index passages;
+    private String summary;
+    private final List<Turn> turns = new ArrayList<>();
+    private int turnTokens;
+    private boolean compacting;
+
+    Conversation(String id, double followUpCoverage) {
+        this.id = id;
+        this.followUpCoverage = followUpCoverage;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    public synchronized History history() {
+        return new History(summary, List.copyOf(turns));
+    }
+
+    /**
+     * The pinned context, if one of its passages (with its source's title) contains at least
+     * {@code chat.session.follow-up-coverage} of the question's terms, or the question has no terms
+     * of its own ("and why?"); empty when nothing is pinned or the question moves to another topic.
+     * A single shared word such as "ship" or "fast" is not enough to stay on topic.
+     */
+    public synchronized Optional<SourceContext> contextFor(String question) {
+        if (context.isEmpty()) {
+            return Optional.empty();
+        }
+        List<String> terms = TextAnalyzer.analyze(question);
+        if (terms.isEmpty() || !passages.search(terms, 1, followUpCoverage).isEmpty()) {
+            return Optional.of(context);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Makes {@code context} the one follow-ups reuse, replacing any earlier one. Its sources are
+     * indexed by the passages {@link PassageRanker} selected.
+     */
+    public synchronized void pin(SourceContext context) {
+        Bm25Index index = new Bm25Index();
+        for (WebSearchResult source : context.sources()) {
+            List<String> titleTerms = TextAnalyzer.analyze(source.getTitle() != null ? source.getTitle() : "");
+            for (String passage : PASSAGE_GAP.split(source.getContent() != null ? source.getContent() : "")) {
+                List<String> terms = new ArrayList<>(titleTerms);
+                terms.addAll(TextAnalyzer.analyze(passage));
+                index.add(terms);
+            }
+        }
+        this.context = context;
+        this.passages = index;
+    }
+
+    synchronized void addTurn(Turn turn) {
+        turns.add(turn);
+        turnTokens += turn.tokens();
+    }
+
+    /**
+     * Once the verbatim turns exceed {@code maxTokens}, takes the oldest of them until the rest fit
+     * in half of it, so compaction does not run again on the next turn. Empty when within budget
+     * or while another compaction is running; otherwise {@link #finishCompaction} must follow.
+     */
+    synchronized Optional<Compaction> startCompaction(int maxTokens) {
+        if (compacting || turnTokens <= maxTokens) {
+            return Optional.empty();
+        }
+        int remaining = turnTokens;
+        int count = 0;
+        while (count < turns.size() && remaining > maxTokens / 2) {
+            remaining -= turns.get(count++).tokens();
+        }
+        compacting = true;
+        return Optional.of(new Compaction(summary, List.copyOf(turns.subList(0, count))));
+    }
+
+    /**
+     * Replaces the compacted turns with {@code newSummary}. Without a summary (the upstream failed)
+     * the turns are dropped anyway and the previous summary is kept, so the history stays bounded.
+     */
+    synchronized void finishCompaction(Compaction compaction, String newSummary) {
+        for (Turn turn : compaction.turns()) {
+            // Turns only ever append, so the compacted ones are still at the head
+            turns.remove(0);
+            turnTokens -= turn.tokens();
+        }
+        if (newSummary != null) {
+            summary = newSummary;
+        }
+        compacting = false;
+    }
+
+    /** Approximate retained size, for the store's memory budget. */
+    synchronized int estimateBytes() {
+        int bytes = 200 + ReactiveCache.estimateBytes(id) + ReactiveCache.estimateBytes(summary)
+                + ReactiveCache.estimateBytes(context.message());
+        if (passages != null) {
+            // Postings per term, and the index's document length table
+            bytes += 48 * passages.termCount() + 4 * 1024;
+        }
+        for (WebSearchResult source : context.sources()) {
+            bytes += ReactiveCache.estimateBytes(source.getUrl()) + ReactiveCache.estimateBytes(source.getTitle())
+                    + ReactiveCache.estimateBytes(source.getContent());
+        }
+        for (Turn turn : turns) {
+            bytes += 32 + ReactiveCache.estimateBytes(turn.question()) + ReactiveCache.estimateBytes(turn.answer());
+        }
+        return bytes;
+    }
+}
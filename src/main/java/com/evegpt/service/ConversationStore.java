@@ -0,0 +1,109 @@
+package com.evegpt.service;
+
+import com.evegpt.config.ChatProperties;
+import com.evegpt.config.OpenAIProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Server-side history of chat sessions, keyed by a random {@code session_id} the server issues with
+ * a session's first answer. A request with {@code new_session} starts a session; so does one with an
+ * id the store does not know (made up by the client, expired or evicted), under a new id, so session
+ * ids can be neither chosen nor guessed. A session is only stored once its first turn is recorded. Sessions expire
+ * {@code chat.session.ttl} after their last turn, and the least recently used are evicted beyond
+ * {@code chat.session.max-entries} or {@code chat.session.max-weight-bytes}. When a session's
+ * verbatim turns exceed {@code openai.prompt.history-max-tokens}, the oldest are folded into its
+ * summary by a background completion, at batch priority, so the prompt stays within budget
+ * without delaying the answer.
+ */
+@Component
+public class ConversationStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationStore.class);
+
+    private final ChatProperties.Session settings;
+    private final OpenAIProperties.Prompt promptSettings;
+    private final OpenAIService openAIService;
+    private final PromptTokenizer promptTokenizer;
+    private final MeterRegistry meterRegistry;
+    private final Cache<String, Conversation> cache;
+
+    public ConversationStore(ChatProperties chatProperties, OpenAIProperties openAIProperties, OpenAIService openAIService,
+                             PromptTokenizer promptTokenizer, MeterRegistry meterRegistry) {
+        this.settings = chatProperties.getSession();
+        this.promptSettings = openAIProperties.getPrompt();
+        this.openAIService = openAIService;
+        this.promptTokenizer = promptTokenizer;
+        this.meterRegistry = meterRegistry;
+        // As in the completion cache, a minimum weight per entry also bounds the entry count
+        long minimumWeight = Math.max(1, settings.getMaxWeightBytes() / settings.getMaxEntries());
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMillis(settings.getTtl()))
+                .maximumWeight(settings.getMaxWeightBytes())
+                .<String, Conversation>weigher((id, conversation) -> (int) Math.max(minimumWeight, conversation.estimateBytes()))
+                .recordStats()
+                .build(), "chat.session");
+    }
+
+    /**
+     * A new conversation under a fresh id when {@code newSession} is set or {@code sessionId} is
+     * unknown, otherwise the one issued as {@code sessionId}; null when sessions are disabled or
+     * the request asks for neither.
+     */
+    public Conversation open(String sessionId, boolean newSession) {
+        if (!settings.isEnabled() || (!newSession && (sessionId == null || sessionId.isBlank()))) {
+            return null;
+        }
+        Conversation conversation = newSession ? null : cache.getIfPresent(sessionId);
+        if (conversation != null) {
+            return conversation;
+        }
+        return new Conversation(UUID.randomUUID().toString(), settings.getFollowUpCoverage());
+    }
+
+    /**
+     * Adds an answered turn to the session and starts compaction if its history is over budget;
+     * false, storing nothing, when the answer is a placeholder for an unusable upstream response.
+     */
+    public boolean record(Conversation conversation, String question, String answer) {
+        if (OpenAIService.isPlaceholder(answer)) {
+            return false;
+        }
+        int tokens = 2 * PromptTokenizer.TOKENS_PER_MESSAGE + promptTokenizer.count(question) + promptTokenizer.count(answer);
+        conversation.addTurn(new Conversation.Turn(question, answer, tokens));
+        // Stores a new session, and re-puts a known one so the cache weighs its new size
+        cache.put(conversation.id(), conversation);
+        conversation.startCompaction(promptSettings.getHistoryMaxTokens())
+                .ifPresent(compaction -> compact(conversation, compaction));
+        return true;
+    }
+
+    private void compact(Conversation conversation, Conversation.Compaction compaction) {
+        logger.debug("Compacting {} turns of session {}", compaction.turns().size(), conversation.id());
+        openAIService.summarize(compaction.previousSummary(), compaction.turns())
+                .contextWrite(OpenAIRateLimiter::batchPriority)
+                .subscribe(summary -> {
+                    conversation.finishCompaction(compaction, summary);
+                    reweigh(conversation);
+                    meterRegistry.counter("evegpt.chat.session.compactions", "outcome", "success").increment();
+                }, error -> {
+                    logger.warn("Failed to summarize session {}, dropping its oldest turns: {}", conversation.id(), error.toString());
+                    conversation.finishCompaction(compaction, null);
+                    reweigh(conversation);
+                    meterRegistry.counter("evegpt.chat.session.compactions", "outcome", "error").increment();
+                });
+    }
+
+    /** Re-puts a session that is still stored so the cache weighs its new size. */
+    private void reweigh(Conversation conversation) {
+        cache.asMap().replace(conversation.id(), conversation);
+    }
+}
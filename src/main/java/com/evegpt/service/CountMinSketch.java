@@ -0,0 +1,70 @@
+package com.evegpt.service;
+
+/**
+ * Approximate frequency counts in fixed memory: {@code DEPTH} rows of {@code width} counters, each
+ * row indexed by its own hash of the key. A key's estimate is the smallest of its counters, which
+ * never undercounts and overcounts only through collisions. Updates are conservative (only the
+ * counters at the current minimum are incremented), which keeps the overcount of rare keys low.
+ * {@link #halve()} ages every count so recent traffic outweighs old traffic.
+ *
+ * <p>Not thread-safe: callers must serialize access.
+ */
+public class CountMinSketch {
+
+    private static final int DEPTH = 4;
+    /** Odd multipliers giving each row an independent hash */
+    private static final int[] SEEDS = {0x9E3779B1, 0x85EBCA77, 0xC2B2AE3D, 0x27D4EB2F};
+
+    private final int[][] counters;
+    private final int mask;
+
+    /** {@code width} is rounded up to a power of two. */
+    public CountMinSketch(int width) {
+        int size = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+        this.counters = new int[DEPTH][size];
+        this.mask = size - 1;
+    }
+
+    /** Counts one occurrence of {@code key} and returns its new estimate. */
+    public int add(String key) {
+        int hash = key.hashCode();
+        int estimate = estimate(hash);
+        for (int row = 0; row < DEPTH; row++) {
+            int index = index(hash, row);
+            if (counters[row][index] == estimate && estimate < Integer.MAX_VALUE) {
+                counters[row][index]++;
+            }
+        }
+        return estimate + 1;
+    }
+
+    public int estimate(String key) {
+        return estimate(key.hashCode());
+    }
+
+    /** Halves every counter. */
+    public void halve() {
+        for (int[] row : counters) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] >>>= 1;
+            }
+        }
+    }
+
+    public int width() {
+        return mask + 1;
+    }
+
+    private int estimate(int hash) {
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters[row][index(hash, row)]);
+        }
+        return estimate;
+    }
+
+    private int index(int hash, int row) {
+        int mixed = hash * SEEDS[row];
+        return (mixed ^ (mixed >>> 16)) & mask;
+    }
+}
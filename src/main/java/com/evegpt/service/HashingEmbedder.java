@@ -0,0 +1,97 @@
+package com.evegpt.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Turns text into a fixed-size, L2-normalized vector with the hashing trick, without any model
+ * or external call. Features are content words, adjacent word pairs (word order) and character
+ * trigrams (plurals, typos); each is hashed to a signed bucket. Dot products of two embeddings are
+ * their cosine similarity.
+ */
+public class HashingEmbedder {
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "are", "as", "at", "be", "by", "can", "do", "does", "for", "from",
+            "how", "i", "in", "is", "it", "me", "my", "of", "on", "or", "should", "tell", "that", "the", "to",
+            "what", "whats", "with", "you", "your");
+
+    private static final float WORD_WEIGHT = 1.0f;
+    private static final float BIGRAM_WEIGHT = 0.5f;
+    private static final float TRIGRAM_WEIGHT = 0.2f;
+
+    private final int dimensions;
+
+    public HashingEmbedder(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    public float[] embed(String text) {
+        float[] vector = new float[dimensions];
+        List<String> words = contentWords(text);
+
+        for (int i = 0; i < words.size(); i++) {
+            String word = words.get(i);
+            add(vector, "w:" + word, WORD_WEIGHT);
+            if (i > 0) {
+                add(vector, "b:" + words.get(i - 1) + ' ' + word, BIGRAM_WEIGHT);
+            }
+            String padded = '^' + word + '$';
+            for (int j = 0; j + 3 <= padded.length(); j++) {
+                add(vector, "t:" + padded.substring(j, j + 3), TRIGRAM_WEIGHT);
+            }
+        }
+
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+
+    public static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private static List<String> contentWords(String text) {
+        List<String> words = new ArrayList<>();
+        for (String token : text.toLowerCase(Locale.ROOT).replace("'", "").split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty() && !STOP_WORDS.contains(token)) {
+                words.add(token);
+            }
+        }
+        return words;
+    }
+
+    private void add(float[] vector, String feature, float weight) {
+        long hash = fnv1a(feature);
+        int bucket = (int) Long.remainderUnsigned(hash >>> 1, dimensions);
+        vector[bucket] += (hash & 1) == 0 ? weight : -weight;
+    }
+
+    private static long fnv1a(String feature) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : feature.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        // Final avalanche so the low bit used for the sign is well mixed
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
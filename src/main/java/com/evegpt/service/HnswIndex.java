@@ -0,0 +1,233 @@
+package com.evegpt.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Hierarchical navigable small world graph for approximate nearest-neighbour search over
+ * L2-normalized vectors, scored by dot product (cosine similarity). Removal marks a node as
+ * deleted so the graph stays navigable; the graph is rebuilt from the live nodes once deleted
+ * nodes make up half of it.
+ *
+ * <p>Not thread-safe: callers must serialize writes against reads.
+ */
+public class HnswIndex {
+
+    private final int maxLinks;
+    private final int maxLinksLayer0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+
+    private final Map<Integer, Node> nodes = new HashMap<>();
+    private Node entryPoint;
+    private int deletedCount;
+
+    public HnswIndex(int maxLinks, int efConstruction) {
+        this.maxLinks = maxLinks;
+        this.maxLinksLayer0 = 2 * maxLinks;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(maxLinks);
+    }
+
+    public int size() {
+        return nodes.size() - deletedCount;
+    }
+
+    /** Adds a vector under a new id; ids must not be reused, even after removal. */
+    public void add(int id, float[] vector) {
+        if (nodes.containsKey(id)) {
+            throw new IllegalArgumentException("Duplicate id: " + id);
+        }
+        int level = (int) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * levelMultiplier);
+        insert(new Node(id, vector, level));
+    }
+
+    public void remove(int id) {
+        Node node = nodes.get(id);
+        if (node == null || node.deleted) {
+            return;
+        }
+        node.deleted = true;
+        deletedCount++;
+        if (deletedCount * 2 > nodes.size()) {
+            rebuild();
+        }
+    }
+
+    /** Returns up to {@code k} live nodes closest to {@code query}, most similar first. */
+    public List<Match> search(float[] query, int k, int ef) {
+        if (entryPoint == null) {
+            return List.of();
+        }
+        Node current = entryPoint;
+        for (int layer = entryPoint.level; layer > 0; layer--) {
+            current = greedyClosest(query, current, layer);
+        }
+        List<Match> matches = new ArrayList<>();
+        for (Candidate candidate : searchLayer(query, current, Math.max(ef, k), 0)) {
+            if (!candidate.node.deleted) {
+                matches.add(new Match(candidate.node.id, candidate.similarity));
+                if (matches.size() == k) {
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    private void insert(Node node) {
+        nodes.put(node.id, node);
+        if (entryPoint == null) {
+            entryPoint = node;
+            return;
+        }
+
+        Node current = entryPoint;
+        for (int layer = entryPoint.level; layer > node.level; layer--) {
+            current = greedyClosest(node.vector, current, layer);
+        }
+        for (int layer = Math.min(node.level, entryPoint.level); layer >= 0; layer--) {
+            List<Candidate> candidates = searchLayer(node.vector, current, efConstruction, layer);
+            int limit = layer == 0 ? maxLinksLayer0 : maxLinks;
+            for (int i = 0; i < Math.min(maxLinks, candidates.size()); i++) {
+                Node neighbour = candidates.get(i).node;
+                node.link(layer, neighbour.id);
+                neighbour.link(layer, node.id);
+                if (neighbour.linkCount[layer] > limit) {
+                    prune(neighbour, layer, limit);
+                }
+            }
+            current = candidates.get(0).node;
+        }
+        if (node.level > entryPoint.level) {
+            entryPoint = node;
+        }
+    }
+
+    private Node greedyClosest(float[] query, Node start, int layer) {
+        Node best = start;
+        float bestSimilarity = HashingEmbedder.dot(query, start.vector);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int i = 0; i < best.linkCount[layer]; i++) {
+                Node neighbour = nodes.get(best.links[layer][i]);
+                float similarity = HashingEmbedder.dot(query, neighbour.vector);
+                if (similarity > bestSimilarity) {
+                    best = neighbour;
+                    bestSimilarity = similarity;
+                    improved = true;
+                }
+            }
+        }
+        return best;
+    }
+
+    /** Beam search within one layer; returns up to {@code ef} candidates, most similar first. */
+    private List<Candidate> searchLayer(float[] query, Node start, int ef, int layer) {
+        Set<Integer> visited = new HashSet<>();
+        PriorityQueue<Candidate> frontier = new PriorityQueue<>(Comparator.comparingDouble(Candidate::similarity).reversed());
+        PriorityQueue<Candidate> results = new PriorityQueue<>(Comparator.comparingDouble(Candidate::similarity));
+
+        Candidate first = new Candidate(start, HashingEmbedder.dot(query, start.vector));
+        visited.add(start.id);
+        frontier.add(first);
+        results.add(first);
+
+        while (!frontier.isEmpty()) {
+            Candidate closest = frontier.poll();
+            if (results.size() >= ef && closest.similarity < results.peek().similarity) {
+                break;
+            }
+            Node node = closest.node;
+            for (int i = 0; i < node.linkCount[layer]; i++) {
+                int neighbourId = node.links[layer][i];
+                if (!visited.add(neighbourId)) {
+                    continue;
+                }
+                Node neighbour = nodes.get(neighbourId);
+                float similarity = HashingEmbedder.dot(query, neighbour.vector);
+                if (results.size() < ef || similarity > results.peek().similarity) {
+                    Candidate candidate = new Candidate(neighbour, similarity);
+                    frontier.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidate> ordered = new ArrayList<>(results);
+        ordered.sort(Comparator.comparingDouble(Candidate::similarity).reversed());
+        return ordered;
+    }
+
+    /** Keeps only the {@code limit} links of {@code node} most similar to it. */
+    private void prune(Node node, int layer, int limit) {
+        List<Candidate> linked = new ArrayList<>(node.linkCount[layer]);
+        for (int i = 0; i < node.linkCount[layer]; i++) {
+            Node neighbour = nodes.get(node.links[layer][i]);
+            linked.add(new Candidate(neighbour, HashingEmbedder.dot(node.vector, neighbour.vector)));
+        }
+        linked.sort(Comparator.comparingDouble(Candidate::similarity).reversed());
+        node.linkCount[layer] = 0;
+        for (int i = 0; i < limit; i++) {
+            node.link(layer, linked.get(i).node.id);
+        }
+    }
+
+    private void rebuild() {
+        List<Node> live = nodes.values().stream().filter(node -> !node.deleted).toList();
+        nodes.clear();
+        entryPoint = null;
+        deletedCount = 0;
+        for (Node node : live) {
+            insert(new Node(node.id, node.vector, node.level));
+        }
+    }
+
+    public record Match(int id, float similarity) {}
+
+    private record Candidate(Node node, float similarity) {}
+
+    private static final class Node {
+        final int id;
+        final float[] vector;
+        final int level;
+        final int[][] links;
+        final int[] linkCount;
+        boolean deleted;
+
+        Node(int id, float[] vector, int level) {
+            this.id = id;
+            this.vector = vector;
+            this.level = level;
+            this.links = new int[level + 1][];
+            this.linkCount = new int[level + 1];
+            for (int layer = 0; layer <= level; layer++) {
+                links[layer] = new int[4];
+            }
+        }
+
+        void link(int layer, int target) {
+            for (int i = 0; i < linkCount[layer]; i++) {
+                if (links[layer][i] == target) {
+                    return;
+                }
+            }
+            if (linkCount[layer] == links[layer].length) {
+                links[layer] = Arrays.copyOf(links[layer], links[layer].length * 2);
+            }
+            links[layer][linkCount[layer]++] = target;
+        }
+    }
+}
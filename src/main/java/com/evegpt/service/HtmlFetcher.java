@@ -0,0 +1,157 @@
+package com.evegpt.service;
+
+import com.evegpt.config.WebScrapingProperties;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+/**
+ * Fetches HTML pages over the pooled, non-blocking scraping {@link WebClient}. Search pages are
+ * buffered and parsed into a Jsoup document; articles are streamed through
+ * {@link PageTextExtractor}, which stops reading once {@code web.scraping.max-page-chars} of
+ * text are collected. Parsing runs on the {@link ScrapingExecutor} so it never occupies an event loop.
+ * Each host is an {@link Upstream} with its own latency-based timeout and circuit breaker, capped
+ * by {@code web.scraping.timeout}; page fetches (not searches) are hedged.
+ */
+@Component
+public class HtmlFetcher {
+    
+    private static final Logger logger = LoggerFactory.getLogger(HtmlFetcher.class);
+    /** Body buffers requested ahead of the parser */
+    private static final int BODY_PREFETCH = 4;
+    
+    private final WebClient webClient;
+    private final ScrapingExecutor scrapingExecutor;
+    private final WebScrapingProperties webScrapingProperties;
+    private final UpstreamRegistry upstreamRegistry;
+    private final SingleFlight<String, String> searches = new SingleFlight<>();
+    private final SingleFlight<String, FetchedPage> pages = new SingleFlight<>();
+    
+    public HtmlFetcher(@Qualifier("scrapingWebClient") WebClient webClient, ScrapingExecutor scrapingExecutor,
+                       WebScrapingProperties webScrapingProperties, UpstreamRegistry upstreamRegistry) {
+        this.webClient = webClient;
+        this.scrapingExecutor = scrapingExecutor;
+        this.webScrapingProperties = webScrapingProperties;
+        this.upstreamRegistry = upstreamRegistry;
+    }
+    
+    /**
+     * Fetches a search results page; not hedged, as search engines throttle repeated queries.
+     * Concurrent fetches of the same URL share one download; each caller parses its own document.
+     */
+    public Mono<Document> fetch(String url) {
+        Upstream upstream = upstream(url);
+        return searches.execute(url, () -> upstream.call(() -> download(url)))
+                .flatMap(html -> scrapingExecutor.submit(() -> Jsoup.parse(html, url)));
+    }
+    
+    /** Fetches the main text of an article, hedged when the host is slow to answer. */
+    public Mono<String> fetchPage(String url) {
+        return fetchIfModified(url, null, null).map(FetchedPage::text);
+    }
+    
+    /**
+     * Conditional GET: sends the validators of a previously fetched copy and completes with a
+     * {@link FetchedPage#notModified() not-modified} page when the server answers 304.
+     * Concurrent fetches of the same URL share one download and its extracted text.
+     * Used for articles, so it is hedged.
+     */
+    public Mono<FetchedPage> fetchIfModified(String url, String etag, String lastModified) {
+        Upstream upstream = upstream(url);
+        return pages.execute(url + '\n' + etag + '\n' + lastModified,
+                () -> upstream.hedgedCall(() -> extract(url, etag, lastModified)));
+    }
+    
+    private Upstream upstream(String url) {
+        return upstreamRegistry.get(URI.create(url).getHost(), Duration.ofMillis(webScrapingProperties.getTimeout()));
+    }
+    
+    private Mono<String> download(String url) {
+        return request(url, null, null).exchangeToMono(response -> response.statusCode().is2xxSuccessful()
+                ? response.bodyToMono(String.class)
+                : response.createError());
+    }
+    
+    /**
+     * Streams the body into {@link PageTextExtractor} on the scraping executor. Closing the
+     * input stream, whether the text budget was reached or the call was cancelled, cancels the
+     * rest of the body, so the connection stops being read.
+     */
+    private Mono<FetchedPage> extract(String url, String etag, String lastModified) {
+        int maxChars = webScrapingProperties.getMaxPageChars();
+        return request(url, etag, lastModified).exchangeToMono(response -> {
+            if (response.statusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+                return response.releaseBody().thenReturn(FetchedPage.notModified(etag, lastModified));
+            }
+            if (!response.statusCode().is2xxSuccessful()) {
+                return response.createError();
+            }
+            HttpHeaders headers = response.headers().asHttpHeaders();
+            MediaType contentType = headers.getContentType();
+            Charset charset = contentType != null && contentType.getCharset() != null
+                    ? contentType.getCharset() : StandardCharsets.UTF_8;
+            Flux<DataBuffer> body = response.bodyToFlux(DataBuffer.class);
+            return Mono.using(() -> DataBufferUtils.subscriberInputStream(body, BODY_PREFETCH),
+                            in -> scrapingExecutor.submit(() ->
+                                    PageTextExtractor.extract(new InputStreamReader(in, charset), url, maxChars)),
+                            HtmlFetcher::closeQuietly)
+                    .map(text -> new FetchedPage(text, headers.getETag(), headers.getFirst(HttpHeaders.LAST_MODIFIED)));
+        });
+    }
+    
+    private WebClient.RequestHeadersSpec<?> request(String url, String etag, String lastModified) {
+        logger.debug("Fetching: {}", url);
+        // URLs are already encoded, so pass a URI to avoid the template encoder escaping them again
+        return webClient.get()
+                .uri(URI.create(url))
+                .header(HttpHeaders.USER_AGENT, webScrapingProperties.getUserAgent())
+                .accept(MediaType.TEXT_HTML, MediaType.APPLICATION_XHTML_XML, MediaType.ALL)
+                .headers(headers -> {
+                    if (etag != null) {
+                        headers.setIfNoneMatch(etag);
+                    }
+                    if (lastModified != null) {
+                        headers.set(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+                    }
+                });
+    }
+    
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close page body", e);
+        }
+    }
+    
+    /** Extracted page text with its cache validators; {@code text} is null when not modified. */
+    public record FetchedPage(String text, String etag, String lastModified) {
+        
+        static FetchedPage notModified(String etag, String lastModified) {
+            return new FetchedPage(null, etag, lastModified);
+        }
+        
+        public boolean notModified() {
+            return text == null;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.evegpt.service;
+
+import java.util.Arrays;
+
+/**
+ * The most recent call latencies of an upstream, in a fixed-size ring buffer. Percentiles are read
+ * from a sorted copy of the window that is refreshed every {@value #REFRESH_INTERVAL} samples (every
+ * sample while the window is smaller than that), so the timeout lookup on each call does not sort.
+ * Thread-safe.
+ */
+final class LatencyWindow {
+
+    private static final int REFRESH_INTERVAL = 16;
+
+    private final long[] samples;
+    private int count;
+    private int next;
+    private long[] sorted = new long[0];
+    private int sinceRefresh;
+
+    LatencyWindow(int size) {
+        this.samples = new long[size];
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        if (count < REFRESH_INTERVAL || ++sinceRefresh >= REFRESH_INTERVAL) {
+            sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            sinceRefresh = 0;
+        }
+    }
+
+    synchronized int size() {
+        return count;
+    }
+
+    /** Latency (ns) at {@code percentile} (0-1) of the last sorted window, or 0 without samples. */
+    synchronized long percentile(double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
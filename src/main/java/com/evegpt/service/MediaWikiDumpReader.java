@@ -0,0 +1,118 @@
+package com.evegpt.service;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streams articles out of a MediaWiki XML export ({@code Special:Export} or a database dump, plain
+ * or gzipped) with StAX, so dumps larger than the heap can be read. Only main-namespace pages that
+ * are not redirects are returned, with their wikitext reduced to plain text.
+ */
+public class MediaWikiDumpReader {
+
+    private static final Pattern COMMENT = Pattern.compile("<!--.*?-->", Pattern.DOTALL);
+    private static final Pattern REFERENCE = Pattern.compile("<ref[^>/]*/>|<ref[^>]*>.*?</ref>", Pattern.DOTALL);
+    private static final Pattern TEMPLATE = Pattern.compile("\\{\\{[^{}]*}}");
+    private static final Pattern TABLE_MARKUP = Pattern.compile("(?m)^\\s*(\\{\\||\\|}|\\|-|[|!]\\s*)");
+    private static final Pattern FILE_LINK = Pattern.compile("\\[\\[(?:File|Image|Category):[^\\[\\]]*(?:\\[\\[[^\\]]*]][^\\[\\]]*)*]]",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern PIPED_LINK = Pattern.compile("\\[\\[[^|\\]]*\\|([^\\]]*)]]");
+    private static final Pattern LINK = Pattern.compile("\\[\\[([^\\]]*)]]");
+    private static final Pattern EXTERNAL_LINK = Pattern.compile("\\[https?://\\S+\\s?([^\\]]*)]");
+    private static final Pattern HTML_TAG = Pattern.compile("</?[a-zA-Z][^>]*>");
+    private static final Pattern FORMATTING = Pattern.compile("'{2,}|^=+\\s*|\\s*=+$|^[*#:;]+\\s*", Pattern.MULTILINE);
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final XMLInputFactory xmlInputFactory = XMLInputFactory.newFactory();
+
+    public MediaWikiDumpReader() {
+        // Dumps are local, trusted files, but there is still no reason to resolve entities
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /** Reads every article in the dump, returning how many were passed to {@code consumer}. */
+    public int read(Path dump, Consumer<Article> consumer) throws IOException {
+        try (InputStream in = open(dump)) {
+            XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(in);
+            try {
+                return readPages(reader, consumer);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed MediaWiki dump: " + dump, e);
+        }
+    }
+
+    private static InputStream open(Path dump) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(dump), 64 * 1024);
+        return dump.getFileName().toString().endsWith(".gz") ? new GZIPInputStream(in, 64 * 1024) : in;
+    }
+
+    private static int readPages(XMLStreamReader reader, Consumer<Article> consumer) throws XMLStreamException {
+        int count = 0;
+        String title = null;
+        String namespace = null;
+        String text = null;
+        boolean redirect = false;
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                switch (reader.getLocalName()) {
+                    case "page" -> {
+                        title = null;
+                        namespace = null;
+                        text = null;
+                        redirect = false;
+                    }
+                    case "title" -> title = reader.getElementText();
+                    case "ns" -> namespace = reader.getElementText();
+                    case "redirect" -> redirect = true;
+                    case "text" -> text = reader.getElementText();
+                    default -> { }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("page")) {
+                if (title != null && text != null && !redirect
+                        && (namespace != null ? namespace.equals("0") : !title.contains(":"))) {
+                    consumer.accept(new Article(title, toPlainText(text)));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /** Reduces wikitext to readable text; deliberately approximate, it only has to feed the index. */
+    static String toPlainText(String wikitext) {
+        String text = COMMENT.matcher(wikitext).replaceAll(" ");
+        text = REFERENCE.matcher(text).replaceAll(" ");
+        // Innermost templates first, until nested infoboxes and navboxes are gone
+        String previous;
+        do {
+            previous = text;
+            text = TEMPLATE.matcher(text).replaceAll(" ");
+        } while (!text.equals(previous));
+        text = FILE_LINK.matcher(text).replaceAll(" ");
+        text = TABLE_MARKUP.matcher(text).replaceAll("");
+        text = PIPED_LINK.matcher(text).replaceAll("$1");
+        text = LINK.matcher(text).replaceAll("$1");
+        text = EXTERNAL_LINK.matcher(text).replaceAll("$1");
+        text = HTML_TAG.matcher(text).replaceAll(" ");
+        text = FORMATTING.matcher(text).replaceAll("");
+        return WHITESPACE.matcher(text).replaceAll(" ").trim();
+    }
+
+    public record Article(String title, String text) {}
+}
@@ -0,0 +1,245 @@
+package com.evegpt.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.web.reactive.function.BodyInserter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+
+/**
+ * Reads and writes chat completion bodies with Jackson's streaming API, without object trees or
+ * intermediate strings. Requests are generated straight into a buffer from the connection's
+ * (pooled) buffer factory. Responses are fed buffer by buffer, as they arrive, to a non-blocking
+ * parser that keeps only {@code choices[0].message.content} and {@code usage}. Streamed chunks are
+ * read the same way for {@code choices[0].delta.content}.
+ */
+public class OpenAICodec {
+
+    /** Room for the JSON around the message contents */
+    private static final int ENVELOPE_BYTES = 256;
+
+    private final JsonFactory jsonFactory;
+
+    public OpenAICodec(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /** Writes {@code request} into a fresh buffer for every subscription, so retries can resend it. */
+    public BodyInserter<DataBuffer, ReactiveHttpOutputMessage> inserter(CompletionRequest request) {
+        return (message, context) -> message.writeWith(Mono.fromCallable(() -> write(request, message.bufferFactory())));
+    }
+
+    /** Serializes {@code request} into a buffer from {@code bufferFactory}; the caller releases it. */
+    public DataBuffer write(CompletionRequest request, DataBufferFactory bufferFactory) {
+        int size = ENVELOPE_BYTES;
+        for (CompletionRequest.Message message : request.messages()) {
+            // Mostly ASCII; multi-byte text makes the buffer grow once
+            size += message.content().length() + ENVELOPE_BYTES / 4;
+        }
+        DataBuffer buffer = bufferFactory.allocateBuffer(size);
+        boolean written = false;
+        try {
+            write(request, buffer.asOutputStream());
+            written = true;
+            return buffer;
+        } finally {
+            if (!written) {
+                DataBufferUtils.release(buffer);
+            }
+        }
+    }
+
+    /**
+     * SHA-256 (hex) of the serialized request, computed as it is generated. Identical requests
+     * serialize to identical bytes: fields and messages are always written in the same order.
+     */
+    public String cacheKey(CompletionRequest request) {
+        MessageDigest digest = CompletionCache.newKeyDigest();
+        write(request, new DigestOutputStream(OutputStream.nullOutputStream(), digest));
+        return CompletionCache.keyFor(digest);
+    }
+
+    private void write(CompletionRequest request, OutputStream out) {
+        try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeStringField("model", request.model());
+            generator.writeArrayFieldStart("messages");
+            for (CompletionRequest.Message message : request.messages()) {
+                generator.writeStartObject();
+                generator.writeStringField("role", message.role());
+                generator.writeStringField("content", message.content());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeFieldName("max_tokens");
+            if (request.maxTokens() != null) {
+                generator.writeNumber(request.maxTokens());
+            } else {
+                generator.writeNull();
+            }
+            generator.writeFieldName("temperature");
+            if (request.temperature() != null) {
+                generator.writeNumber(request.temperature());
+            } else {
+                generator.writeNull();
+            }
+            if (request.stream()) {
+                generator.writeBooleanField("stream", true);
+                generator.writeObjectFieldStart("stream_options");
+                generator.writeBooleanField("include_usage", true);
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serialize completion request", e);
+        }
+    }
+
+    /**
+     * Parses a completion response from its body buffers, releasing each once it is consumed.
+     * Fails with a {@link com.fasterxml.jackson.core.JsonProcessingException} on malformed JSON.
+     */
+    public Mono<ParsedCompletion> readCompletion(Flux<DataBuffer> body) {
+        return Mono.defer(() -> {
+            CompletionReader reader;
+            try {
+                reader = new CompletionReader(jsonFactory.createNonBlockingByteBufferParser(), "message");
+            } catch (IOException e) {
+                return Mono.error(e);
+            }
+            return body.concatMap(buffer -> {
+                        try {
+                            reader.feed(buffer);
+                            return Mono.<ParsedCompletion>empty();
+                        } catch (IOException e) {
+                            return Mono.error(e);
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .then(Mono.fromCallable(reader::finish));
+        });
+    }
+
+    /** Parses one streamed chunk for {@code choices[0].delta.content} and the final usage. */
+    public ParsedCompletion readChunk(String chunk) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(chunk)) {
+            CompletionReader reader = new CompletionReader(parser, "delta");
+            reader.readAvailable();
+            return reader.result();
+        }
+    }
+
+    /**
+     * What the codec keeps of a completion: the content of the first choice (null if absent),
+     * whether there was any choice, the reported usage (each null if absent) and the time spent
+     * parsing, excluding waits for the network.
+     */
+    public record ParsedCompletion(String content, boolean hasChoice, Integer promptTokens, Integer completionTokens,
+                                   Integer totalTokens, long parseNanos) {}
+
+    /** Pulls tokens from a parser, matching them against the few paths the service reads. */
+    private static final class CompletionReader {
+
+        private final JsonParser parser;
+        /** {@code message} for completions, {@code delta} for streamed chunks */
+        private final String messageField;
+        private String content;
+        private boolean hasChoice;
+        private Integer promptTokens;
+        private Integer completionTokens;
+        private Integer totalTokens;
+        private long parseNanos;
+
+        private CompletionReader(JsonParser parser, String messageField) {
+            this.parser = parser;
+            this.messageField = messageField;
+        }
+
+        private void feed(DataBuffer buffer) throws IOException {
+            long start = System.nanoTime();
+            ByteBufferFeeder feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+            try (DataBuffer.ByteBufferIterator buffers = buffer.readableByteBuffers()) {
+                while (buffers.hasNext()) {
+                    ByteBuffer bytes = buffers.next();
+                    feeder.feedInput(bytes);
+                    readAvailable();
+                }
+            }
+            parseNanos += System.nanoTime() - start;
+        }
+
+        private ParsedCompletion finish() throws IOException {
+            long start = System.nanoTime();
+            ((ByteBufferFeeder) parser.getNonBlockingInputFeeder()).endOfInput();
+            readAvailable();
+            parser.close();
+            parseNanos += System.nanoTime() - start;
+            return result();
+        }
+
+        /** Consumes every token the input fed so far completes. */
+        private void readAvailable() throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                JsonStreamContext context = parser.getParsingContext();
+                switch (token) {
+                    case START_OBJECT -> hasChoice |= isFirstChoice(context.getParent());
+                    case VALUE_STRING -> {
+                        if ("content".equals(context.getCurrentName()) && isFirstChoiceField(context.getParent(), messageField)) {
+                            content = parser.getText();
+                        }
+                    }
+                    case VALUE_NUMBER_INT -> {
+                        if (isRootField(context.getParent(), "usage")) {
+                            switch (context.getCurrentName()) {
+                                case "prompt_tokens" -> promptTokens = parser.getIntValue();
+                                case "completion_tokens" -> completionTokens = parser.getIntValue();
+                                case "total_tokens" -> totalTokens = parser.getIntValue();
+                                default -> { }
+                            }
+                        }
+                    }
+                    default -> { }
+                }
+            }
+        }
+
+        private ParsedCompletion result() {
+            return new ParsedCompletion(content, hasChoice, promptTokens, completionTokens, totalTokens, parseNanos);
+        }
+
+        /** {@code context} is the object of {@code choices[0]}, positioned on {@code field}. */
+        private static boolean isFirstChoiceField(JsonStreamContext context, String field) {
+            return context != null && context.inObject() && field.equals(context.getCurrentName())
+                    && isFirstChoice(context.getParent());
+        }
+
+        /** {@code context} is the {@code choices} array, positioned on its first element. */
+        private static boolean isFirstChoice(JsonStreamContext context) {
+            return context != null && context.inArray() && context.getCurrentIndex() == 0
+                    && isRootField(context.getParent(), "choices");
+        }
+
+        /** {@code context} is the top-level object, positioned on {@code field}. */
+        private static boolean isRootField(JsonStreamContext context, String field) {
+            return context != null && context.inObject() && field.equals(context.getCurrentName())
+                    && context.getParent() != null && context.getParent().inRoot();
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.evegpt.service;
+
+import com.evegpt.config.OpenAIProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Paces completions to the account's requests-per-minute and tokens-per-minute limits with two
+ * token buckets that refill continuously over a minute. A completion costs one request and its
+ * estimated tokens (prompt plus {@code max_tokens}, which is what the API charges against the
+ * limit when the request arrives). Completions that do not fit wait in a queue where interactive
+ * chats go ahead of batch prompts, FIFO otherwise; one that would wait longer than
+ * {@code openai.rate-limit.max-wait} fails with a {@link RateLimitedException} instead.
+ * <p>
+ * The buckets follow the API's view: {@code x-ratelimit-limit-*} headers replace the configured
+ * limits, {@code x-ratelimit-remaining-*} lower the local balance when the API has counted more
+ * (other clients of the same key, for one), and a 429 pauses all sending for its
+ * {@code retry-after}.
+ * <p>
+ * Meters: {@code evegpt.openai.ratelimit.wait} (tagged with the priority),
+ * {@code evegpt.openai.ratelimit.rejected}, and gauges {@code evegpt.openai.ratelimit.available}
+ * tagged {@code requests} or {@code tokens}.
+ */
+@Component
+public class OpenAIRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpenAIRateLimiter.class);
+
+    private static final long WINDOW_MILLIS = 60_000;
+    private static final Object PRIORITY_KEY = Priority.class;
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    /** Order in which waiting completions are sent. */
+    public enum Priority { INTERACTIVE, BATCH }
+
+    private final OpenAIProperties.RateLimit settings;
+    private final Bucket requests;
+    private final Bucket tokens;
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>(
+            Comparator.comparing((Waiter waiter) -> waiter.priority).thenComparingLong(waiter -> waiter.sequence));
+    private final AtomicLong sequence = new AtomicLong();
+    private final MeterRegistry meterRegistry;
+    private final Counter rejections;
+    private long lastRefill = nowMillis();
+    private long pausedUntil;
+    private Disposable drainTimer;
+
+    public OpenAIRateLimiter(OpenAIProperties openAIProperties, MeterRegistry meterRegistry) {
+        this.settings = openAIProperties.getRateLimit();
+        this.requests = new Bucket(settings.getRequestsPerMinute());
+        this.tokens = new Bucket(settings.getTokensPerMinute());
+        this.meterRegistry = meterRegistry;
+        this.rejections = Counter.builder("evegpt.openai.ratelimit.rejected")
+                .description("Completions rejected because they would wait too long for rate-limit budget")
+                .register(meterRegistry);
+        Gauge.builder("evegpt.openai.ratelimit.available", this, limiter -> limiter.available(limiter.requests))
+                .tag("budget", "requests").register(meterRegistry);
+        Gauge.builder("evegpt.openai.ratelimit.available", this, limiter -> limiter.available(limiter.tokens))
+                .tag("budget", "tokens").register(meterRegistry);
+    }
+
+    /** Marks completions made under the returned context as batch work, queued behind interactive chats. */
+    public static Context batchPriority(Context context) {
+        return context.put(PRIORITY_KEY, Priority.BATCH);
+    }
+
+    /**
+     * Completes once a request and {@code estimatedTokens} fit the limits, taking them from the
+     * budget; the priority comes from the subscriber context.
+     */
+    public Mono<Void> acquire(int estimatedTokens) {
+        if (!settings.isEnabled()) {
+            return Mono.empty();
+        }
+        return Mono.deferContextual(context -> {
+            Priority priority = priority(context);
+            long start = System.nanoTime();
+            return Mono.<Void>create(sink -> enqueue(new Waiter(sink, priority, estimatedTokens, sequence.getAndIncrement())))
+                    .doOnSuccess(done -> Timer.builder("evegpt.openai.ratelimit.wait")
+                            .tag("priority", priority.name().toLowerCase(Locale.ROOT))
+                            .publishPercentileHistogram()
+                            .register(meterRegistry)
+                            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    /** Aligns the buckets with the {@code x-ratelimit-*} headers of an API response. */
+    public void recalibrate(HttpHeaders headers) {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        synchronized (this) {
+            refill();
+            requests.align(headerValue(headers, "x-ratelimit-limit-requests"),
+                    headerValue(headers, "x-ratelimit-remaining-requests"));
+            tokens.align(headerValue(headers, "x-ratelimit-limit-tokens"),
+                    headerValue(headers, "x-ratelimit-remaining-tokens"));
+        }
+    }
+
+    /**
+     * Stops sending after a 429 until the API's {@code retry-after} (or the token reset) has
+     * passed, and returns that delay.
+     */
+    public Duration pause(HttpHeaders headers) {
+        Duration delay = retryAfter(headers);
+        logger.warn("OpenAI rate limit reached, pausing completions for {} ms", delay.toMillis());
+        synchronized (this) {
+            pausedUntil = Math.max(pausedUntil, nowMillis() + delay.toMillis());
+        }
+        recalibrate(headers);
+        return delay;
+    }
+
+    /** The delay a 429 asks for: {@code retry-after}, else the token or request reset, else a second. */
+    public static Duration retryAfter(HttpHeaders headers) {
+        return parseDuration(headers.getFirst(HttpHeaders.RETRY_AFTER), true)
+                .or(() -> parseDuration(headers.getFirst("x-ratelimit-reset-tokens"), false))
+                .or(() -> parseDuration(headers.getFirst("x-ratelimit-reset-requests"), false))
+                .orElse(Duration.ofSeconds(1));
+    }
+
+    private void enqueue(Waiter waiter) {
+        boolean admitted = false;
+        Duration rejectedFor = null;
+        synchronized (this) {
+            refill();
+            if (queue.isEmpty() && fits(waiter)) {
+                take(waiter);
+                admitted = true;
+            } else {
+                long wait = estimateWait(waiter);
+                if (wait > settings.getMaxWait()) {
+                    rejectedFor = Duration.ofMillis(wait);
+                } else {
+                    queue.add(waiter);
+                    scheduleDrain();
+                }
+            }
+        }
+        if (admitted) {
+            waiter.sink.success();
+            return;
+        }
+        if (rejectedFor != null) {
+            rejections.increment();
+            waiter.sink.error(new RateLimitedException("OpenAI rate limit budget exhausted", rejectedFor));
+            return;
+        }
+        Disposable expiry = Schedulers.parallel().schedule(() -> expire(waiter), settings.getMaxWait(), TimeUnit.MILLISECONDS);
+        waiter.sink.onCancel(() -> {
+            expiry.dispose();
+            remove(waiter);
+        });
+    }
+
+    /** A batch prompt kept waiting behind interactive chats gives up after the maximum wait. */
+    private void expire(Waiter waiter) {
+        long wait;
+        synchronized (this) {
+            if (!queue.remove(waiter)) {
+                return;
+            }
+            wait = estimateWait(waiter);
+        }
+        rejections.increment();
+        waiter.sink.error(new RateLimitedException("OpenAI rate limit budget exhausted", Duration.ofMillis(wait)));
+    }
+
+    private void remove(Waiter waiter) {
+        synchronized (this) {
+            queue.remove(waiter);
+        }
+        // The next waiter may fit now that this one has left the head of the queue
+        drain();
+    }
+
+    /** Sends every waiter at the head of the queue that fits, then sleeps until the next one will. */
+    private void drain() {
+        List<Waiter> admitted = new ArrayList<>();
+        synchronized (this) {
+            drainTimer = null;
+            refill();
+            while (!queue.isEmpty() && fits(queue.peek())) {
+                Waiter waiter = queue.poll();
+                take(waiter);
+                admitted.add(waiter);
+            }
+            if (!queue.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+        admitted.forEach(waiter -> waiter.sink.success());
+    }
+
+    /** Must hold the lock. */
+    private void scheduleDrain() {
+        if (drainTimer != null) {
+            drainTimer.dispose();
+        }
+        long delay = Math.max(1, timeUntilFits(queue.peek()));
+        drainTimer = Schedulers.parallel().schedule(this::drain, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private boolean fits(Waiter waiter) {
+        return nowMillis() >= pausedUntil && requests.level >= 1 && tokens.level >= tokens.cost(waiter.tokens);
+    }
+
+    private void take(Waiter waiter) {
+        requests.level -= 1;
+        tokens.level -= tokens.cost(waiter.tokens);
+    }
+
+    private long timeUntilFits(Waiter waiter) {
+        long paused = Math.max(0, pausedUntil - nowMillis());
+        return Math.max(paused, Math.max(requests.timeUntil(1), tokens.timeUntil(tokens.cost(waiter.tokens))));
+    }
+
+    /** Time until {@code waiter} and every queued completion that would be sent before it fit. */
+    private long estimateWait(Waiter waiter) {
+        double requestsAhead = 1;
+        double tokensAhead = tokens.cost(waiter.tokens);
+        for (Waiter queued : queue) {
+            if (queued.priority.compareTo(waiter.priority) <= 0) {
+                requestsAhead += 1;
+                tokensAhead += tokens.cost(queued.tokens);
+            }
+        }
+        long paused = Math.max(0, pausedUntil - nowMillis());
+        return Math.max(paused, Math.max(requests.timeUntil(requestsAhead), tokens.timeUntil(tokensAhead)));
+    }
+
+    private void refill() {
+        long now = nowMillis();
+        long elapsed = now - lastRefill;
+        lastRefill = now;
+        requests.refill(elapsed);
+        tokens.refill(elapsed);
+    }
+
+    private synchronized double available(Bucket bucket) {
+        refill();
+        return bucket.level;
+    }
+
+    private static Priority priority(ContextView context) {
+        return context.getOrDefault(PRIORITY_KEY, Priority.INTERACTIVE);
+    }
+
+    private static Double headerValue(HttpHeaders headers, String name) {
+        String value = headers.getFirst(name);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses {@code retry-after} seconds, or the API's reset durations such as {@code 20ms},
+     * {@code 1s} or {@code 6m0s}.
+     */
+    static Optional<Duration> parseDuration(String value, boolean plainSeconds) {
+        if (value == null || value.isBlank()) {
+            return Optional.empty();
+        }
+        String text = value.trim();
+        if (plainSeconds && text.matches("\\d+(\\.\\d+)?")) {
+            return Optional.of(Duration.ofMillis((long) Math.ceil(Double.parseDouble(text) * 1000)));
+        }
+        Matcher matcher = DURATION_PART.matcher(text);
+        double millis = 0;
+        boolean matched = false;
+        while (matcher.find()) {
+            double amount = Double.parseDouble(matcher.group(1));
+            millis += switch (matcher.group(2)) {
+                case "h" -> amount * 3_600_000;
+                case "m" -> amount * 60_000;
+                case "s" -> amount * 1_000;
+                default -> amount;
+            };
+            matched = true;
+        }
+        return matched ? Optional.of(Duration.ofMillis((long) Math.ceil(millis))) : Optional.empty();
+    }
+
+    private static long nowMillis() {
+        return System.nanoTime() / 1_000_000;
+    }
+
+    /** Budget refilling at {@code capacity} per minute, starting full. */
+    private static final class Bucket {
+
+        private double capacity;
+        private double level;
+
+        private Bucket(double capacity) {
+            this.capacity = capacity;
+            this.level = capacity;
+        }
+
+        private void refill(long elapsedMillis) {
+            level = Math.min(capacity, level + elapsedMillis * capacity / WINDOW_MILLIS);
+        }
+
+        /** Costs above the capacity could never be paid; they wait for a full bucket instead. */
+        private double cost(double amount) {
+            return Math.min(amount, capacity);
+        }
+
+        private long timeUntil(double amount) {
+            double missing = amount - level;
+            return missing <= 0 ? 0 : (long) Math.ceil(missing * WINDOW_MILLIS / capacity);
+        }
+
+        private void align(Double limit, Double remaining) {
+            if (limit != null && limit > 0) {
+                capacity = limit;
+                level = Math.min(level, capacity);
+            }
+            if (remaining != null) {
+                level = Math.min(level, remaining);
+            }
+        }
+    }
+
+    private static final class Waiter {
+
+        private final MonoSink<Void> sink;
+        private final Priority priority;
+        private final int tokens;
+        private final long sequence;
+
+        private Waiter(MonoSink<Void> sink, Priority priority, int tokens, long sequence) {
+            this.sink = sink;
+            this.priority = priority;
+            this.tokens = tokens;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -2,61 +2,261 @@ package com.evegpt.service;
 
 import com.evegpt.model.ChatRequest;
 import com.evegpt.model.WebSearchResult;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.evegpt.config.OpenAIProperties;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
-import java.util.HashMap;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class OpenAIService {
     
     private static final Logger logger = LoggerFactory.getLogger(OpenAIService.class);
     
+    private static final String NO_RESPONSE = "No response generated";
+    private static final String UNPARSEABLE_RESPONSE = "Unable to parse response from OpenAI";
+    private static final String RESPONSE_ERROR = "Error processing response from OpenAI";
+    /** Placeholder answers for unusable upstream responses; never cached */
+    private static final Set<String> FALLBACK_MESSAGES = Set.of(NO_RESPONSE, UNPARSEABLE_RESPONSE, RESPONSE_ERROR);
+    
+    private static final String SOURCES_INTRODUCTION = "Recent EVE Online Information from Web Sources:\n";
+    private static final String SOURCES_INSTRUCTIONS = "\nPlease answer the user's questions based on the above sources. "
+            + "Reference specific sources when applicable and ensure the information is current.\n";
+    private static final String SUMMARY_INTRODUCTION = "Summary of the earlier conversation:\n";
+    private static final String SUMMARY_PROMPT = """
+            Summarize this conversation between a user and an EVE Online assistant for the assistant's own use \
+            in later turns. Keep the facts the user may refer back to: ships, fittings, skills, numbers, \
+            systems, decisions and open questions. Be terse; do not address the user.
+            """;
+    
+    private static final Duration RETRY_BACKOFF = Duration.ofMillis(500);
+    
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SERVER_SENT_EVENT =
+            new ParameterizedTypeReference<>() {};
+    
     private final OpenAIProperties openAIProperties;
     
     private final WebClient webClient;
-    private final ObjectMapper objectMapper;
+    private final OpenAICodec codec;
+    private final CompletionCache completionCache;
+    private final PromptTokenizer promptTokenizer;
+    private final ChatMetrics chatMetrics;
+    private final Upstream completions;
+    private final Upstream streams;
+    private final OpenAIRateLimiter rateLimiter;
+    private final SingleFlight<String, CompletionResult> inFlightCompletions = new SingleFlight<>();
     
-    public OpenAIService(WebClient.Builder webClientBuilder, ObjectMapper objectMapper, OpenAIProperties openAIProperties) {
-        this.webClient = webClientBuilder.build();
-        this.objectMapper = objectMapper;
+    public OpenAIService(@Qualifier("openAIWebClient") WebClient webClient, ObjectMapper objectMapper,
+                         OpenAIProperties openAIProperties, CompletionCache completionCache,
+                         PromptTokenizer promptTokenizer, ChatMetrics chatMetrics, UpstreamRegistry upstreamRegistry,
+                         OpenAIRateLimiter rateLimiter) {
+        this.webClient = webClient;
+        this.codec = new OpenAICodec(objectMapper.getFactory());
         this.openAIProperties = openAIProperties;
+        this.completionCache = completionCache;
+        this.promptTokenizer = promptTokenizer;
+        this.chatMetrics = chatMetrics;
+        this.rateLimiter = rateLimiter;
+        // Time to a full completion and time to the first streamed chunk are tracked separately;
+        // both are paced by the rate limiter, so a 429 means its budget ran out, not an outage
+        Duration timeout = Duration.ofMillis(openAIProperties.getApi().getTimeout());
+        this.completions = upstreamRegistry.get("openai", timeout, true);
+        this.streams = upstreamRegistry.get("openai-stream", timeout, true);
     }
     
-    public Mono<String> generateResponse(ChatRequest request, List<WebSearchResult> searchResults) {
-        String enhancedPrompt = buildEnhancedPrompt(request.getUserPrompt(), searchResults);
-        
-        Map<String, Object> requestBody = new HashMap<>();
-    requestBody.put("model", openAIProperties.getModel());
-        requestBody.put("messages", List.of(
-            Map.of("role", "system", "content", getSystemPrompt()),
-            Map.of("role", "user", "content", enhancedPrompt)
-        ));
-        requestBody.put("max_tokens", request.getMaxTokens());
-        requestBody.put("temperature", request.getTemperature());
-        
+    /**
+     * Answers {@code request} from the given sources and, for a session, its earlier conversation.
+     * See {@link #buildRequest} for the message layout.
+     */
+    public Mono<CompletionResult> generateResponse(ChatRequest request, SourceContext context,
+                                                   Conversation.History history) {
+        return Mono.defer(() -> {
+            long buildStart = System.nanoTime();
+            CompletionRequest completionRequest = buildRequest(request, context, history);
+            chatMetrics.recordStage("prompt_build", buildStart);
+            
+            if (!completionCache.isCacheable(request.getTemperature())) {
+                return callUpstream(completionRequest);
+            }
+            String cacheKey = codec.cacheKey(completionRequest);
+            Optional<String> cached = completionCache.get(cacheKey);
+            if (cached.isPresent()) {
+                logger.debug("Serving completion from cache");
+                return Mono.just(CompletionResult.fromCache(cached.get()));
+            }
+            // Identical concurrent requests share one upstream call
+            return inFlightCompletions.execute(cacheKey, () -> callUpstream(completionRequest)
+                    .doOnNext(result -> {
+                        if (!FALLBACK_MESSAGES.contains(result.content())) {
+                            completionCache.put(cacheKey, result.content());
+                        }
+                    }));
+        });
+    }
+    
+    /**
+     * Sends a completion request once the {@link OpenAIRateLimiter} has budget for it, with the
+     * upstream's latency-based timeout, retrying connection errors, timeouts, 429 and 5xx responses
+     * with exponential backoff. A 429 also pauses the rate limiter for the API's retry-after, and
+     * one that outlasts the retries fails with a {@link RateLimitedException}. Nothing is sent while
+     * the upstream's circuit breaker is open. The body is written into a pooled buffer per attempt
+     * and the response parsed from its buffers as they arrive, see {@link OpenAICodec}.
+     */
+    private Mono<CompletionResult> callUpstream(CompletionRequest completionRequest) {
         logger.debug("Sending request to OpenAI API");
         
-        return webClient.post()
-                .uri(openAIProperties.getApi().getUrl())
-                .header("Authorization", "Bearer " + openAIProperties.getApi().getKey())
-                .header("Content-Type", "application/json")
-                .bodyValue(requestBody)
-                .retrieve()
-                .bodyToMono(String.class)
-                .map(this::extractResponseContent)
+        Mono<OpenAICodec.ParsedCompletion> response = Mono.defer(() -> rateLimiter.acquire(completionRequest.estimatedTokens())
+                        .then(completions.call(() -> webClient.post()
+                                .uri(openAIProperties.getApi().getUrl())
+                                .header("Authorization", "Bearer " + openAIProperties.getApi().getKey())
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .body(codec.inserter(completionRequest))
+                                .retrieve()
+                                .toEntityFlux(DataBuffer.class)
+                                .flatMap(entity -> {
+                                    rateLimiter.recalibrate(entity.getHeaders());
+                                    return codec.readCompletion(entity.getBody());
+                                }))))
+                .doOnError(WebClientResponseException.TooManyRequests.class, error -> rateLimiter.pause(error.getHeaders()))
+                .retryWhen(Retry.backoff(openAIProperties.getApi().getMaxRetries(), RETRY_BACKOFF)
+                        .filter(Upstream::isUpstreamFailure)
+                        .doBeforeRetry(signal -> logger.warn("Retrying OpenAI request after: {}", signal.failure().toString()))
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .onErrorMap(WebClientResponseException.TooManyRequests.class, OpenAIService::rateLimited);
+        
+        return chatMetrics.timed("openai_request", response)
+                .map(this::toResult)
+                .onErrorResume(JsonProcessingException.class, e -> {
+                    logger.error("Error parsing OpenAI response", e);
+                    return Mono.just(CompletionResult.fresh(RESPONSE_ERROR, null));
+                })
                 .doOnError(error -> logger.error("Error calling OpenAI API", error));
     }
     
-    private String getSystemPrompt() {
+    /**
+     * Streams the completion as incremental content deltas, using the upstream's
+     * {@code stream: true} server-sent event mode. The last delta carries the token usage.
+     * The latency-based timeout applies to the first chunk and {@code openai.api.timeout} to the
+     * gaps between chunks. Streams wait for the {@link OpenAIRateLimiter} like completions but are
+     * not retried, as deltas may already have been relayed; a 429 fails with a
+     * {@link RateLimitedException}.
+     */
+    public Flux<CompletionDelta> streamResponse(ChatRequest request, SourceContext context, Conversation.History history) {
+        long buildStart = System.nanoTime();
+        CompletionRequest completionRequest = buildRequest(request, context, history).streaming();
+        chatMetrics.recordStage("prompt_build", buildStart);
+        
+        logger.debug("Sending streaming request to OpenAI API");
+        
+        return rateLimiter.acquire(completionRequest.estimatedTokens())
+                .thenMany(streams.stream(() -> webClient.post()
+                        .uri(openAIProperties.getApi().getUrl())
+                        .header("Authorization", "Bearer " + openAIProperties.getApi().getKey())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.TEXT_EVENT_STREAM)
+                        .body(codec.inserter(completionRequest))
+                        .retrieve()
+                        .toEntityFlux(SERVER_SENT_EVENT)
+                        .flatMapMany(entity -> {
+                            rateLimiter.recalibrate(entity.getHeaders());
+                            return entity.getBody();
+                        }), Duration.ofMillis(openAIProperties.getApi().getTimeout())))
+                .doOnError(WebClientResponseException.TooManyRequests.class, error -> rateLimiter.pause(error.getHeaders()))
+                .onErrorMap(WebClientResponseException.TooManyRequests.class, OpenAIService::rateLimited)
+                .mapNotNull(ServerSentEvent::data)
+                .takeWhile(data -> !"[DONE]".equals(data.trim()))
+                .mapNotNull(this::parseDelta)
+                .doOnError(error -> logger.error("Error streaming from OpenAI API", error));
+    }
+    
+    /**
+     * Condenses earlier turns, continuing {@code previousSummary} if there is one, into a summary of
+     * at most {@code openai.prompt.summary-max-tokens}. Not cached; fails when the upstream gives
+     * no usable answer.
+     */
+    public Mono<String> summarize(String previousSummary, List<Conversation.Turn> turns) {
+        return Mono.defer(() -> {
+            StringBuilder transcript = new StringBuilder();
+            if (previousSummary != null) {
+                transcript.append("Summary so far:\n").append(previousSummary).append("\n\n");
+            }
+            for (Conversation.Turn turn : turns) {
+                transcript.append("User: ").append(turn.question()).append("\n")
+                        .append("Assistant: ").append(turn.answer()).append("\n\n");
+            }
+            int maxTokens = openAIProperties.getPrompt().getSummaryMaxTokens();
+            CompletionRequest completionRequest = new CompletionRequest(openAIProperties.getModel(), List.of(
+                    new CompletionRequest.Message("system", SUMMARY_PROMPT),
+                    new CompletionRequest.Message("user", transcript.toString())),
+                    maxTokens, 0.0, false, promptTokenizer.countMessages(SUMMARY_PROMPT, transcript.toString()) + maxTokens);
+            return callUpstream(completionRequest)
+                    .map(CompletionResult::content)
+                    .filter(summary -> !isPlaceholder(summary))
+                    .switchIfEmpty(Mono.error(() -> new IllegalStateException("No summary generated")));
+        });
+    }
+    
+    /** Whether {@code content} stands in for an unusable upstream response rather than being an answer. */
+    public static boolean isPlaceholder(String content) {
+        return content == null || FALLBACK_MESSAGES.contains(content);
+    }
+    
+    private static RateLimitedException rateLimited(WebClientResponseException.TooManyRequests error) {
+        return new RateLimitedException("OpenAI API rate limit reached", OpenAIRateLimiter.retryAfter(error.getHeaders()));
+    }
+    
+    /**
+     * Lays the messages out from the most to the least stable, so consecutive requests of a session
+     * share the longest possible byte-identical prefix, which the provider's prompt caching bills
+     * and serves faster: the static system prompt, the source context (pinned for a session's
+     * follow-ups), the summary of older turns, the recent turns, and last the question.
+     */
+    CompletionRequest buildRequest(ChatRequest request, SourceContext context, Conversation.History history) {
+        String systemPrompt = getSystemPrompt();
+        List<CompletionRequest.Message> messages = new ArrayList<>();
+        List<String> counted = new ArrayList<>();
+        messages.add(new CompletionRequest.Message("system", systemPrompt));
+        counted.add(systemPrompt);
+        if (!context.isEmpty()) {
+            messages.add(new CompletionRequest.Message("system", context.message()));
+            counted.add(context.message());
+        }
+        if (history.summary() != null) {
+            messages.add(new CompletionRequest.Message("system", SUMMARY_INTRODUCTION + history.summary()));
+            counted.add(SUMMARY_INTRODUCTION + history.summary());
+        }
+        int estimatedTokens = 0;
+        for (Conversation.Turn turn : history.turns()) {
+            messages.add(new CompletionRequest.Message("user", turn.question()));
+            messages.add(new CompletionRequest.Message("assistant", turn.answer()));
+            estimatedTokens += turn.tokens();
+        }
+        messages.add(new CompletionRequest.Message("user", request.getUserPrompt()));
+        counted.add(request.getUserPrompt());
+        estimatedTokens += promptTokenizer.countMessages(counted.toArray(String[]::new))
+                + (request.getMaxTokens() != null ? request.getMaxTokens() : 0);
+        return new CompletionRequest(openAIProperties.getModel(), messages,
+                request.getMaxTokens(), request.getTemperature(), false, estimatedTokens);
+    }
+    
+    String getSystemPrompt() {
         return """
                 You are an expert assistant specializing in EVE Online, the massively multiplayer online game.
                 
@@ -79,45 +279,85 @@ public class OpenAIService {
                 """;
     }
     
-    private String buildEnhancedPrompt(String originalPrompt, List<WebSearchResult> searchResults) {
-        StringBuilder enhancedPrompt = new StringBuilder();
-        enhancedPrompt.append("User Query: ").append(originalPrompt).append("\n\n");
-        
-        if (!searchResults.isEmpty()) {
-            enhancedPrompt.append("Recent EVE Online Information from Web Sources:\n");
-            
-            for (WebSearchResult result : searchResults) {
-                enhancedPrompt.append("\nSource: ").append(result.getSource())
-                            .append(" (").append(result.getUrl()).append(")\n")
-                            .append("Title: ").append(result.getTitle()).append("\n")
-                            .append("Content: ").append(result.getContent()).append("\n");
+    /**
+     * Renders the sources into the context message. Sources are added in the order given (most
+     * relevant first) while they fit the {@code openai.prompt.max-input-tokens} budget, less the
+     * system prompt, the question and, in a session, the history and summary allowances; the first
+     * one that does not fit is cut to the remaining tokens and the rest are left out.
+     */
+    public SourceContext buildSourceContext(String question, List<WebSearchResult> searchResults, boolean session) {
+        OpenAIProperties.Prompt budget = openAIProperties.getPrompt();
+        int remaining = budget.getMaxInputTokens()
+                - promptTokenizer.countMessages(getSystemPrompt(), SOURCES_INTRODUCTION + SOURCES_INSTRUCTIONS, question)
+                - (session ? budget.getHistoryMaxTokens() + budget.getSummaryMaxTokens() + PromptTokenizer.TOKENS_PER_MESSAGE : 0);
+        int minSourceTokens = budget.getMinSourceTokens();
+        StringBuilder sources = new StringBuilder();
+        int included = 0;
+        for (WebSearchResult result : searchResults) {
+            String heading = "\nSource: " + result.getSource() + " (" + result.getUrl() + ")\n"
+                    + "Title: " + result.getTitle() + "\n"
+                    + "Content: ";
+            String content = result.getContent() + "\n";
+            int headingTokens = promptTokenizer.count(heading);
+            int contentTokens = promptTokenizer.count(content);
+            if (headingTokens + contentTokens <= remaining) {
+                sources.append(heading).append(content);
+                remaining -= headingTokens + contentTokens;
+                included++;
+                continue;
             }
-            
-            enhancedPrompt.append("\nPlease provide a comprehensive answer based on the user's query and the above sources. ");
-            enhancedPrompt.append("Reference specific sources when applicable and ensure the information is current.\n");
+            if (remaining - headingTokens >= minSourceTokens) {
+                // Two tokens are kept back for the trailing ellipsis and newline
+                sources.append(heading).append(promptTokenizer.truncate(content, remaining - headingTokens - 2)).append("...\n");
+                included++;
+            }
+            break;
+        }
+        if (included < searchResults.size()) {
+            logger.debug("Input token budget reached, {} of {} sources included", included, searchResults.size());
         }
         
-        return enhancedPrompt.toString();
+        if (sources.isEmpty()) {
+            return SourceContext.NONE;
+        }
+        return new SourceContext(SOURCES_INTRODUCTION + sources + SOURCES_INSTRUCTIONS, searchResults);
+    }
+    
+    /** Maps a parsed response to its answer, or to a placeholder when it has none, and counts its tokens. */
+    CompletionResult toResult(OpenAICodec.ParsedCompletion completion) {
+        // Parsing runs as the buffers arrive; the stage records the time spent parsing, not waiting
+        chatMetrics.recordStage("response_parse", System.nanoTime() - completion.parseNanos());
+        Integer tokensUsed = recordUsage(completion);
+        if (!completion.hasChoice()) {
+            return CompletionResult.fresh(UNPARSEABLE_RESPONSE, tokensUsed);
+        }
+        return CompletionResult.fresh(completion.content() != null ? completion.content() : NO_RESPONSE, tokensUsed);
     }
     
-    private String extractResponseContent(String apiResponse) {
+    /**
+     * Reads {@code choices[0].delta.content}, or the usage of the final chunk, from one streamed
+     * chunk; null when the chunk has neither.
+     */
+    private CompletionDelta parseDelta(String chunk) {
         try {
-            JsonNode root = objectMapper.readTree(apiResponse);
-            JsonNode choices = root.get("choices");
-            
-            if (choices != null && choices.isArray() && choices.size() > 0) {
-                JsonNode firstChoice = choices.get(0);
-                JsonNode message = firstChoice.get("message");
-                JsonNode content = message.get("content");
-                
-                return content != null ? content.asText() : "No response generated";
+            OpenAICodec.ParsedCompletion parsed = codec.readChunk(chunk);
+            if (parsed.content() != null && !parsed.content().isEmpty()) {
+                return CompletionDelta.content(parsed.content());
             }
-            
-            return "Unable to parse response from OpenAI";
-            
+            Integer tokensUsed = recordUsage(parsed);
+            return tokensUsed != null ? CompletionDelta.usage(tokensUsed) : null;
         } catch (Exception e) {
-            logger.error("Error parsing OpenAI response", e);
-            return "Error processing response from OpenAI";
+            logger.warn("Skipping unparseable OpenAI stream chunk: {}", chunk, e);
+            return null;
+        }
+    }
+    
+    /** Counts the reported prompt and completion tokens and returns the total, if reported. */
+    private Integer recordUsage(OpenAICodec.ParsedCompletion completion) {
+        if (completion.totalTokens() == null) {
+            return null;
         }
+        chatMetrics.recordTokens(completion.promptTokens(), completion.completionTokens());
+        return completion.totalTokens();
     }
-}
\ No newline at end of file
+}
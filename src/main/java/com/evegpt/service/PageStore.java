@@ -0,0 +1,426 @@
+package com.evegpt.service;
+
+import com.evegpt.config.WebScrapingProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Durable, append-only store of extracted page text. Every write appends a checksummed record to a
+ * single data file; an in-memory index maps the 64-bit hash of each URL to the latest record, and
+ * content is read back through a memory-mapped view of the file so stored pages never have to be
+ * loaded onto the heap up front. The file and its mapping grow in large zero-filled chunks, so
+ * writes do not map the file again; the unused tail is trimmed when the store is closed or
+ * reopened. Validators (ETag / Last-Modified) are kept with each page so stale entries can be
+ * revalidated with a conditional request, and a successful revalidation only appends a small
+ * touch record. Compaction rewrites the file without superseded, touch and expired records once
+ * more than half of it is garbage or it grows past its size limit.
+ *
+ * <p>All methods do file I/O and must be called off the event loop.
+ */
+@Component
+public class PageStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(PageStore.class);
+
+    private static final String DATA_FILE = "pages.dat";
+    private static final int PAGE_RECORD = 0x50414745;   // "PAGE"
+    private static final int TOUCH_RECORD = 0x544F5543;  // "TOUC"
+    /** Record header: type, payload length, CRC32 of the payload */
+    private static final int HEADER_BYTES = 12;
+    private static final long COMPACTION_MIN_BYTES = 1024 * 1024;
+    /** Smallest step the data file and its mapping grow by; larger files grow by half their size */
+    private static final long MIN_GROWTH_BYTES = 4 * 1024 * 1024;
+
+    private final WebScrapingProperties.PageStore settings;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, IndexEntry> index = new HashMap<>();
+    private Path dataFile;
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    /** End of the last record; the file and its mapping extend beyond it up to {@code capacity} */
+    private long fileSize;
+    private long capacity;
+    private long liveBytes;
+    private boolean enabled;
+
+    public PageStore(WebScrapingProperties webScrapingProperties) {
+        this.settings = webScrapingProperties.getPageStore();
+        if (settings.isEnabled()) {
+            try {
+                this.dataFile = Path.of(settings.getDirectory()).resolve(DATA_FILE);
+                open();
+                this.enabled = true;
+                logger.info("Page store opened: {} ({} pages, {} bytes)", dataFile, index.size(), fileSize);
+                long now = System.currentTimeMillis();
+                if (index.values().stream().anyMatch(entry -> entry.freshUntil() + settings.getRetention() < now)) {
+                    compact();
+                } else {
+                    compactIfNeeded();
+                }
+            } catch (IOException | UncheckedIOException e) {
+                logger.error("Unable to open page store in {}, continuing without it", settings.getDirectory(), e);
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Optional<StoredPage> get(String url) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            IndexEntry entry = index.get(hash(url));
+            if (entry == null || !entry.url().equals(url)) {
+                return Optional.empty();
+            }
+            String content = StandardCharsets.UTF_8.decode(mapped.slice(entry.contentOffset(), entry.contentLength())).toString();
+            return Optional.of(new StoredPage(url, content, entry.etag(), entry.lastModified(), entry.fetchedAt(), entry.freshUntil()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** URLs of all stored pages, fresh or not. */
+    public List<String> urls() {
+        if (!enabled) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            return index.values().stream().map(IndexEntry::url).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(String url, String content, String etag, String lastModified) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        ByteBuffer payload = encodePage(url, content, etag, lastModified, now, now + settings.getTtl());
+        lock.writeLock().lock();
+        try {
+            long offset = append(PAGE_RECORD, payload);
+            apply(PAGE_RECORD, payload.rewind(), offset, HEADER_BYTES + payload.limit());
+            compactIfNeeded();
+        } catch (IOException e) {
+            logger.warn("Failed to store page: {}", url, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Marks a stored page fresh again after the upstream confirmed it has not changed. */
+    public void touch(String url) {
+        if (!enabled) {
+            return;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(16)
+                .putLong(hash(url))
+                .putLong(System.currentTimeMillis() + settings.getTtl())
+                .flip();
+        lock.writeLock().lock();
+        try {
+            IndexEntry entry = index.get(hash(url));
+            if (entry != null && entry.url().equals(url)) {
+                long offset = append(TOUCH_RECORD, payload);
+                apply(TOUCH_RECORD, payload.rewind(), offset, HEADER_BYTES + payload.limit());
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to refresh stored page: {}", url, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Rewrites the data file keeping only the newest live record of each page. */
+    public void compact() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            long now = System.currentTimeMillis();
+            List<IndexEntry> live = new ArrayList<>(index.values());
+            live.removeIf(entry -> entry.freshUntil() + settings.getRetention() < now);
+            live.sort(Comparator.comparingLong(IndexEntry::fetchedAt).reversed());
+
+            Path compacted = dataFile.resolveSibling(DATA_FILE + ".compact");
+            long budget = settings.getMaxFileBytes() * 3 / 4;
+            long written = 0;
+            int kept = 0;
+            try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                for (IndexEntry entry : live) {
+                    if (written + entry.recordLength() > budget) {
+                        break;
+                    }
+                    String content = StandardCharsets.UTF_8.decode(mapped.slice(entry.contentOffset(), entry.contentLength())).toString();
+                    ByteBuffer payload = encodePage(entry.url(), content, entry.etag(), entry.lastModified(),
+                            entry.fetchedAt(), entry.freshUntil());
+                    written += writeRecord(out, written, PAGE_RECORD, payload);
+                    kept++;
+                }
+                out.force(true);
+            }
+
+            long before = fileSize;
+            channel.close();
+            Files.move(compacted, dataFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            open();
+            logger.info("Compacted page store: {} -> {} bytes, {} of {} pages kept", before, fileSize, kept, live.size());
+        } catch (IOException e) {
+            logger.error("Page store compaction failed", e);
+            reopenAfterFailedCompaction();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void reopenAfterFailedCompaction() {
+        try {
+            if (!channel.isOpen()) {
+                open();
+            }
+        } catch (IOException e) {
+            logger.error("Page store could not be reopened and is now disabled", e);
+            enabled = false;
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (channel != null && channel.isOpen()) {
+                enabled = false;
+                channel.truncate(fileSize);
+                channel.force(true);
+                channel.close();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Opens the data file and rebuilds the index, dropping a torn record left by a crash and the
+     * zero-filled tail of a store that was not closed.
+     */
+    private void open() throws IOException {
+        Files.createDirectories(dataFile.getParent());
+        channel = FileChannel.open(dataFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        fileSize = channel.size();
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IOException("Page store file exceeds 2 GB: " + dataFile);
+        }
+        capacity = fileSize;
+        remap();
+        index.clear();
+        liveBytes = 0;
+
+        long position = 0;
+        while (position + HEADER_BYTES <= fileSize) {
+            int type = mapped.getInt((int) position);
+            int length = mapped.getInt((int) position + 4);
+            int crc = mapped.getInt((int) position + 8);
+            if ((type != PAGE_RECORD && type != TOUCH_RECORD) || length < 0 || position + HEADER_BYTES + length > fileSize) {
+                break;
+            }
+            ByteBuffer payload = mapped.slice((int) position + HEADER_BYTES, length);
+            if (crc32(payload) != crc) {
+                break;
+            }
+            apply(type, payload, position, HEADER_BYTES + length);
+            position += HEADER_BYTES + length;
+        }
+
+        if (position < fileSize) {
+            if (!isZeroFilled(position)) {
+                logger.warn("Discarding {} trailing bytes of incomplete records in {}", fileSize - position, dataFile);
+            }
+            channel.truncate(position);
+            fileSize = position;
+            capacity = position;
+            remap();
+        }
+    }
+
+    private boolean isZeroFilled(long from) {
+        for (long position = from; position < fileSize; position++) {
+            if (mapped.get((int) position) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void remap() throws IOException {
+        mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, capacity);
+    }
+
+    private long append(int type, ByteBuffer payload) throws IOException {
+        long recordLength = HEADER_BYTES + payload.limit();
+        if (fileSize + recordLength > Integer.MAX_VALUE) {
+            throw new IOException("Page store is full");
+        }
+        if (fileSize + recordLength > capacity) {
+            grow(fileSize + recordLength);
+        }
+        long offset = fileSize;
+        fileSize += writeRecord(channel, offset, type, payload);
+        return offset;
+    }
+
+    /**
+     * Extends the file, zero-filled, to hold at least {@code required} bytes and maps the new size,
+     * so records written up to there are readable without mapping again.
+     */
+    private void grow(long required) throws IOException {
+        long step = Math.max(MIN_GROWTH_BYTES, capacity / 2);
+        capacity = Math.max(required, Math.min(Integer.MAX_VALUE, capacity + step));
+        channel.write(ByteBuffer.allocate(1), capacity - 1);
+        remap();
+    }
+
+    private static int writeRecord(FileChannel target, long offset, int type, ByteBuffer payload) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                .putInt(type)
+                .putInt(payload.limit())
+                .putInt(crc32(payload))
+                .flip();
+        ByteBuffer body = payload.duplicate().rewind();
+        long position = offset;
+        while (header.hasRemaining()) {
+            position += target.write(header, position);
+        }
+        while (body.hasRemaining()) {
+            position += target.write(body, position);
+        }
+        return (int) (position - offset);
+    }
+
+    /** Applies a record to the index; {@code payload} is positioned at its start. */
+    private void apply(int type, ByteBuffer payload, long recordOffset, int recordLength) {
+        long urlHash = payload.getLong();
+        if (type == TOUCH_RECORD) {
+            IndexEntry entry = index.get(urlHash);
+            if (entry != null) {
+                index.put(urlHash, entry.withFreshUntil(payload.getLong()));
+            }
+            return;
+        }
+
+        long fetchedAt = payload.getLong();
+        long freshUntil = payload.getLong();
+        String url = readString(payload);
+        String etag = readString(payload);
+        String lastModified = readString(payload);
+        int contentLength = payload.getInt();
+        int contentOffset = (int) recordOffset + HEADER_BYTES + payload.position();
+
+        IndexEntry previous = index.put(urlHash, new IndexEntry(url, recordLength, contentOffset, contentLength,
+                etag, lastModified, fetchedAt, freshUntil));
+        liveBytes += recordLength - (previous != null ? previous.recordLength() : 0);
+    }
+
+    private void compactIfNeeded() {
+        boolean mostlyGarbage = fileSize > COMPACTION_MIN_BYTES && fileSize - liveBytes > fileSize / 2;
+        if (mostlyGarbage || fileSize > settings.getMaxFileBytes()) {
+            compact();
+        }
+    }
+
+    private static ByteBuffer encodePage(String url, String content, String etag, String lastModified,
+                                         long fetchedAt, long freshUntil) {
+        byte[] urlBytes = url.getBytes(StandardCharsets.UTF_8);
+        byte[] etagBytes = etag != null ? etag.getBytes(StandardCharsets.UTF_8) : null;
+        byte[] lastModifiedBytes = lastModified != null ? lastModified.getBytes(StandardCharsets.UTF_8) : null;
+        byte[] contentBytes = content.getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer payload = ByteBuffer.allocate(24 + 16 + urlBytes.length + contentBytes.length
+                + (etagBytes != null ? etagBytes.length : 0) + (lastModifiedBytes != null ? lastModifiedBytes.length : 0));
+        payload.putLong(hash(url)).putLong(fetchedAt).putLong(freshUntil);
+        putBytes(payload, urlBytes);
+        putBytes(payload, etagBytes);
+        putBytes(payload, lastModifiedBytes);
+        putBytes(payload, contentBytes);
+        return payload.flip();
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = StandardCharsets.UTF_8.decode(buffer.slice(buffer.position(), length)).toString();
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static int crc32(ByteBuffer payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate().rewind());
+        return (int) crc.getValue();
+    }
+
+    /** 64-bit FNV-1a of the URL; collisions are detected by comparing the stored URL. */
+    static long hash(String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : url.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private record IndexEntry(String url, int recordLength, int contentOffset, int contentLength,
+                              String etag, String lastModified, long fetchedAt, long freshUntil) {
+
+        IndexEntry withFreshUntil(long freshUntil) {
+            return new IndexEntry(url, recordLength, contentOffset, contentLength, etag, lastModified, fetchedAt, freshUntil);
+        }
+    }
+
+    public record StoredPage(String url, String content, String etag, String lastModified,
+                             long fetchedAt, long freshUntil) {
+
+        public boolean isFresh() {
+            return System.currentTimeMillis() < freshUntil;
+        }
+    }
+}
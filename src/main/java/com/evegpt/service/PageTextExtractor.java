@@ -0,0 +1,138 @@
+package com.evegpt.service;
+
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Streams the main text out of an HTML page without building its whole DOM. Jsoup's
+ * {@link StreamParser} hands over each element once its end tag has been read; top-level blocks
+ * (paragraphs, headings, lists, tables) are appended as a unit and then removed from the tree, so
+ * only the elements still open are held in memory. Text inside the content container
+ * ({@code #mw-content-text, .article-content, main, .content}) is preferred over the rest of the
+ * body. Scripts, styles and boilerplate such as edit links, navigation boxes and the table of
+ * contents are dropped, and parsing stops once {@code maxChars} characters are collected, leaving
+ * the rest of the input unread.
+ */
+public final class PageTextExtractor {
+
+    private static final Evaluator CONTENT = QueryParser.parse("#mw-content-text, .article-content, main, .content");
+    private static final Evaluator SKIPPED = QueryParser.parse("script, style, noscript, template, head, nav, footer, "
+            + "aside, .mw-editsection, .toc, #toc, .navbox, .catlinks, .noprint, .reference, .mw-references-wrap");
+    /** Emitted whole, with everything nested inside them */
+    private static final Set<String> BLOCKS = Set.of("p", "h1", "h2", "h3", "h4", "h5", "h6", "ul", "ol", "li", "dl",
+            "dt", "dd", "table", "pre", "blockquote", "figcaption");
+    /** Hold blocks; only their loose text is left to emit once their blocks are gone */
+    private static final Set<String> WRAPPERS = Set.of("div", "section", "article", "main", "body");
+
+    private PageTextExtractor() {
+    }
+
+    public static String extract(String html, String baseUri, int maxChars) {
+        try {
+            return extract(new StringReader(html), baseUri, maxChars);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Reads {@code html} until the page ends or {@code maxChars} characters of text are collected. */
+    public static String extract(Reader html, String baseUri, int maxChars) throws IOException {
+        TextBuffer content = new TextBuffer(maxChars);
+        // Body text outside any content container, used when the page has none
+        TextBuffer fallback = new TextBuffer(maxChars);
+        boolean containerSeen = false;
+        try (StreamParser parser = new StreamParser(Parser.htmlParser()).parse(html, baseUri)) {
+            Iterator<Element> elements = parser.iterator();
+            while (hasNext(elements)) {
+                Element element = elements.next();
+                if (element.closest(SKIPPED) != null) {
+                    element.remove();
+                    continue;
+                }
+                if (!isFlushable(element)) {
+                    continue;
+                }
+                if (element.closest(CONTENT) != null) {
+                    containerSeen = true;
+                    if (content.append(element.text())) {
+                        parser.stop();
+                        break;
+                    }
+                } else if (!containerSeen) {
+                    fallback.append(element.text());
+                }
+                element.remove();
+            }
+        }
+        return containerSeen ? content.toString() : fallback.toString();
+    }
+
+    /** Top-level blocks and wrappers inside the body; nested blocks are emitted with their ancestor. */
+    private static boolean isFlushable(Element element) {
+        String name = element.normalName();
+        if (!BLOCKS.contains(name) && !WRAPPERS.contains(name)) {
+            return false;
+        }
+        boolean inBody = name.equals("body");
+        for (Element parent = element.parent(); parent != null && !inBody; parent = parent.parent()) {
+            if (BLOCKS.contains(parent.normalName())) {
+                return false;
+            }
+            inBody = parent.normalName().equals("body");
+        }
+        return inBody;
+    }
+
+    private static boolean hasNext(Iterator<Element> elements) throws IOException {
+        try {
+            return elements.hasNext();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /** Space-separated text capped at {@code maxChars}, cut back to a word boundary. */
+    private static final class TextBuffer {
+
+        private final StringBuilder text = new StringBuilder();
+        private final int maxChars;
+        private boolean full;
+
+        TextBuffer(int maxChars) {
+            this.maxChars = maxChars;
+        }
+
+        /** Appends {@code block} and returns whether the buffer is now full. */
+        boolean append(String block) {
+            if (full || block.isEmpty()) {
+                return full;
+            }
+            if (!text.isEmpty()) {
+                text.append(' ');
+            }
+            text.append(block);
+            if (text.length() <= maxChars) {
+                return false;
+            }
+            int end = text.lastIndexOf(" ", maxChars);
+            text.setLength(end > 0 ? end : maxChars);
+            full = true;
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+}
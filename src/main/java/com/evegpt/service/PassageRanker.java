@@ -0,0 +1,152 @@
+package com.evegpt.service;
+
+import com.evegpt.config.ChatProperties;
+import com.evegpt.model.WebSearchResult;
+import org.springframework.stereotype.Component;
+
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Chooses what retrieved text goes into the prompt. Every result's content is split into passages
+ * of whole sentences, all passages are ranked together against the query with BM25, and the best
+ * ones are taken until the {@code chat.context.max-chars} budget is spent, wherever they come from.
+ * Each returned result carries only its selected passages, in page order, and a relevance score
+ * (0-100) relative to the best passage found.
+ */
+@Component
+public class PassageRanker {
+
+    /** Separates the selected passages of one result in its returned content */
+    static final String GAP = " ... ";
+    /** Boost for passages of a result whose title shares a term with the query */
+    private static final float TITLE_BONUS = 1.25f;
+
+    private final ChatProperties.Context settings;
+
+    public PassageRanker(ChatProperties chatProperties) {
+        this.settings = chatProperties.getContext();
+    }
+
+    /**
+     * Returns the results that contributed at least one passage, most relevant first. When no
+     * passage shares a term with the query, the opening passages of each result are used instead.
+     */
+    public List<WebSearchResult> select(String query, List<WebSearchResult> results) {
+        List<String> queryTerms = TextAnalyzer.analyze(query);
+        List<Passage> passages = new ArrayList<>();
+        Bm25Index index = new Bm25Index();
+        boolean[] onTopic = new boolean[results.size()];
+        for (int source = 0; source < results.size(); source++) {
+            WebSearchResult result = results.get(source);
+            List<String> titleTerms = TextAnalyzer.analyze(result.getTitle() != null ? result.getTitle() : "");
+            onTopic[source] = titleTerms.stream().anyMatch(queryTerms::contains);
+            List<String> texts = split(result.getContent() != null ? result.getContent() : "");
+            for (int position = 0; position < texts.size(); position++) {
+                index.add(TextAnalyzer.analyze(texts.get(position)));
+                passages.add(new Passage(source, position, texts.get(position)));
+            }
+        }
+
+        // Only passages that match the query themselves are ranked; an on-topic title only breaks ties
+        // in favour of pages about the subject over passing mentions elsewhere
+        float[] scores = new float[passages.size()];
+        List<Integer> candidates = new ArrayList<>();
+        float topScore = 0;
+        for (Bm25Index.Match match : index.search(queryTerms, passages.size(), 0)) {
+            float score = onTopic[passages.get(match.id()).source()] ? match.score() * TITLE_BONUS : match.score();
+            scores[match.id()] = score;
+            topScore = Math.max(topScore, score);
+            candidates.add(match.id());
+        }
+        candidates.sort(Comparator.comparingDouble((Integer id) -> scores[id]).reversed());
+        if (candidates.isEmpty()) {
+            for (int id = 0; id < passages.size(); id++) {
+                candidates.add(id);
+            }
+            candidates.sort(Comparator.comparingInt((Integer id) -> passages.get(id).position())
+                    .thenComparingInt(id -> passages.get(id).source()));
+        }
+
+        boolean[] selected = new boolean[passages.size()];
+        int remaining = settings.getMaxChars();
+        for (int id : candidates) {
+            int length = passages.get(id).text().length();
+            if (length <= remaining) {
+                selected[id] = true;
+                remaining -= length + GAP.length();
+            }
+        }
+        return assemble(results, passages, selected, scores, topScore);
+    }
+
+    private static List<WebSearchResult> assemble(List<WebSearchResult> results, List<Passage> passages,
+                                                  boolean[] selected, float[] scores, float topScore) {
+        StringBuilder[] contents = new StringBuilder[results.size()];
+        float[] best = new float[results.size()];
+        for (int i = 0; i < passages.size(); i++) {
+            if (!selected[i]) {
+                continue;
+            }
+            Passage passage = passages.get(i);
+            StringBuilder content = contents[passage.source()];
+            if (content == null) {
+                contents[passage.source()] = new StringBuilder(passage.text());
+            } else {
+                content.append(GAP).append(passage.text());
+            }
+            best[passage.source()] = Math.max(best[passage.source()], scores[i]);
+        }
+
+        List<WebSearchResult> selectedResults = new ArrayList<>();
+        for (int source = 0; source < results.size(); source++) {
+            if (contents[source] != null) {
+                WebSearchResult result = new WebSearchResult(results.get(source));
+                result.setContent(contents[source].toString());
+                result.setRelevanceScore(topScore > 0 ? Math.round(100 * best[source] / topScore) : 0);
+                selectedResults.add(result);
+            }
+        }
+        selectedResults.sort(Comparator.comparingInt(WebSearchResult::getRelevanceScore).reversed());
+        return selectedResults;
+    }
+
+    /** Packs whole sentences into passages of about {@code chat.context.passage-chars} characters. */
+    private List<String> split(String text) {
+        int target = settings.getPassageChars();
+        List<String> passages = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        BreakIterator sentences = BreakIterator.getSentenceInstance(Locale.ENGLISH);
+        sentences.setText(text);
+        int start = sentences.first();
+        for (int end = sentences.next(); end != BreakIterator.DONE; start = end, end = sentences.next()) {
+            String sentence = text.substring(start, end).strip();
+            if (sentence.isEmpty()) {
+                continue;
+            }
+            if (!current.isEmpty() && current.length() + sentence.length() + 1 > target) {
+                passages.add(current.toString());
+                current.setLength(0);
+            }
+            // A run-on "sentence" (tables, lists) is cut at word boundaries
+            while (sentence.length() > target) {
+                int cut = sentence.lastIndexOf(' ', target);
+                cut = cut > 0 ? cut : target;
+                passages.add(sentence.substring(0, cut));
+                sentence = sentence.substring(cut).strip();
+            }
+            if (!sentence.isEmpty()) {
+                current.append(current.isEmpty() ? "" : " ").append(sentence);
+            }
+        }
+        if (!current.isEmpty()) {
+            passages.add(current.toString());
+        }
+        return passages;
+    }
+
+    private record Passage(int source, int position, String text) {}
+}
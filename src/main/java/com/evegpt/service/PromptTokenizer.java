@@ -0,0 +1,71 @@
+package com.evegpt.service;
+
+import com.evegpt.config.OpenAIProperties;
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingRegistry;
+import com.knuddels.jtokkit.api.EncodingResult;
+import com.knuddels.jtokkit.api.EncodingType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+/**
+ * Counts tokens locally with the byte-pair encoding of the configured model, using the merge
+ * tables bundled with jtokkit, so prompts can be sized before they are sent. Models the registry
+ * does not know get {@code o200k_base} (the GPT-4o family and later) unless they belong to the
+ * older {@code cl100k_base} generation.
+ */
+@Component
+public class PromptTokenizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(PromptTokenizer.class);
+
+    /** Chat format overhead: each message is wrapped in role markers, and the reply is primed */
+    static final int TOKENS_PER_MESSAGE = 3;
+    static final int REPLY_PRIMING_TOKENS = 3;
+
+    private final Encoding encoding;
+
+    public PromptTokenizer(OpenAIProperties openAIProperties) {
+        String model = openAIProperties.getModel() != null ? openAIProperties.getModel() : "";
+        EncodingRegistry registry = Encodings.newLazyEncodingRegistry();
+        this.encoding = registry.getEncodingForModel(model)
+                .orElseGet(() -> registry.getEncoding(fallbackEncoding(model)));
+        logger.info("Counting prompt tokens with {} for model {}", encoding.getName(), model);
+    }
+
+    public int count(String text) {
+        return encoding.countTokensOrdinary(text);
+    }
+
+    /** Tokens of a chat request made of the given message contents, including the format overhead. */
+    public int countMessages(String... contents) {
+        int tokens = REPLY_PRIMING_TOKENS;
+        for (String content : contents) {
+            tokens += TOKENS_PER_MESSAGE + count(content);
+        }
+        return tokens;
+    }
+
+    /** Cuts {@code text} to at most {@code maxTokens} tokens, backing off to a word boundary. */
+    public String truncate(String text, int maxTokens) {
+        EncodingResult result = encoding.encodeOrdinary(text, maxTokens);
+        if (!result.isTruncated()) {
+            return text;
+        }
+        String prefix = encoding.decode(result.getTokens());
+        // The last token may end inside a word or a multi-byte character
+        int end = prefix.lastIndexOf(' ');
+        return end > 0 ? prefix.substring(0, end) : "";
+    }
+
+    private static EncodingType fallbackEncoding(String model) {
+        String name = model.toLowerCase(Locale.ROOT);
+        boolean legacy = name.startsWith("gpt-3.5") || (name.startsWith("gpt-4") && !name.startsWith("gpt-4o")
+                && !name.startsWith("gpt-4.1"));
+        return legacy ? EncodingType.CL100K_BASE : EncodingType.O200K_BASE;
+    }
+}
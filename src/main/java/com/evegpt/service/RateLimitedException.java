@@ -0,0 +1,23 @@
+package com.evegpt.service;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a completion cannot be sent within the OpenAI rate limits: the
+ * {@link OpenAIRateLimiter} would have to hold it longer than {@code openai.rate-limit.max-wait},
+ * or the API still answered 429 after retries. Carries no stack trace, as it is expected under load.
+ */
+public class RateLimitedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public RateLimitedException(String message, Duration retryAfter) {
+        super(message, null, false, false);
+        this.retryAfter = retryAfter;
+    }
+
+    /** When the rate limits should have room for the completion again. */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,93 @@
+package com.evegpt.service;
+
+import com.evegpt.config.WebScrapingProperties;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Weigher;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Bounded TTL cache in front of a reactive loader. Entries are weighed in (estimated) bytes and
+ * evicted by Caffeine's size-aware LRU policy. With stale-while-revalidate enabled, an entry older
+ * than its TTL is still returned for up to {@code staleTtl} while a single background reload
+ * replaces it. Failed loads are never cached, and concurrent callers for one key share a single
+ * load through a {@link SingleFlight}, which also cancels the load once all of them have left.
+ */
+public class ReactiveCache<K, V> {
+    
+    private final Function<K, Mono<V>> loader;
+    private final AsyncLoadingCache<K, V> cache;
+    private final Duration ttl;
+    private final SingleFlight<K, V> loads = new SingleFlight<>();
+    
+    public ReactiveCache(String name, WebScrapingProperties.CacheSpec spec, Weigher<K, V> weigher,
+                         Function<K, Mono<V>> loader, MeterRegistry meterRegistry) {
+        this.loader = loader;
+        this.ttl = spec.getTtl() != null ? Duration.ofMillis(spec.getTtl()) : Duration.ZERO;
+        if (!spec.isEnabled()) {
+            this.cache = null;
+            return;
+        }
+        
+        Caffeine<K, V> builder = Caffeine.newBuilder()
+                .maximumWeight(spec.getMaxWeightBytes())
+                .weigher(weigher)
+                .recordStats();
+        if (spec.isStaleWhileRevalidate()) {
+            builder.refreshAfterWrite(ttl).expireAfterWrite(ttl.plusMillis(spec.getStaleTtl()));
+        } else {
+            builder.expireAfterWrite(ttl);
+        }
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry,
+                builder.buildAsync((key, executor) -> loader.apply(key).toFuture()), name);
+    }
+    
+    public Mono<V> get(K key) {
+        if (cache == null) {
+            return loads.execute(key, () -> loader.apply(key));
+        }
+        // Single-flight makes this the only subscriber to the pending future, so cancelling it when
+        // the last caller leaves also cancels the load (and Caffeine drops the cancelled entry)
+        return loads.execute(key, () -> Mono.fromFuture(() -> cache.get(key), false));
+    }
+    
+    public boolean isEnabled() {
+        return cache != null;
+    }
+    
+    /** Whether {@code key} is cached and younger than half its TTL, so a refresh can wait. */
+    public boolean isFresh(K key) {
+        return cache != null && cache.synchronous().policy().expireAfterWrite()
+                .flatMap(expiration -> expiration.ageOf(key))
+                .map(age -> age.compareTo(ttl.dividedBy(2)) < 0)
+                .orElse(false);
+    }
+    
+    /**
+     * Loads {@code key} and replaces the cached value, even if it is still fresh; empty when the
+     * cache is disabled. Shares a load already in flight for the key.
+     */
+    public Mono<V> refresh(K key) {
+        if (cache == null) {
+            return Mono.empty();
+        }
+        return loads.execute(key, () -> loader.apply(key)
+                .doOnNext(value -> cache.put(key, CompletableFuture.completedFuture(value))));
+    }
+    
+    public CacheStats stats() {
+        return cache != null ? cache.synchronous().stats() : CacheStats.empty();
+    }
+    
+    /** Rough heap footprint of a string: two bytes per char plus object overhead. */
+    static int estimateBytes(String value) {
+        return value == null ? 0 : 40 + 2 * value.length();
+    }
+}
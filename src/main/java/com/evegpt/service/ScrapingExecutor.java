@@ -0,0 +1,110 @@
+package com.evegpt.service;
+
+import com.evegpt.config.WebScrapingProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs blocking or CPU-heavy scrape work (such as HTML parsing) off the request threads and event
+ * loops, either on virtual threads or on a dedicated bounded elastic scheduler. Concurrency and
+ * the wait queue are both bounded so one slow upstream cannot pile up unbounded work; submissions
+ * beyond the queue limit fail fast with {@link RejectedExecutionException}.
+ */
+@Component
+public class ScrapingExecutor {
+    
+    private static final Logger logger = LoggerFactory.getLogger(ScrapingExecutor.class);
+    
+    private final Scheduler scheduler;
+    private final Semaphore permits;
+    private final int maxQueued;
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Counter rejected;
+    
+    public ScrapingExecutor(WebScrapingProperties webScrapingProperties, MeterRegistry meterRegistry) {
+        WebScrapingProperties.Executor settings = webScrapingProperties.getExecutor();
+        int maxConcurrency = settings.getMaxConcurrency();
+        this.maxQueued = settings.getMaxQueued();
+        this.permits = new Semaphore(maxConcurrency);
+        this.scheduler = switch (settings.getMode()) {
+            case VIRTUAL_THREADS -> Schedulers.fromExecutorService(
+                    Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("scrape-", 0).factory()), "scrape");
+            case BOUNDED_ELASTIC -> Schedulers.newBoundedElastic(maxConcurrency, maxQueued, "scrape");
+        };
+        
+        String mode = settings.getMode().name().toLowerCase();
+        Gauge.builder("evegpt.scraping.active", active, AtomicInteger::get)
+                .description("Scrape calls currently running")
+                .tag("mode", mode)
+                .register(meterRegistry);
+        Gauge.builder("evegpt.scraping.queued", queued, AtomicInteger::get)
+                .description("Scrape calls waiting for a free slot")
+                .tag("mode", mode)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("evegpt.scraping.rejected")
+                .description("Scrape calls rejected because the wait queue was full")
+                .tag("mode", mode)
+                .register(meterRegistry);
+        
+        logger.info("Scraping executor: mode={}, maxConcurrency={}, maxQueued={}", mode, maxConcurrency, maxQueued);
+    }
+    
+    public <T> Mono<T> submit(Callable<T> blockingCall) {
+        return Mono.defer(() -> {
+            if (queued.incrementAndGet() > maxQueued) {
+                queued.decrementAndGet();
+                rejected.increment();
+                return Mono.error(new RejectedExecutionException("Scraping queue is full (" + maxQueued + " waiting)"));
+            }
+            AtomicBoolean waiting = new AtomicBoolean(true);
+            return Mono.fromCallable(() -> {
+                        permits.acquire();
+                        leaveQueue(waiting);
+                        active.incrementAndGet();
+                        try {
+                            return blockingCall.call();
+                        } finally {
+                            active.decrementAndGet();
+                            permits.release();
+                        }
+                    })
+                    .subscribeOn(scheduler)
+                    .doFinally(signal -> leaveQueue(waiting));
+        });
+    }
+    
+    public int getActiveCount() {
+        return active.get();
+    }
+    
+    public int getQueuedCount() {
+        return queued.get();
+    }
+    
+    private void leaveQueue(AtomicBoolean waiting) {
+        if (waiting.compareAndSet(true, false)) {
+            queued.decrementAndGet();
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        scheduler.dispose();
+    }
+}
@@ -0,0 +1,145 @@
+package com.evegpt.service;
+
+import com.evegpt.config.ChatProperties;
+import com.evegpt.model.ChatRequest;
+import com.evegpt.model.ChatResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Reuses answers across differently worded prompts. Each prompt is embedded locally with a
+ * {@link HashingEmbedder} and looked up in an HNSW index of recent prompts; an answer is reused
+ * when the closest prompt is similar enough, has the same content words (in any order, case or
+ * number) and was asked with the same web-search setting and {@code max_tokens}, so a short answer
+ * is never served to a full request or the reverse. The similarity of two long prompts is mostly
+ * their shared wording, so the content words keep a question about the Amarr from being answered
+ * with one about the Minmatar.
+ * The cache holds at most {@code chat.semantic-cache.max-entries} answers and evicts the oldest,
+ * expired ones first.
+ */
+@Component
+public class SemanticCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SemanticCache.class);
+
+    private static final int CANDIDATES = 4;
+    private static final int SEARCH_EF = 48;
+
+    private final ChatProperties.SemanticCache settings;
+    private final HashingEmbedder embedder;
+    private final HnswIndex index = new HnswIndex(12, 64);
+    /** Insertion-ordered, so the first entry is always the oldest */
+    private final Map<Integer, Entry> entries = new LinkedHashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Counter hits;
+    private final Counter misses;
+    private int nextId;
+
+    public SemanticCache(ChatProperties chatProperties, MeterRegistry meterRegistry) {
+        this.settings = chatProperties.getSemanticCache();
+        this.embedder = new HashingEmbedder(settings.getDimensions());
+        this.hits = Counter.builder("evegpt.semantic_cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("evegpt.semantic_cache.requests").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("evegpt.semantic_cache.size", this, SemanticCache::size).register(meterRegistry);
+    }
+
+    public boolean isCacheable(ChatRequest request) {
+        return settings.isEnabled()
+                && (request.getTemperature() == null || request.getTemperature() <= settings.getMaxTemperature());
+    }
+
+    public Optional<ChatResponse> lookup(ChatRequest request) {
+        if (!isCacheable(request)) {
+            return Optional.empty();
+        }
+        Optional<Entry> match = findSimilar(embedder.embed(request.getUserPrompt()), terms(request), request);
+        if (match.isPresent()) {
+            hits.increment();
+            logger.debug("Semantic cache hit for \"{}\" (cached prompt \"{}\")", request.getUserPrompt(), match.get().prompt());
+            return Optional.of(match.get().response());
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    public void store(ChatRequest request, ChatResponse response) {
+        if (!isCacheable(request) || response.getResponse() == null || response.getResponse().isBlank()) {
+            return;
+        }
+        float[] vector = embedder.embed(request.getUserPrompt());
+        Set<String> terms = terms(request);
+        lock.writeLock().lock();
+        try {
+            if (findSimilar(vector, terms, request).isPresent()) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            while (!entries.isEmpty() && (entries.size() >= settings.getMaxEntries()
+                    || entries.values().iterator().next().expiresAt() <= now)) {
+                evictOldest();
+            }
+            int id = nextId++;
+            entries.put(id, new Entry(request.getUserPrompt(), terms, request.isIncludeWebSearch(), request.getMaxTokens(),
+                    response, now + settings.getTtl()));
+            index.add(id, vector);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Optional<Entry> findSimilar(float[] vector, Set<String> terms, ChatRequest request) {
+        long now = System.currentTimeMillis();
+        lock.readLock().lock();
+        try {
+            for (HnswIndex.Match match : index.search(vector, CANDIDATES, SEARCH_EF)) {
+                if (match.similarity() < settings.getSimilarityThreshold()) {
+                    break;
+                }
+                Entry entry = entries.get(match.id());
+                if (entry != null && entry.expiresAt() > now && entry.terms().equals(terms)
+                        && entry.includeWebSearch() == request.isIncludeWebSearch()
+                        && Objects.equals(entry.maxTokens(), request.getMaxTokens())) {
+                    return Optional.of(entry);
+                }
+            }
+            return Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void evictOldest() {
+        Iterator<Map.Entry<Integer, Entry>> oldest = entries.entrySet().iterator();
+        int id = oldest.next().getKey();
+        oldest.remove();
+        index.remove(id);
+    }
+
+    private static Set<String> terms(ChatRequest request) {
+        return Set.copyOf(TextAnalyzer.analyze(request.getUserPrompt()));
+    }
+
+    private record Entry(String prompt, Set<String> terms, boolean includeWebSearch, Integer maxTokens,
+                         ChatResponse response, long expiresAt) {}
+}
@@ -0,0 +1,43 @@
+package com.evegpt.service;
+
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls with the same key into one in-flight {@link Mono}. Every caller that
+ * arrives while a call is running subscribes to the same execution and receives its result; the
+ * key is released as soon as the call terminates, so later callers start a fresh one. When every
+ * subscriber of a call has cancelled, the underlying call is cancelled too.
+ */
+public class SingleFlight<K, V> {
+    
+    private final ConcurrentMap<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+    
+    public Mono<V> execute(K key, Supplier<Mono<V>> call) {
+        return Mono.defer(() -> {
+            Mono<V> existing = inFlight.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            AtomicReference<Mono<V>> self = new AtomicReference<>();
+            // replay(1) hands the result to callers that join between emission and release
+            Mono<V> shared = Mono.defer(call)
+                    .doFinally(signal -> inFlight.remove(key, self.get()))
+                    .flux()
+                    .replay(1)
+                    .refCount(1)
+                    .singleOrEmpty();
+            self.set(shared);
+            Mono<V> raced = inFlight.putIfAbsent(key, shared);
+            return raced != null ? raced : shared;
+        });
+    }
+    
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,19 @@
+package com.evegpt.service;
+
+import com.evegpt.model.WebSearchResult;
+
+import java.util.List;
+
+/**
+ * Retrieved sources rendered as the prompt's context message, and the results they came from.
+ * A session keeps its context so follow-ups send it byte for byte; see {@link Conversation}.
+ */
+public record SourceContext(String message, List<WebSearchResult> sources) {
+
+    /** No sources: the question is answered from the model's own knowledge */
+    public static final SourceContext NONE = new SourceContext(null, List.of());
+
+    public boolean isEmpty() {
+        return message == null;
+    }
+}
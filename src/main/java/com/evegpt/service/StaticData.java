@@ -0,0 +1,182 @@
+package com.evegpt.service;
+
+import com.evegpt.config.EveSourcesProperties;
+import com.evegpt.model.WebSearchResult;
+import com.evegpt.service.StaticDataIndex.FactGroup;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Exact item facts from CCP's Static Data Export, so factual questions (slot layouts, fitting
+ * resources, skill requirements...) are answered from local data instead of a scrape. The export
+ * named by {@code eve.sources.sde.directory} is loaded into a {@link StaticDataIndex} in the
+ * background at startup; until then, or without a directory, every lookup finds nothing.
+ *
+ * <p>A question naming items yields their facts as sources. When it also asks for facts all of
+ * them have, such as "rifter slots", the facts answer it and searching is skipped; when it asks
+ * for nothing else, it is answered directly without a completion.
+ */
+@Component
+public class StaticData {
+
+    private static final Logger logger = LoggerFactory.getLogger(StaticData.class);
+
+    static final String SOURCE = "eve-sde";
+
+    /** Analyzed question terms asking for a fact group; an empty set asks for all of them */
+    private static final Map<String, Set<FactGroup>> KEYWORDS = keywords(Map.of(
+            FactGroup.SLOTS, "slot layout high mid medium low rig hardpoint turret launcher",
+            FactGroup.FITTING, "cpu powergrid grid pg calibration",
+            FactGroup.SKILLS, "skill requirement require required prerequisite prereq",
+            FactGroup.DEFENSE, "hp hitpoint",
+            FactGroup.CAPACITOR, "capacitor",
+            FactGroup.NAVIGATION, "speed velocity agility mass",
+            FactGroup.TARGETING, "targeting lock resolution",
+            FactGroup.DRONES, "bandwidth",
+            FactGroup.CARGO, "cargo capacity"), "stat statistic attribute spec");
+    /** Terms that leave a lookup pure: it asks for nothing beyond the facts */
+    private static final Set<String> FILLERS = Set.of("many", "much", "number", "base", "need", "get", "use", "fly",
+            "list", "show", "give", "total", "did", "exactly");
+
+    private final EveSourcesProperties.Sde settings;
+    private final MeterRegistry meterRegistry;
+    private final Set<String> reserved = new HashSet<>();
+    private volatile StaticDataIndex index;
+
+    public StaticData(EveSourcesProperties eveSourcesProperties, MeterRegistry meterRegistry) {
+        this.settings = eveSourcesProperties.getSde();
+        this.meterRegistry = meterRegistry;
+        reserved.addAll(KEYWORDS.keySet());
+        reserved.addAll(FILLERS);
+        Gauge.builder("evegpt.static_data.types", this, StaticData::size).register(meterRegistry);
+    }
+
+    /**
+     * Loads the export in the background, on its own thread rather than a scraping slot, as reading
+     * its larger files takes minutes; lookups find nothing until then.
+     */
+    @PostConstruct
+    void load() {
+        if (!isEnabled()) {
+            return;
+        }
+        Path directory = Path.of(settings.getDirectory());
+        Mono.fromCallable(() -> {
+                    long start = System.currentTimeMillis();
+                    StaticDataIndex loaded = StaticDataIndex.load(directory, settings.getCategories(), settings.getLanguage());
+                    logger.info("Loaded {} static data types from {} in {} ms", loaded.size(), directory,
+                            System.currentTimeMillis() - start);
+                    return loaded;
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(loaded -> index = loaded, error -> logger.error("Unable to load static data from {}", directory, error));
+    }
+
+    public boolean isEnabled() {
+        return settings.getDirectory() != null && !settings.getDirectory().isBlank();
+    }
+
+    public int size() {
+        StaticDataIndex current = index;
+        return current != null ? current.size() : 0;
+    }
+
+    /** Facts for the items named in {@code question}; see the class documentation for how they are used. */
+    public Lookup lookup(String question) {
+        StaticDataIndex current = index;
+        if (current == null) {
+            return Lookup.NONE;
+        }
+        List<String> terms = TextAnalyzer.analyze(question);
+        List<StaticDataIndex.Mention> mentions = current.findMentions(terms, settings.getMaxEntities(),
+                settings.isFuzzyMatching(), reserved);
+        if (mentions.isEmpty()) {
+            record("none");
+            return Lookup.NONE;
+        }
+
+        BitSet named = new BitSet(terms.size());
+        mentions.forEach(mention -> named.set(mention.start(), mention.end()));
+        Set<FactGroup> requested = EnumSet.noneOf(FactGroup.class);
+        boolean everything = false;
+        boolean pure = true;
+        for (int i = 0; i < terms.size(); i++) {
+            if (named.get(i)) {
+                continue;
+            }
+            Set<FactGroup> groups = KEYWORDS.get(terms.get(i));
+            if (groups == null) {
+                pure &= FILLERS.contains(terms.get(i));
+            } else if (groups.isEmpty()) {
+                everything = true;
+            } else {
+                requested.addAll(groups);
+            }
+        }
+        boolean answered = everything || (!requested.isEmpty() && mentions.stream()
+                .allMatch(mention -> requested.stream().allMatch(group -> current.has(mention.entity(), group))));
+
+        Set<FactGroup> all = EnumSet.allOf(FactGroup.class);
+        List<WebSearchResult> sources = mentions.stream()
+                .map(mention -> new WebSearchResult("sde:type/" + current.typeId(mention.entity()),
+                        current.name(mention.entity()),
+                        current.describe(mention.entity(), all, settings.getMaxAttributes()), SOURCE))
+                .toList();
+        String directAnswer = null;
+        if (answered && pure && settings.isDirectAnswers()) {
+            Set<FactGroup> asked = everything ? all : requested;
+            int maxOther = everything ? settings.getMaxAttributes() : 0;
+            directAnswer = mentions.stream()
+                    .map(mention -> current.describe(mention.entity(), asked, maxOther))
+                    .collect(Collectors.joining("\n\n"));
+        }
+        record(directAnswer != null ? "direct" : answered ? "answered" : "mentioned");
+        return new Lookup(sources, answered, directAnswer);
+    }
+
+    private void record(String result) {
+        meterRegistry.counter("evegpt.static_data.lookups", "result", result).increment();
+    }
+
+    private static Map<String, Set<FactGroup>> keywords(Map<FactGroup, String> groups, String everything) {
+        Map<String, Set<FactGroup>> keywords = new HashMap<>();
+        groups.forEach((group, terms) -> {
+            for (String term : terms.split(" ")) {
+                keywords.computeIfAbsent(term, t -> EnumSet.noneOf(FactGroup.class)).add(group);
+            }
+        });
+        for (String term : everything.split(" ")) {
+            keywords.put(term, Set.of());
+        }
+        return Map.copyOf(keywords);
+    }
+
+    /**
+     * Item facts found for a question, as prompt sources. {@code answered} when the facts cover
+     * what it asks; {@code directAnswer} is set when they are all it asks for.
+     */
+    public record Lookup(List<WebSearchResult> sources, boolean answered, String directAnswer) {
+
+        public static final Lookup NONE = new Lookup(List.of(), false, null);
+
+        public boolean isEmpty() {
+            return sources.isEmpty();
+        }
+    }
+}
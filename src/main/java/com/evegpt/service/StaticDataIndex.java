@@ -0,0 +1,570 @@
+package com.evegpt.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
+
+/**
+ * Compact in-memory index of item types from CCP's Static Data Export (SDE), read from its JSONL
+ * files. Types are stored column-wise in parallel arrays and their dogma attributes in one
+ * {@code int[]}/{@code float[]} pair addressed by per-type offsets, so tens of thousands of items
+ * cost a few megabytes and no per-attribute objects. Names are matched on their
+ * {@link TextAnalyzer} terms, exactly or, for typos, within a small edit distance of candidates
+ * found through a trigram index.
+ *
+ * <p>Immutable once loaded, so it is safe to share between threads.
+ */
+public class StaticDataIndex {
+
+    /** Skill category; skill names are kept even when skills are not indexed, to name requirements */
+    private static final int SKILL_CATEGORY = 16;
+    /** Dogma attributes holding required skill type IDs, each followed by the attribute holding its level */
+    private static final int[][] REQUIRED_SKILLS = {{182, 277}, {183, 278}, {184, 279}, {1285, 1286}, {1289, 1287}, {1290, 1288}};
+    /** Type fields stored alongside the dogma attributes under reserved negative IDs */
+    private static final int CAPACITY = -1;
+    private static final int MASS = -2;
+    private static final int VOLUME = -3;
+    /** Dogma units rendered by conversion rather than by their display name */
+    private static final int MILLISECONDS = 101;
+    private static final int INVERSE_ABSOLUTE_PERCENT = 108;
+    private static final int MODIFIER_PERCENT = 109;
+    private static final int INVERSED_MODIFIER_PERCENT = 111;
+    private static final int GROUP_ID = 115;
+    private static final int TYPE_ID = 116;
+    private static final int ABSOLUTE_PERCENT = 127;
+    private static final int BOOLEAN = 137;
+    /** Display names of common dogma units, for exports without {@code dogmaUnits.jsonl} */
+    private static final Map<Integer, String> UNIT_SUFFIXES = Map.ofEntries(Map.entry(1, "m"), Map.entry(2, "kg"),
+            Map.entry(9, "m3"), Map.entry(10, "m/sec"), Map.entry(11, "m/sec"), Map.entry(104, "x"), Map.entry(105, "%"),
+            Map.entry(106, "tf"), Map.entry(107, "MW"), Map.entry(113, "HP"), Map.entry(114, "GJ"),
+            Map.entry(128, "Mbit/sec"), Map.entry(133, "ISK"));
+    private static final String[] LEVELS = {"I", "II", "III", "IV", "V"};
+    private static final int[] NO_ENTITIES = {};
+
+    /** Facts a question can ask for, with the attributes that answer them, in rendering order. */
+    public enum FactGroup {
+        SKILLS("Required skills"),
+        SLOTS("Slots", 14, 13, 12, 1137, 102, 101),
+        FITTING("Fitting", 48, 11, 1132, 50, 30),
+        DEFENSE("Hit points", 263, 265, 9),
+        CAPACITOR("Capacitor", 482, 55),
+        NAVIGATION("Navigation", 37, 600, 70, MASS),
+        TARGETING("Targeting", 76, 192, 564, 552),
+        DRONES("Drones", 283, 1271),
+        CARGO("Cargo", CAPACITY);
+
+        private final String label;
+        private final int[] attributeIds;
+
+        FactGroup(String label, int... attributeIds) {
+            this.label = label;
+            this.attributeIds = attributeIds;
+        }
+    }
+
+    /** Attributes rendered by a fact group rather than among the other attributes */
+    private static final Set<Integer> GROUPED_ATTRIBUTES = new HashSet<>();
+
+    static {
+        for (int[] skill : REQUIRED_SKILLS) {
+            GROUPED_ATTRIBUTES.add(skill[0]);
+            GROUPED_ATTRIBUTES.add(skill[1]);
+        }
+        for (FactGroup group : FactGroup.values()) {
+            for (int attributeId : group.attributeIds) {
+                GROUPED_ATTRIBUTES.add(attributeId);
+            }
+        }
+    }
+
+    /** An item named in the analyzed terms {@code [start, end)}, {@code distance} edits away from its name. */
+    public record Mention(int entity, int start, int end, int distance) {}
+
+    private record Attribute(String displayName, int unitId) {}
+
+    private final int[] typeIds;
+    private final String[] names;
+    /** Analyzed name terms joined by spaces, the key names are matched on */
+    private final String[] keys;
+    private final byte[] keyTerms;
+    private final String[] groups;
+    private final int[] attributeOffsets;
+    private final int[] attributeIds;
+    private final float[] attributeValues;
+    private final Map<Integer, Attribute> attributes;
+    private final Map<Integer, String> groupNames;
+    private final Map<Integer, String> unitNames;
+    private final Map<Integer, String> referencedNames;
+    private final Map<String, Integer> entitiesByKey;
+    private final Map<Long, int[]> trigrams;
+    private final int maxKeyTerms;
+
+    private StaticDataIndex(Loader loader) {
+        int size = loader.typeIds.size();
+        this.typeIds = loader.typeIds.stream().mapToInt(Integer::intValue).toArray();
+        this.names = loader.names.toArray(String[]::new);
+        this.groups = loader.groups.toArray(String[]::new);
+        this.keys = new String[size];
+        this.keyTerms = new byte[size];
+        this.attributeOffsets = new int[size + 1];
+        int attributeCount = 0;
+        for (int i = 0; i < size; i++) {
+            attributeOffsets[i] = attributeCount;
+            attributeCount += loader.entityAttributeIds.get(i).length;
+        }
+        attributeOffsets[size] = attributeCount;
+        this.attributeIds = new int[attributeCount];
+        this.attributeValues = new float[attributeCount];
+        for (int i = 0; i < size; i++) {
+            int[] ids = loader.entityAttributeIds.get(i);
+            System.arraycopy(ids, 0, attributeIds, attributeOffsets[i], ids.length);
+            System.arraycopy(loader.entityAttributeValues.get(i), 0, attributeValues, attributeOffsets[i], ids.length);
+        }
+        this.attributes = loader.attributes;
+        this.groupNames = loader.groupNames;
+        this.unitNames = loader.unitNames;
+        this.referencedNames = loader.referencedNames;
+
+        this.entitiesByKey = new HashMap<>(size * 2);
+        Map<Long, List<Integer>> postings = new HashMap<>();
+        int longest = 0;
+        for (int i = 0; i < size; i++) {
+            List<String> terms = TextAnalyzer.analyze(names[i]);
+            String key = String.join(" ", terms);
+            keys[i] = key;
+            keyTerms[i] = (byte) Math.min(terms.size(), Byte.MAX_VALUE);
+            if (key.isEmpty() || entitiesByKey.putIfAbsent(key, i) != null) {
+                continue;
+            }
+            longest = Math.max(longest, terms.size());
+            for (long trigram : trigrams(key)) {
+                postings.computeIfAbsent(trigram, t -> new ArrayList<>()).add(i);
+            }
+        }
+        this.maxKeyTerms = longest;
+        this.trigrams = new HashMap<>(postings.size() * 2);
+        postings.forEach((trigram, ids) -> trigrams.put(trigram, ids.stream().mapToInt(Integer::intValue).toArray()));
+    }
+
+    /**
+     * Loads the published types of {@code categories} from an SDE export directory. Only
+     * {@code types.jsonl} and {@code groups.jsonl} are required; {@code categories.jsonl},
+     * {@code dogmaAttributes.jsonl}, {@code dogmaUnits.jsonl} and {@code typeDogma.jsonl} add
+     * category names, attributes and units when present.
+     */
+    public static StaticDataIndex load(Path directory, Collection<Integer> categories, String language) throws IOException {
+        Loader loader = new Loader(language, Set.copyOf(categories));
+        loader.read(directory.resolve("categories.jsonl"), false, loader::category);
+        loader.read(directory.resolve("groups.jsonl"), true, loader::group);
+        loader.read(directory.resolve("dogmaUnits.jsonl"), false, loader::unit);
+        loader.read(directory.resolve("dogmaAttributes.jsonl"), false, loader::attribute);
+        loader.read(directory.resolve("types.jsonl"), true, loader::type);
+        loader.read(directory.resolve("typeDogma.jsonl"), false, loader::typeDogma);
+        return new StaticDataIndex(loader);
+    }
+
+    public int size() {
+        return typeIds.length;
+    }
+
+    public int typeId(int entity) {
+        return typeIds[entity];
+    }
+
+    public String name(int entity) {
+        return names[entity];
+    }
+
+    /** The item with exactly this name (compared on analyzed terms), or -1. */
+    public int lookup(String name) {
+        return entitiesByKey.getOrDefault(String.join(" ", TextAnalyzer.analyze(name)), -1);
+    }
+
+    /**
+     * Finds up to {@code max} items named in {@code terms}, left to right. At each position the
+     * longest exact name wins; failing that, with {@code fuzzy}, a name of the same number of terms
+     * one edit away (two for names over seven characters) is accepted. Spans containing a
+     * {@code reserved} term are never matched fuzzily, so question words do not become items.
+     */
+    public List<Mention> findMentions(List<String> terms, int max, boolean fuzzy, Set<String> reserved) {
+        List<Mention> mentions = new ArrayList<>();
+        Set<Integer> found = new HashSet<>();
+        int start = 0;
+        while (start < terms.size() && mentions.size() < max) {
+            Mention mention = exactMention(terms, start);
+            if (mention == null && fuzzy) {
+                mention = fuzzyMention(terms, start, reserved);
+            }
+            if (mention == null) {
+                start++;
+                continue;
+            }
+            if (found.add(mention.entity())) {
+                mentions.add(mention);
+            }
+            start = mention.end();
+        }
+        return mentions;
+    }
+
+    /** Whether the item has any of the attributes answering {@code group}. */
+    public boolean has(int entity, FactGroup group) {
+        if (group == FactGroup.SKILLS) {
+            for (int[] skill : REQUIRED_SKILLS) {
+                if (!Float.isNaN(value(entity, skill[0]))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (int attributeId : group.attributeIds) {
+            if (!Float.isNaN(value(entity, attributeId))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Renders the item's facts as text: a heading with its group, then one line per requested
+     * group it has values for, then up to {@code maxOther} further attributes.
+     */
+    public String describe(int entity, Set<FactGroup> requested, int maxOther) {
+        StringBuilder text = new StringBuilder(names[entity]).append(" (").append(groups[entity]).append(")");
+        for (FactGroup group : requested) {
+            StringJoiner line = new StringJoiner(", ", "\n" + group.label + ": ", "");
+            line.setEmptyValue("");
+            if (group == FactGroup.SKILLS) {
+                for (int[] skill : REQUIRED_SKILLS) {
+                    float skillId = value(entity, skill[0]);
+                    if (!Float.isNaN(skillId)) {
+                        line.add(typeName((int) skillId) + level(value(entity, skill[1])));
+                    }
+                }
+            }
+            for (int attributeId : group.attributeIds) {
+                float value = value(entity, attributeId);
+                if (!Float.isNaN(value)) {
+                    line.add(attributes.get(attributeId).displayName() + " " + format(attributeId, value));
+                }
+            }
+            text.append(line);
+        }
+        if (maxOther > 0) {
+            StringJoiner line = new StringJoiner(", ", "\nOther attributes: ", "");
+            line.setEmptyValue("");
+            int count = 0;
+            for (int offset = attributeOffsets[entity]; offset < attributeOffsets[entity + 1] && count < maxOther; offset++) {
+                int attributeId = attributeIds[offset];
+                if (!GROUPED_ATTRIBUTES.contains(attributeId)) {
+                    line.add(attributes.get(attributeId).displayName() + " " + format(attributeId, attributeValues[offset]));
+                    count++;
+                }
+            }
+            text.append(line);
+        }
+        return text.toString();
+    }
+
+    private Mention exactMention(List<String> terms, int start) {
+        for (int end = Math.min(terms.size(), start + maxKeyTerms); end > start; end--) {
+            Integer entity = entitiesByKey.get(String.join(" ", terms.subList(start, end)));
+            if (entity != null) {
+                return new Mention(entity, start, end, 0);
+            }
+        }
+        return null;
+    }
+
+    private Mention fuzzyMention(List<String> terms, int start, Set<String> reserved) {
+        for (int end = Math.min(terms.size(), start + Math.min(maxKeyTerms, 3)); end > start; end--) {
+            List<String> span = terms.subList(start, end);
+            if (span.stream().anyMatch(reserved::contains)) {
+                continue;
+            }
+            String key = String.join(" ", span);
+            if (key.length() < 5) {
+                continue;
+            }
+            int maxDistance = key.length() <= 7 ? 1 : 2;
+            Map<Integer, Integer> shared = new HashMap<>();
+            for (long trigram : trigrams(key)) {
+                for (int candidate : trigrams.getOrDefault(trigram, NO_ENTITIES)) {
+                    shared.merge(candidate, 1, Integer::sum);
+                }
+            }
+            // Each edit changes at most three trigrams
+            int minShared = key.length() - 3 * maxDistance;
+            int best = -1;
+            int bestDistance = maxDistance + 1;
+            for (Map.Entry<Integer, Integer> candidate : shared.entrySet()) {
+                int entity = candidate.getKey();
+                if (candidate.getValue() < minShared || keyTerms[entity] != span.size()) {
+                    continue;
+                }
+                int distance = distance(key, keys[entity], maxDistance);
+                if (distance < bestDistance || (distance == bestDistance && entity < best)) {
+                    best = entity;
+                    bestDistance = distance;
+                }
+            }
+            if (best >= 0) {
+                return new Mention(best, start, end, bestDistance);
+            }
+        }
+        return null;
+    }
+
+    /** Trigrams of the key padded with a space on each side, one per character, three chars packed per long. */
+    private static long[] trigrams(String key) {
+        String padded = " " + key + " ";
+        long[] trigrams = new long[padded.length() - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+        }
+        return trigrams;
+    }
+
+    /** Levenshtein distance, or {@code maxDistance + 1} once it is known to exceed {@code maxDistance}. */
+    static int distance(String a, String b, int maxDistance) {
+        if (Math.abs(a.length() - b.length()) > maxDistance) {
+            return maxDistance + 1;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxDistance) {
+                return maxDistance + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], maxDistance + 1);
+    }
+
+    /** The value of an attribute of the item, or NaN when it has none. */
+    private float value(int entity, int attributeId) {
+        for (int offset = attributeOffsets[entity]; offset < attributeOffsets[entity + 1]; offset++) {
+            if (attributeIds[offset] == attributeId) {
+                return attributeValues[offset];
+            }
+        }
+        return Float.NaN;
+    }
+
+    private String typeName(int typeId) {
+        return referencedNames.getOrDefault(typeId, "type " + typeId);
+    }
+
+    private static String level(float level) {
+        int index = (int) level;
+        return index >= 1 && index <= LEVELS.length ? " " + LEVELS[index - 1] : "";
+    }
+
+    private String format(int attributeId, float value) {
+        int unitId = attributes.get(attributeId).unitId();
+        return switch (unitId) {
+            case MILLISECONDS -> number(value / 1000) + " s";
+            case INVERSE_ABSOLUTE_PERCENT, INVERSED_MODIFIER_PERCENT -> number((1 - value) * 100) + "%";
+            case MODIFIER_PERCENT -> number((value - 1) * 100) + "%";
+            case ABSOLUTE_PERCENT -> number(value * 100) + "%";
+            case GROUP_ID -> groupNames.getOrDefault((int) value, "group " + (int) value);
+            case TYPE_ID -> typeName((int) value);
+            case BOOLEAN -> value != 0 ? "yes" : "no";
+            default -> {
+                String unit = unitNames.getOrDefault(unitId, UNIT_SUFFIXES.get(unitId));
+                yield unit == null ? number(value) : unit.equals("%") || unit.equals("x")
+                        ? number(value) + unit : number(value) + " " + unit;
+            }
+        };
+    }
+
+    private static String number(double value) {
+        if (Math.abs(value - Math.rint(value)) < 1e-4) {
+            return Long.toString(Math.round(value));
+        }
+        String text = String.format(Locale.ROOT, "%.2f", value);
+        return text.replaceAll("0+$", "").replaceAll("\\.$", "");
+    }
+
+    /** Mutable state while the export files are read; discarded once the index is built. */
+    private static final class Loader {
+
+        private final ObjectMapper objectMapper = new ObjectMapper();
+        private final String language;
+        private final Set<Integer> categories;
+        private final Map<Integer, String> categoryNames = new HashMap<>();
+        private final Map<Integer, Integer> groupCategories = new HashMap<>();
+        private final Map<Integer, String> groupNames = new HashMap<>();
+        private final Map<Integer, String> unitNames = new HashMap<>();
+        private final Map<Integer, Attribute> attributes = new HashMap<>(Map.of(
+                CAPACITY, new Attribute("Cargo Capacity", 9),
+                MASS, new Attribute("Mass", 2),
+                VOLUME, new Attribute("Volume", 9)));
+        private final Set<Integer> skillAttributes = new HashSet<>();
+        private final Map<Integer, String> referencedNames = new HashMap<>();
+        private final Map<Integer, Integer> entitiesByTypeId = new HashMap<>();
+        private final List<Integer> typeIds = new ArrayList<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<String> groups = new ArrayList<>();
+        /** Per item, attribute IDs and their values at the same positions */
+        private final List<int[]> entityAttributeIds = new ArrayList<>();
+        private final List<float[]> entityAttributeValues = new ArrayList<>();
+
+        Loader(String language, Set<Integer> categories) {
+            this.language = language;
+            this.categories = categories;
+            for (int[] skill : REQUIRED_SKILLS) {
+                skillAttributes.add(skill[0]);
+                skillAttributes.add(skill[1]);
+            }
+        }
+
+        void read(Path file, boolean required, Consumer<JsonNode> consumer) throws IOException {
+            if (!Files.exists(file)) {
+                if (required) {
+                    throw new IOException("Missing static data file: " + file);
+                }
+                return;
+            }
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+                 MappingIterator<JsonNode> records = objectMapper.readerFor(JsonNode.class).readValues(reader)) {
+                while (records.hasNext()) {
+                    consumer.accept(records.next());
+                }
+            }
+        }
+
+        void category(JsonNode category) {
+            categoryNames.put(category.path("_key").asInt(), localized(category.path("name")));
+        }
+
+        void group(JsonNode group) {
+            int groupId = group.path("_key").asInt();
+            groupCategories.put(groupId, group.path("categoryID").asInt());
+            groupNames.put(groupId, localized(group.path("name")));
+        }
+
+        void unit(JsonNode unit) {
+            String displayName = localized(unit.path("displayName"));
+            if (!displayName.isBlank()) {
+                unitNames.put(unit.path("_key").asInt(), displayName);
+            }
+        }
+
+        void attribute(JsonNode attribute) {
+            int attributeId = attribute.path("_key").asInt();
+            String displayName = localized(attribute.path("displayName"));
+            boolean published = attribute.path("published").asBoolean(false) && !displayName.isBlank();
+            if (published || skillAttributes.contains(attributeId)) {
+                attributes.put(attributeId, new Attribute(displayName.isBlank() ? attribute.path("name").asText() : displayName,
+                        attribute.path("unitID").asInt()));
+            }
+        }
+
+        void type(JsonNode type) {
+            if (!type.path("published").asBoolean(false)) {
+                return;
+            }
+            int typeId = type.path("_key").asInt();
+            int groupId = type.path("groupID").asInt();
+            Integer categoryId = groupCategories.get(groupId);
+            String name = localized(type.path("name"));
+            if (categoryId == null || name.isBlank()) {
+                return;
+            }
+            if (categoryId == SKILL_CATEGORY) {
+                referencedNames.put(typeId, name);
+            }
+            if (!categories.contains(categoryId)) {
+                return;
+            }
+            entitiesByTypeId.put(typeId, typeIds.size());
+            typeIds.add(typeId);
+            names.add(name);
+            String category = categoryNames.get(categoryId);
+            groups.add(category != null ? groupNames.get(groupId) + ", " + category : groupNames.get(groupId));
+            Map<Integer, Float> fields = new LinkedHashMap<>();
+            addField(fields, CAPACITY, type.path("capacity"));
+            addField(fields, MASS, type.path("mass"));
+            addField(fields, VOLUME, type.path("volume"));
+            entityAttributeIds.add(null);
+            entityAttributeValues.add(null);
+            setAttributes(typeIds.size() - 1, fields);
+        }
+
+        void typeDogma(JsonNode dogma) {
+            Integer entity = entitiesByTypeId.get(dogma.path("_key").asInt());
+            if (entity == null) {
+                return;
+            }
+            Map<Integer, Float> values = new LinkedHashMap<>();
+            int[] ids = entityAttributeIds.get(entity);
+            for (int i = 0; i < ids.length; i++) {
+                values.put(ids[i], entityAttributeValues.get(entity)[i]);
+            }
+            for (JsonNode attribute : dogma.path("dogmaAttributes")) {
+                int attributeId = attribute.path("attributeID").asInt();
+                if (attributes.containsKey(attributeId)) {
+                    values.put(attributeId, (float) attribute.path("value").asDouble());
+                }
+            }
+            setAttributes(entity, values);
+        }
+
+        private void setAttributes(int entity, Map<Integer, Float> values) {
+            int[] ids = new int[values.size()];
+            float[] array = new float[values.size()];
+            int i = 0;
+            for (Map.Entry<Integer, Float> value : values.entrySet()) {
+                ids[i] = value.getKey();
+                array[i++] = value.getValue();
+            }
+            entityAttributeIds.set(entity, ids);
+            entityAttributeValues.set(entity, array);
+        }
+
+        private static void addField(Map<Integer, Float> fields, int attributeId, JsonNode value) {
+            if (value.isNumber() && value.asDouble() > 0) {
+                fields.put(attributeId, (float) value.asDouble());
+            }
+        }
+
+        /** Newer exports localize names as {"en": ..., "de": ...}; older ones use plain strings. */
+        private String localized(JsonNode text) {
+            if (text.isObject()) {
+                JsonNode localized = text.path(language);
+                return (localized.isMissingNode() ? text.path("en") : localized).asText("");
+            }
+            return text.asText("");
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.evegpt.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Splits text into index terms for keyword retrieval: lower-cased letter/digit runs, with English
+ * stop words dropped and plurals folded onto their singular ("missiles" and "missile" match).
+ * Documents and queries must go through the same analyzer.
+ */
+public final class TextAnalyzer {
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "about", "an", "and", "are", "as", "at", "be", "but", "by", "can", "do", "does", "for", "from",
+            "has", "have", "how", "i", "if", "in", "into", "is", "it", "its", "me", "my", "not", "of", "on", "or",
+            "should", "so", "tell", "than", "that", "the", "their", "then", "there", "these", "they", "this",
+            "to", "was", "we", "what", "whats", "when", "where", "which", "who", "why", "will", "with", "you", "your");
+
+    private TextAnalyzer() {
+    }
+
+    public static List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            boolean wordChar = i < length && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                // Apostrophes inside a word are dropped rather than splitting it ("ship's" -> "ships")
+                if (i < length - 1 && text.charAt(i) == '\'' && Character.isLetterOrDigit(text.charAt(i + 1))) {
+                    continue;
+                }
+                addTerm(terms, text.substring(start, i));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    private static void addTerm(List<String> terms, String word) {
+        String term = word.toLowerCase(Locale.ROOT).replace("'", "");
+        if (!STOP_WORDS.contains(term)) {
+            terms.add(stem(term));
+        }
+    }
+
+    /** Folds common English plurals; deliberately conservative so item names stay intact. */
+    static String stem(String term) {
+        int length = term.length();
+        if (length > 4 && term.endsWith("ies")) {
+            return term.substring(0, length - 3) + 'y';
+        }
+        if (length > 3 && term.endsWith("s") && !term.endsWith("ss") && !term.endsWith("us") && !term.endsWith("is")) {
+            return term.substring(0, length - 1);
+        }
+        return term;
+    }
+}
@@ -0,0 +1,241 @@
+package com.evegpt.service;
+
+import com.evegpt.config.UpstreamProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Latency, timeout, hedging and circuit-breaker state of one upstream: a scraped host or the OpenAI
+ * API. Calls made through it are rejected while its breaker is open, time out at a multiple of the
+ * observed p99 latency (never above the configured {@code maxTimeout}), and feed their latency and
+ * outcome back. Timed-out calls are recorded at the timeout, so timeouts grow again when an upstream
+ * becomes slower for good instead of failing every call. Client errors other than 429 count as
+ * successes: the upstream answered. For a paced upstream, whose callers already hold back to its
+ * rate limits, a 429 means that budget ran out rather than that the upstream is failing, so it is
+ * not counted at all.
+ */
+public class Upstream {
+
+    private final String name;
+    private final UpstreamProperties settings;
+    private final Duration maxTimeout;
+    private final boolean paced;
+    private final LatencyWindow latencies;
+    private final CircuitBreaker breaker;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final Counter successes;
+    private final Counter failures;
+    private final Counter timeouts;
+    private final Counter rejections;
+    private final Counter hedgeCounter;
+
+    Upstream(String name, UpstreamProperties settings, Duration maxTimeout, boolean paced, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.settings = settings;
+        this.maxTimeout = maxTimeout;
+        this.paced = paced;
+        this.latencies = new LatencyWindow(settings.getLatencyWindow());
+        this.breaker = new CircuitBreaker(settings.getBreaker(), System::currentTimeMillis);
+        this.successes = callCounter(meterRegistry, "success");
+        this.failures = callCounter(meterRegistry, "failure");
+        this.timeouts = callCounter(meterRegistry, "timeout");
+        this.rejections = callCounter(meterRegistry, "rejected");
+        this.hedgeCounter = Counter.builder("evegpt.upstream.hedges").tag("upstream", name).register(meterRegistry);
+        Gauge.builder("evegpt.upstream.timeout", this, upstream -> upstream.timeout().toMillis())
+                .tag("upstream", name).baseUnit("milliseconds").register(meterRegistry);
+        Gauge.builder("evegpt.upstream.breaker.state", breaker, cb -> cb.state().ordinal())
+                .tag("upstream", name).description("0 closed, 1 open, 2 half-open").register(meterRegistry);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /** Runs {@code call} unless the breaker is open, with the current timeout, recording the outcome. */
+    public <T> Mono<T> call(Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            if (!breaker.tryAcquire()) {
+                rejections.increment();
+                return Mono.error(unavailable());
+            }
+            calls.incrementAndGet();
+            // Trial calls after an outage get the full timeout, as older samples no longer say much
+            Duration timeout = breaker.state() == CircuitBreaker.State.HALF_OPEN ? maxTimeout : timeout();
+            long start = System.nanoTime();
+            return call.get()
+                    .timeout(timeout)
+                    .doOnSuccess(value -> onSuccess(start))
+                    .doOnError(error -> onError(error, start, timeout))
+                    .doOnCancel(breaker::onCancel);
+        });
+    }
+
+    /**
+     * Like {@link #call(Supplier)}, but when the call is still running after the hedge percentile of
+     * recent latencies, a second identical call is started and the first value wins; the other call
+     * is cancelled. A call that ends before then, with or without a value or with an error, is never
+     * hedged, so a 404 is fetched once and fails as a 404. When both calls fail, the first call's
+     * error is the one reported. Hedges are limited to {@code upstreams.hedge.max-ratio} of all
+     * calls. Only use for idempotent requests.
+     */
+    public <T> Mono<T> hedgedCall(Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            if (!settings.getHedge().isEnabled() || latencies.size() < settings.getMinSamples()
+                    || breaker.state() != CircuitBreaker.State.CLOSED) {
+                return call(call);
+            }
+            Duration hedgeDelay = Duration.ofNanos(latencies.percentile(settings.getHedge().getPercentile()));
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            Sinks.One<Boolean> primaryDone = Sinks.one();
+            Mono<T> primary = call(call)
+                    .doFinally(signal -> primaryDone.tryEmitValue(true))
+                    .onErrorResume(error -> {
+                        failure.set(error);
+                        return Mono.empty();
+                    });
+            Mono<T> hedge = Mono.delay(hedgeDelay)
+                    .takeUntilOther(primaryDone.asMono())
+                    .flatMap(tick -> {
+                        if (hedges.get() >= settings.getHedge().getMaxRatio() * calls.get()) {
+                            return Mono.<T>empty();
+                        }
+                        hedges.incrementAndGet();
+                        hedgeCounter.increment();
+                        return call(call);
+                    })
+                    .onErrorResume(error -> {
+                        failure.compareAndSet(null, error);
+                        return Mono.empty();
+                    });
+            // Neither call produced a value
+            return Mono.firstWithValue(primary, hedge)
+                    .onErrorResume(NoSuchElementException.class,
+                            none -> failure.get() != null ? Mono.error(failure.get()) : Mono.empty());
+        });
+    }
+
+    /**
+     * Like {@link #call(Supplier)} for a streamed response: the timeout applies to the first element,
+     * whose latency is what gets recorded, and then to each gap between elements.
+     */
+    public <T> Flux<T> stream(Supplier<Flux<T>> call, Duration idleTimeout) {
+        return Flux.defer(() -> {
+            if (!breaker.tryAcquire()) {
+                rejections.increment();
+                return Flux.error(unavailable());
+            }
+            calls.incrementAndGet();
+            Duration timeout = breaker.state() == CircuitBreaker.State.HALF_OPEN ? maxTimeout : timeout();
+            long start = System.nanoTime();
+            AtomicBoolean first = new AtomicBoolean(true);
+            return call.get()
+                    .timeout(Mono.delay(timeout), element -> Mono.delay(idleTimeout))
+                    .doOnNext(element -> {
+                        if (first.compareAndSet(true, false)) {
+                            onSuccess(start);
+                        }
+                    })
+                    .doOnComplete(() -> {
+                        if (first.compareAndSet(true, false)) {
+                            onSuccess(start);
+                        }
+                    })
+                    .doOnError(error -> {
+                        if (first.compareAndSet(true, false)) {
+                            onError(error, start, timeout);
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (first.get()) {
+                            breaker.onCancel();
+                        }
+                    });
+        });
+    }
+
+    /** Current timeout: the observed p99 times the multiplier, within the configured bounds. */
+    public Duration timeout() {
+        if (latencies.size() < settings.getMinSamples()) {
+            return maxTimeout;
+        }
+        long adaptive = (long) (latencies.percentile(0.99) * settings.getTimeoutMultiplier());
+        long min = Duration.ofMillis(settings.getMinTimeout()).toNanos();
+        return Duration.ofNanos(Math.min(maxTimeout.toNanos(), Math.max(min, adaptive)));
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(breaker.state().name(), timeout().toMillis(),
+                latencies.percentile(0.5) / 1_000_000, latencies.percentile(0.99) / 1_000_000, latencies.size(),
+                breaker.failureRate(), calls.get(), (long) rejections.count(), hedges.get());
+    }
+
+    CircuitBreaker.State state() {
+        return breaker.state();
+    }
+
+    private void onSuccess(long start) {
+        latencies.record(System.nanoTime() - start);
+        successes.increment();
+        breaker.onSuccess();
+    }
+
+    private void onError(Throwable error, long start, Duration timeout) {
+        if (error instanceof TimeoutException) {
+            latencies.record(timeout.toNanos());
+            timeouts.increment();
+            breaker.onFailure();
+        } else if (paced && isRateLimited(error)) {
+            // Says nothing about the upstream's health, so the breaker only hands back a trial permit
+            failures.increment();
+            breaker.onCancel();
+        } else if (isUpstreamFailure(error)) {
+            failures.increment();
+            breaker.onFailure();
+        } else {
+            latencies.record(System.nanoTime() - start);
+            successes.increment();
+            breaker.onSuccess();
+        }
+    }
+
+    /** Connection failures, server errors and rate limiting; other client errors mean the upstream is up. */
+    static boolean isUpstreamFailure(Throwable error) {
+        if (error instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError() || response.getStatusCode().value() == 429;
+        }
+        return error instanceof WebClientRequestException || error instanceof TimeoutException;
+    }
+
+    private static boolean isRateLimited(Throwable error) {
+        return error instanceof WebClientResponseException response && response.getStatusCode().value() == 429;
+    }
+
+    private UpstreamUnavailableException unavailable() {
+        // Retry-After is given in whole seconds, so an already expired open time still says one
+        return new UpstreamUnavailableException(name, Duration.ofMillis(Math.max(1000, breaker.remainingOpenMillis())));
+    }
+
+    private Counter callCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("evegpt.upstream.calls").tag("upstream", name).tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /** Point-in-time view of an upstream, as exposed by the {@code upstreams} actuator endpoint. */
+    public record Snapshot(String state, long timeoutMs, long p50Ms, long p99Ms, int samples, double failureRate,
+                           long calls, long rejected, long hedges) {}
+}
@@ -0,0 +1,44 @@
+package com.evegpt.service;
+
+import com.evegpt.config.UpstreamProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** The {@link Upstream}s this application calls, created on first use. */
+@Component
+public class UpstreamRegistry {
+
+    private final UpstreamProperties upstreamProperties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Upstream> upstreams = new ConcurrentHashMap<>();
+
+    public UpstreamRegistry(UpstreamProperties upstreamProperties, MeterRegistry meterRegistry) {
+        this.upstreamProperties = upstreamProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /** The upstream called {@code name}; {@code maxTimeout} applies when it is first created. */
+    public Upstream get(String name, Duration maxTimeout) {
+        return get(name, maxTimeout, false);
+    }
+
+    /**
+     * Like {@link #get(String, Duration)}, for an upstream whose calls are {@code paced} to its rate
+     * limits by the caller, so its 429s do not count against its circuit breaker.
+     */
+    public Upstream get(String name, Duration maxTimeout, boolean paced) {
+        return upstreams.computeIfAbsent(name,
+                key -> new Upstream(key, upstreamProperties, maxTimeout, paced, meterRegistry));
+    }
+
+    public Map<String, Upstream.Snapshot> snapshots() {
+        Map<String, Upstream.Snapshot> snapshots = new TreeMap<>();
+        upstreams.forEach((name, upstream) -> snapshots.put(name, upstream.snapshot()));
+        return snapshots;
+    }
+}
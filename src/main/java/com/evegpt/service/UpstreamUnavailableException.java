@@ -0,0 +1,22 @@
+package com.evegpt.service;
+
+import java.time.Duration;
+
+/**
+ * Thrown instead of calling an upstream whose circuit breaker is open. Carries no stack trace, as
+ * it is expected and frequent while an upstream is down.
+ */
+public class UpstreamUnavailableException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public UpstreamUnavailableException(String upstream, Duration retryAfter) {
+        super("Circuit breaker open for " + upstream, null, false, false);
+        this.retryAfter = retryAfter;
+    }
+
+    /** When the breaker lets calls through again. */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,27 @@
+package com.evegpt.service;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * {@code /actuator/upstreams}: circuit-breaker state, current timeout and latency percentiles of
+ * every upstream called so far.
+ */
+@Component
+@Endpoint(id = "upstreams")
+public class UpstreamsEndpoint {
+
+    private final UpstreamRegistry upstreamRegistry;
+
+    public UpstreamsEndpoint(UpstreamRegistry upstreamRegistry) {
+        this.upstreamRegistry = upstreamRegistry;
+    }
+
+    @ReadOperation
+    public Map<String, Upstream.Snapshot> upstreams() {
+        return upstreamRegistry.snapshots();
+    }
+}
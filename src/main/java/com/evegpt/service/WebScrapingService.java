@@ -1,7 +1,6 @@
 package com.evegpt.service;
 
 import com.evegpt.model.WebSearchResult;
-import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
@@ -9,13 +8,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.evegpt.config.EveSourcesProperties;
 import com.evegpt.config.WebScrapingProperties;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.io.IOException;
+import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 @Service
 public class WebScrapingService {
@@ -23,123 +28,264 @@ public class WebScrapingService {
     private static final Logger logger = LoggerFactory.getLogger(WebScrapingService.class);
     
     private final EveSourcesProperties eveSourcesProperties;
-    private final WebScrapingProperties webScrapingProperties;
+    private final HtmlFetcher htmlFetcher;
+    private final PageStore pageStore;
+    private final ScrapingExecutor scrapingExecutor;
+    private final WikiIndex wikiIndex;
+    private final ChatMetrics chatMetrics;
+    
+    private final ReactiveCache<String, List<WebSearchResult>> wikiSearchCache;
+    private final ReactiveCache<String, List<WebSearchResult>> officialSearchCache;
+    private final ReactiveCache<String, String> pageContentCache;
 
-    public WebScrapingService(EveSourcesProperties eveSourcesProperties, WebScrapingProperties webScrapingProperties) {
+    public WebScrapingService(EveSourcesProperties eveSourcesProperties, WebScrapingProperties webScrapingProperties,
+                              HtmlFetcher htmlFetcher, PageStore pageStore, ScrapingExecutor scrapingExecutor,
+                              WikiIndex wikiIndex, ChatMetrics chatMetrics, MeterRegistry meterRegistry) {
         this.eveSourcesProperties = eveSourcesProperties;
-        this.webScrapingProperties = webScrapingProperties;
+        this.htmlFetcher = htmlFetcher;
+        this.pageStore = pageStore;
+        this.scrapingExecutor = scrapingExecutor;
+        this.wikiIndex = wikiIndex;
+        this.chatMetrics = chatMetrics;
+        
+        WebScrapingProperties.Cache cache = webScrapingProperties.getCache();
+        this.wikiSearchCache = new ReactiveCache<>("scrape.search.wiki", cache.getSearch(),
+                WebScrapingService::weighSearchResults, this::fetchWikiSearch, meterRegistry);
+        this.officialSearchCache = new ReactiveCache<>("scrape.search.official", cache.getSearch(),
+                WebScrapingService::weighSearchResults, this::fetchOfficialSearch, meterRegistry);
+        this.pageContentCache = new ReactiveCache<>("scrape.page", cache.getPage(),
+                (url, content) -> ReactiveCache.estimateBytes(url) + ReactiveCache.estimateBytes(content),
+                this::fetchPageContent, meterRegistry);
+    }
+    
+    /** Answers from the local wiki index when it can, otherwise from the wiki's own search page. */
+    public Mono<List<WebSearchResult>> searchEveWiki(String query) {
+        return Mono.fromSupplier(() -> wikiIndex.search(query))
+                .flatMap(indexed -> indexed.isEmpty()
+                        ? wikiSearchCache.get(normalizeQuery(query)).map(WebScrapingService::copyOf)
+                        : Mono.just(indexed))
+                .onErrorResume(error -> {
+                    logger.error("Error searching EVE Wiki for query: {}", query, error);
+                    chatMetrics.recordScrapeError("wiki_search");
+                    return Mono.just(List.of());
+                });
+    }
+    
+    public Mono<List<WebSearchResult>> searchEveOnline(String query) {
+        return officialSearchCache.get(normalizeQuery(query))
+                .map(WebScrapingService::copyOf)
+                .onErrorResume(error -> {
+                    logger.error("Error searching EVE Online for query: {}", query, error);
+                    chatMetrics.recordScrapeError("official_search");
+                    return Mono.just(List.of());
+                });
+    }
+    
+    public Mono<String> extractPageContent(String url) {
+        return pageContentCache.get(url)
+                .onErrorResume(error -> {
+                    logger.error("Error extracting content from URL: {}", url, error);
+                    chatMetrics.recordScrapeError("page_extraction");
+                    return Mono.just("");
+                });
+    }
+    
+    /**
+     * Refreshes what a chat about {@code query} would read from the caches: both searches and the
+     * pages of the first {@code maxPages} results. Entries past half their TTL, or missing, are
+     * reloaded while {@code budget} lasts, one unit per load; fresh entries are left alone. Failures
+     * are logged and skipped. Used by the {@link CacheWarmer}.
+     */
+    public Mono<Void> warm(String query, int maxPages, AtomicInteger budget) {
+        String key = normalizeQuery(query);
+        Mono<List<WebSearchResult>> wiki = Mono.fromSupplier(() -> wikiIndex.search(query))
+                .flatMap(indexed -> indexed.isEmpty() ? warmEntry(wikiSearchCache, key, budget) : Mono.just(indexed))
+                .defaultIfEmpty(List.of());
+        Mono<List<WebSearchResult>> official = warmEntry(officialSearchCache, key, budget).defaultIfEmpty(List.of());
+        return wiki.zipWith(official, (wikiResults, officialResults) -> Stream.concat(wikiResults.stream(), officialResults.stream())
+                        .map(WebSearchResult::getUrl)
+                        .distinct()
+                        .limit(maxPages)
+                        .toList())
+                .flatMapMany(Flux::fromIterable)
+                .concatMap(url -> warmEntry(pageContentCache, url, budget))
+                .then();
+    }
+    
+    private static <K, V> Mono<V> warmEntry(ReactiveCache<K, V> cache, K key, AtomicInteger budget) {
+        return Mono.defer(() -> {
+            if (!cache.isEnabled()) {
+                return Mono.empty();
+            }
+            if (cache.isFresh(key)) {
+                return cache.get(key);
+            }
+            if (budget.getAndUpdate(remaining -> Math.max(0, remaining - 1)) == 0) {
+                return Mono.empty();
+            }
+            return cache.refresh(key)
+                    .onErrorResume(error -> {
+                        logger.warn("Failed to warm {}: {}", key, error.toString());
+                        return Mono.empty();
+                    });
+        });
+    }
+    
+    /**
+     * Cache key for a search: case, surrounding whitespace and trailing punctuation do not change
+     * what the search engines return.
+     */
+    static String normalizeQuery(String query) {
+        return query.trim()
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("\\s+", " ")
+                .replaceAll("[?!.]+$", "");
+    }
+    
+    private Mono<List<WebSearchResult>> fetchWikiSearch(String query) {
+        String searchUrl = eveSourcesProperties.getWiki().getBaseUrl() + "/index.php?search=" + 
+                         URLEncoder.encode(query, StandardCharsets.UTF_8);
+        
+        logger.debug("Searching EVE Wiki: {}", searchUrl);
+        
+        return htmlFetcher.fetch(searchUrl).map(this::parseWikiSearchResults);
+    }
+    
+    private Mono<List<WebSearchResult>> fetchOfficialSearch(String query) {
+        // Google site search by default (eve.sources.official.search-url)
+        String searchUrl = eveSourcesProperties.getOfficial().getSearchUrl() + 
+                         URLEncoder.encode(query, StandardCharsets.UTF_8);
+        
+        logger.debug("Searching EVE Online official site: {}", searchUrl);
+        
+        return htmlFetcher.fetch(searchUrl).map(this::parseOfficialSearchResults);
+    }
+    
+    private Mono<String> fetchPageContent(String url) {
+        return loadPageContent(url).doOnNext(content -> wikiIndex.indexPage(url, content));
     }
     
-    public List<WebSearchResult> searchEveWiki(String query) {
+    private Mono<String> loadPageContent(String url) {
+        logger.debug("Extracting content from: {}", url);
+        
+        if (!pageStore.isEnabled()) {
+            return htmlFetcher.fetchPage(url);
+        }
+        return scrapingExecutor.submit(() -> pageStore.get(url))
+                .flatMap(stored -> {
+                    if (stored.isEmpty()) {
+                        return fetchAndStore(url, null);
+                    }
+                    if (stored.get().isFresh()) {
+                        return Mono.just(stored.get().content());
+                    }
+                    return fetchAndStore(url, stored.get());
+                });
+    }
+    
+    /**
+     * Fetches a page and persists its text. When a stale stored copy exists the fetch is
+     * conditional, and the stored copy is also served if the upstream cannot be reached.
+     */
+    private Mono<String> fetchAndStore(String url, PageStore.StoredPage stored) {
+        Mono<String> fetched = htmlFetcher.fetchIfModified(url,
+                        stored != null ? stored.etag() : null, stored != null ? stored.lastModified() : null)
+                .flatMap(page -> {
+                    if (page.notModified()) {
+                        logger.debug("Stored page still valid: {}", url);
+                        return scrapingExecutor.submit(() -> {
+                            pageStore.touch(url);
+                            return stored.content();
+                        });
+                    }
+                    return scrapingExecutor.submit(() -> {
+                        pageStore.put(url, page.text(), page.etag(), page.lastModified());
+                        return page.text();
+                    });
+                });
+        if (stored == null) {
+            return fetched;
+        }
+        return fetched.onErrorResume(error -> {
+            logger.warn("Revalidation failed, serving stored copy of {}", url, error);
+            return Mono.just(stored.content());
+        });
+    }
+    
+    /** Callers enrich results in place, so cached lists are never handed out directly. */
+    private static List<WebSearchResult> copyOf(List<WebSearchResult> results) {
+        return results.stream().map(WebSearchResult::new).toList();
+    }
+    
+    private static int weighSearchResults(String query, List<WebSearchResult> results) {
+        int bytes = ReactiveCache.estimateBytes(query);
+        for (WebSearchResult result : results) {
+            bytes += 32 + ReactiveCache.estimateBytes(result.getUrl()) + ReactiveCache.estimateBytes(result.getTitle())
+                    + ReactiveCache.estimateBytes(result.getContent());
+        }
+        return bytes;
+    }
+    
+    private List<WebSearchResult> parseWikiSearchResults(Document doc) {
         List<WebSearchResult> results = new ArrayList<>();
         
-        try {
-            String searchUrl = eveSourcesProperties.getWiki().getBaseUrl() + "/index.php?search=" + 
-                             URLEncoder.encode(query, StandardCharsets.UTF_8);
-            
-            logger.debug("Searching EVE Wiki: {}", searchUrl);
-            
-        Document doc = Jsoup.connect(searchUrl)
-            .userAgent(webScrapingProperties.getUserAgent())
-            .timeout(webScrapingProperties.getTimeout())
-                    .get();
-            
-            // Parse search results from EVE University Wiki
-            Elements searchResults = doc.select(".mw-search-result");
+        // Parse search results from EVE University Wiki
+        Elements searchResults = doc.select(".mw-search-result");
+        
+        for (Element result : searchResults) {
+            Element titleElement = result.selectFirst(".mw-search-result-heading a");
+            Element snippetElement = result.selectFirst(".searchresult");
             
-            for (Element result : searchResults) {
-                Element titleElement = result.selectFirst(".mw-search-result-heading a");
-                Element snippetElement = result.selectFirst(".searchresult");
+            if (titleElement != null) {
+                String title = titleElement.text();
+                String url = eveSourcesProperties.getWiki().getBaseUrl() + titleElement.attr("href");
+                String content = snippetElement != null ? snippetElement.text() : "";
                 
-                if (titleElement != null) {
-                    String title = titleElement.text();
-                    String url = eveSourcesProperties.getWiki().getBaseUrl() + titleElement.attr("href");
-                    String content = snippetElement != null ? snippetElement.text() : "";
-                    
-                    WebSearchResult searchResult = new WebSearchResult(url, title, content, "eve-university");
-                    results.add(searchResult);
-                }
-                
-                // Limit results
-                if (results.size() >= 5) break;
+                WebSearchResult searchResult = new WebSearchResult(url, title, content, "eve-university");
+                results.add(searchResult);
             }
             
-        } catch (IOException e) {
-            logger.error("Error searching EVE Wiki for query: {}", query, e);
+            // Limit results
+            if (results.size() >= 5) break;
         }
         
         return results;
     }
     
-    public List<WebSearchResult> searchEveOnline(String query) {
+    private List<WebSearchResult> parseOfficialSearchResults(Document doc) {
         List<WebSearchResult> results = new ArrayList<>();
         
-        try {
-            // Use Google site search for EVE Online official site
-            String searchUrl = "https://www.google.com/search?q=site:eveonline.com+" + 
-                             URLEncoder.encode(query, StandardCharsets.UTF_8);
-            
-            logger.debug("Searching EVE Online official site: {}", searchUrl);
-            
-        Document doc = Jsoup.connect(searchUrl)
-            .userAgent(webScrapingProperties.getUserAgent())
-            .timeout(webScrapingProperties.getTimeout())
-                    .get();
-            
-            // Parse Google search results
-            Elements searchResults = doc.select("div.g");
+        // Parse Google search results
+        Elements searchResults = doc.select("div.g");
+        String officialDomain = officialDomain();
+        
+        for (Element result : searchResults) {
+            Element titleElement = result.selectFirst("h3");
+            Element linkElement = result.selectFirst("a");
+            Element snippetElement = result.selectFirst(".VwiC3b");
             
-            for (Element result : searchResults) {
-                Element titleElement = result.selectFirst("h3");
-                Element linkElement = result.selectFirst("a");
-                Element snippetElement = result.selectFirst(".VwiC3b");
+            if (titleElement != null && linkElement != null) {
+                String title = titleElement.text();
+                String url = linkElement.attr("href");
+                String content = snippetElement != null ? snippetElement.text() : "";
                 
-                if (titleElement != null && linkElement != null) {
-                    String title = titleElement.text();
-                    String url = linkElement.attr("href");
-                    String content = snippetElement != null ? snippetElement.text() : "";
-                    
-                    // Only include EVE Online official results
-                    if (url.contains("eveonline.com")) {
-                        WebSearchResult searchResult = new WebSearchResult(url, title, content, "eve-online");
-                        results.add(searchResult);
-                    }
+                // Only include EVE Online official results
+                if (url.contains(officialDomain)) {
+                    WebSearchResult searchResult = new WebSearchResult(url, title, content, "eve-online");
+                    results.add(searchResult);
                 }
-                
-                // Limit results
-                if (results.size() >= 3) break;
             }
             
-        } catch (IOException e) {
-            logger.error("Error searching EVE Online for query: {}", query, e);
+            // Limit results
+            if (results.size() >= 3) break;
         }
         
         return results;
     }
     
-    public String extractPageContent(String url) {
-        try {
-            logger.debug("Extracting content from: {}", url);
-            
-        Document doc = Jsoup.connect(url)
-            .userAgent(webScrapingProperties.getUserAgent())
-            .timeout(webScrapingProperties.getTimeout())
-                    .get();
-            
-            // Remove script and style elements
-            doc.select("script, style").remove();
-            
-            // Extract main content based on common selectors
-            Element content = doc.selectFirst("#mw-content-text, .article-content, main, .content");
-            if (content == null) {
-                content = doc.body();
-            }
-            
-            return content != null ? content.text() : "";
-            
-        } catch (IOException e) {
-            logger.error("Error extracting content from URL: {}", url, e);
-            return "";
-        }
+    /** Domain of the official site without "www.", so subdomains such as support.eveonline.com match too. */
+    private String officialDomain() {
+        String host = URI.create(eveSourcesProperties.getOfficial().getBaseUrl()).getHost();
+        return host.startsWith("www.") ? host.substring(4) : host;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,223 @@
+package com.evegpt.service;
+
+import com.evegpt.config.EveSourcesProperties;
+import com.evegpt.model.WebSearchResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Local full-text index of EVE University wiki articles, so wiki searches are answered in memory
+ * instead of by scraping the wiki's search page. Articles come from wiki pages extracted at runtime,
+ * from wiki pages already in the {@link PageStore} at startup, and optionally from a MediaWiki XML
+ * export. Searches that find fewer than {@code eve.sources.wiki.index.min-results} articles return
+ * nothing, so the caller falls back to live search while the index is still sparse.
+ */
+@Component
+public class WikiIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(WikiIndex.class);
+
+    private static final int SNIPPET_CHARS = 300;
+    /** Title terms are counted this many times, as a title match is a strong signal */
+    private static final int TITLE_BOOST = 3;
+    private static final Set<String> NON_ARTICLE_NAMESPACES = Set.of(
+            "special", "file", "image", "category", "template", "user", "help", "mediawiki", "module", "media");
+
+    private final EveSourcesProperties.Index settings;
+    private final String articlePrefix;
+    private final PageStore pageStore;
+    private final Bm25Index index = new Bm25Index();
+    /** Indexed articles by document id; null once an article has been re-indexed */
+    private final List<Article> articles = new ArrayList<>();
+    private final Map<String, Integer> idsByUrl = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Counter hits;
+    private final Counter misses;
+
+    public WikiIndex(EveSourcesProperties eveSourcesProperties, PageStore pageStore, MeterRegistry meterRegistry) {
+        this.settings = eveSourcesProperties.getWiki().getIndex();
+        this.articlePrefix = eveSourcesProperties.getWiki().getBaseUrl() + "/";
+        this.pageStore = pageStore;
+        this.hits = Counter.builder("evegpt.wiki_index.searches").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("evegpt.wiki_index.searches").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("evegpt.wiki_index.documents", this, WikiIndex::size).register(meterRegistry);
+    }
+
+    /**
+     * Loads stored pages and the configured dump in the background; searches fall back until then.
+     * A dump takes minutes to read, so this runs on its own thread rather than holding a scraping
+     * slot away from live requests.
+     */
+    @PostConstruct
+    void load() {
+        if (!settings.isEnabled()) {
+            return;
+        }
+        Mono.fromCallable(() -> {
+                    loadStoredPages();
+                    if (settings.getDumpPath() != null && !settings.getDumpPath().isBlank()) {
+                        loadDump(Path.of(settings.getDumpPath()));
+                    }
+                    return size();
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(count -> logger.info("Wiki index ready with {} articles", count),
+                        error -> logger.error("Unable to load wiki index", error));
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Returns the best matching articles, or an empty list when the index cannot answer the query well. */
+    public List<WebSearchResult> search(String query) {
+        if (!settings.isEnabled()) {
+            return List.of();
+        }
+        List<String> terms = TextAnalyzer.analyze(query);
+        List<WebSearchResult> results = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Bm25Index.Match match : index.search(terms, settings.getMaxResults(), settings.getMinTermCoverage())) {
+                Article article = articles.get(match.id());
+                results.add(new WebSearchResult(article.url(), article.title(), article.snippet(), "eve-university"));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (results.size() < settings.getMinResults()) {
+            misses.increment();
+            return List.of();
+        }
+        hits.increment();
+        return results;
+    }
+
+    /** Indexes the extracted text of a fetched page if it is a wiki article; other URLs are ignored. */
+    public void indexPage(String url, String text) {
+        if (settings.isEnabled() && !text.isBlank()) {
+            String title = titleOf(url);
+            if (title != null) {
+                add(url, title, text);
+            }
+        }
+    }
+
+    private void add(String url, String title, String text) {
+        List<String> terms = new ArrayList<>();
+        List<String> titleTerms = TextAnalyzer.analyze(title);
+        for (int i = 0; i < TITLE_BOOST; i++) {
+            terms.addAll(titleTerms);
+        }
+        terms.addAll(TextAnalyzer.analyze(text));
+        String snippet = text.length() > SNIPPET_CHARS ? text.substring(0, SNIPPET_CHARS) + "..." : text;
+        int contentHash = text.hashCode();
+
+        lock.writeLock().lock();
+        try {
+            Integer existing = idsByUrl.get(url);
+            if (existing != null) {
+                if (articles.get(existing).contentHash() == contentHash) {
+                    return;
+                }
+                index.remove(existing);
+                articles.set(existing, null);
+            }
+            int id = index.add(terms);
+            articles.add(new Article(url, title, snippet, contentHash));
+            idsByUrl.put(url, id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void loadStoredPages() {
+        for (String url : pageStore.urls()) {
+            if (titleOf(url) != null) {
+                pageStore.get(url).ifPresent(page -> indexPage(url, page.content()));
+            }
+        }
+    }
+
+    private void loadDump(Path dump) throws IOException {
+        long start = System.currentTimeMillis();
+        int count = new MediaWikiDumpReader().read(dump, article -> {
+            String url = articleUrl(article.title());
+            if (!isIndexed(url)) {
+                add(url, article.title(), article.text());
+            }
+        });
+        logger.info("Indexed {} articles from {} in {} ms", count, dump, System.currentTimeMillis() - start);
+    }
+
+    private boolean isIndexed(String url) {
+        lock.readLock().lock();
+        try {
+            return idsByUrl.containsKey(url);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Article title of a wiki URL, or null for search pages, special pages and other sites. */
+    private String titleOf(String url) {
+        if (!url.startsWith(articlePrefix) || url.contains("?")) {
+            return null;
+        }
+        String path = url.substring(articlePrefix.length());
+        int fragment = path.indexOf('#');
+        if (fragment >= 0) {
+            path = path.substring(0, fragment);
+        }
+        String title = URLDecoder.decode(path.replace("+", "%2B"), StandardCharsets.UTF_8).replace('_', ' ');
+        if (title.isBlank() || title.endsWith(".php")) {
+            return null;
+        }
+        int colon = title.indexOf(':');
+        if (colon > 0) {
+            String namespace = title.substring(0, colon).toLowerCase(Locale.ROOT);
+            if (NON_ARTICLE_NAMESPACES.contains(namespace) || namespace.endsWith("talk")) {
+                return null;
+            }
+        }
+        return title;
+    }
+
+    private String articleUrl(String title) {
+        String path = URLEncoder.encode(title.replace(' ', '_'), StandardCharsets.UTF_8)
+                .replace("%2F", "/")
+                .replace("%3A", ":");
+        return articlePrefix + path;
+    }
+
+    record Article(String url, String title, String snippet, int contentHash) {}
+}
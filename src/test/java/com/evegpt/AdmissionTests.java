@@ -0,0 +1,109 @@
+package com.evegpt;
+
+import com.evegpt.model.ChatRequest;
+import com.evegpt.service.ConcurrencyLimiter;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Load shedding on the chat endpoints: a single slot held by a completion that hangs, and an
+ * upstream that answers some prompts with 429.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class AdmissionTests {
+
+    private static final Sinks.Empty<Void> completionReleased = Sinks.empty();
+    private static final StubUpstreams upstreams = StubUpstreams.start()
+            .completions((body, response) -> body.toString().contains("quota")
+                    ? response.status(429).header("retry-after", "1").header("x-ratelimit-remaining-requests", "0").send()
+                    : completionReleased.asMono().then(Mono.from(StubUpstreams.reply(response, "Fly safe"))));
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private ConcurrencyLimiter concurrencyLimiter;
+
+    @DynamicPropertySource
+    static void upstreamProperties(DynamicPropertyRegistry registry) {
+        upstreams.register(registry);
+        StubUpstreams.disableCaches(registry);
+        registry.add("chat.admission.initial-limit", () -> "1");
+        registry.add("chat.admission.min-limit", () -> "1");
+        registry.add("chat.admission.max-queue-size", () -> "1");
+        registry.add("chat.admission.max-queue-time", () -> "1500");
+        registry.add("openai.api.max-retries", () -> "0");
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstreams.stop();
+    }
+
+    @Test
+    void shedsChatsBeyondTheLimitAndQueue() {
+        WebClient client = WebClient.create("http://localhost:" + port);
+        CompletableFuture<HttpStatusCode> running = send(client);
+        StubUpstreams.await(() -> concurrencyLimiter.inFlight() == 1);
+        CompletableFuture<HttpStatusCode> queued = send(client);
+        StubUpstreams.await(() -> concurrencyLimiter.queued() == 1);
+
+        webTestClient.post().uri("/api/v1/chat")
+                .bodyValue(directRequest("What is a Rifter?"))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS)
+                .expectHeader().exists(HttpHeaders.RETRY_AFTER);
+        webTestClient.post().uri("/api/v1/chat/stream")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue(directRequest("What is a Rifter?"))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS)
+                .expectHeader().exists(HttpHeaders.RETRY_AFTER);
+
+        assertThat(queued.join()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        completionReleased.tryEmitEmpty();
+        assertThat(running.join()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    void passesUpstreamRateLimitsOnWithRetryAfter() {
+        webTestClient.post().uri("/api/v1/chat")
+                .bodyValue(directRequest("Over quota?"))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS)
+                .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "1");
+    }
+
+    private static CompletableFuture<HttpStatusCode> send(WebClient client) {
+        return client.post().uri("/api/v1/chat")
+                .bodyValue(directRequest("How do I fit a Rifter?"))
+                .exchangeToMono(response -> response.releaseBody().thenReturn(response.statusCode()))
+                .toFuture();
+    }
+
+    private static ChatRequest directRequest(String prompt) {
+        ChatRequest request = new ChatRequest(prompt);
+        request.setIncludeWebSearch(false);
+        return request;
+    }
+}
@@ -0,0 +1,111 @@
+package com.evegpt;
+
+import com.evegpt.model.BatchChatRequest;
+import com.evegpt.model.BatchChatResponse;
+import com.evegpt.model.BatchChatResult;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Batch endpoints against a local stub serving the wiki and the completions API. */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class BatchChatTests {
+
+    private static final StubUpstreams upstreams = StubUpstreams.start()
+            .wikiSearch(query -> Mono.just(StubUpstreams.searchResults("Rifter", "Autocannons")))
+            .completions((body, response) -> body.toString().contains("fail")
+                    ? response.status(500).send()
+                    : StubUpstreams.reply(response, "Fly safe"));
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @DynamicPropertySource
+    static void upstreamProperties(DynamicPropertyRegistry registry) {
+        upstreams.register(registry);
+        StubUpstreams.disableCaches(registry);
+        registry.add("chat.batch.max-prompts", () -> "4");
+        registry.add("chat.batch.concurrency", () -> "2");
+        // Completions are counted exactly, so the failing prompt must not be retried
+        registry.add("openai.api.max-retries", () -> "0");
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstreams.stop();
+    }
+
+    @BeforeEach
+    void resetCounts() {
+        upstreams.resetHits();
+    }
+
+    @Test
+    void answersDistinctPromptsOnceAndSharesPages() {
+        BatchChatRequest request = new BatchChatRequest(List.of(
+                "How do I fit a Rifter?", "how do I fit a  rifter", "Which autocannons suit a Rifter?", "fail this one"));
+
+        BatchChatResponse response = webTestClient.post().uri("/api/v1/chat/batch")
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(BatchChatResponse.class)
+                .returnResult().getResponseBody();
+
+        assertThat(response.getUniquePrompts()).isEqualTo(3);
+        assertThat(response.getResults()).extracting(BatchChatResult::getIndex).containsExactly(0, 1, 2, 3);
+        assertThat(response.getResults().subList(0, 3)).allSatisfy(result -> {
+            assertThat(result.getResponse().getResponse()).isEqualTo("Fly safe");
+            assertThat(result.getResponse().getSourcesConsulted()).isNotEmpty();
+            assertThat(result.getError()).isNull();
+        });
+        assertThat(response.getResults().get(1).getPrompt()).isEqualTo("how do I fit a  rifter");
+        assertThat(response.getResults().get(3).getResponse()).isNull();
+        assertThat(response.getResults().get(3).getError()).isNotBlank();
+        // Two pages shared by three prompts; the failing prompt retries without sources
+        assertThat(upstreams.hits("page")).isEqualTo(2);
+        assertThat(upstreams.hits("completion")).isEqualTo(4);
+    }
+
+    @Test
+    void streamsResultsAsTheyFinish() {
+        List<BatchChatResult> results = webTestClient.post().uri("/api/v1/chat/batch/stream")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(new BatchChatRequest(List.of("Rifter fitting", "Rifter fitting?", "fail")))
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(BatchChatResult.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        assertThat(results).extracting(BatchChatResult::getIndex).containsExactlyInAnyOrder(0, 1, 2);
+        assertThat(results).filteredOn(result -> result.getError() != null)
+                .extracting(BatchChatResult::getIndex).containsExactly(2);
+    }
+
+    @Test
+    void rejectsOversizedAndInvalidBatches() {
+        webTestClient.post().uri("/api/v1/chat/batch")
+                .bodyValue(new BatchChatRequest(Collections.nCopies(5, "Rifter")))
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        webTestClient.post().uri("/api/v1/chat/batch")
+                .bodyValue(new BatchChatRequest(List.of("Rifter", " ")))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+}
@@ -0,0 +1,84 @@
+package com.evegpt;
+
+import com.evegpt.model.ChatRequest;
+import com.evegpt.service.CacheWarmer;
+import com.evegpt.service.CountMinSketch;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Frequency tracking and budgeted cache warming against a local stub of the wiki and official site. */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class CacheWarmerTests {
+
+    private static final StubUpstreams upstreams = StubUpstreams.start();
+
+    @Autowired
+    private CacheWarmer cacheWarmer;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @DynamicPropertySource
+    static void upstreamProperties(DynamicPropertyRegistry registry) {
+        upstreams.register(registry);
+        registry.add("chat.semantic-cache.enabled", () -> "false");
+        registry.add("chat.warmer.interval", () -> "3600000");
+        registry.add("chat.warmer.min-count", () -> "2");
+        registry.add("chat.warmer.max-requests", () -> "4");
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstreams.stop();
+    }
+
+    @Test
+    void sketchNeverUndercountsAndAges() {
+        CountMinSketch sketch = new CountMinSketch(1000);
+        for (int i = 0; i < 5000; i++) {
+            sketch.add("topic " + (i % 500));
+        }
+        for (int i = 0; i < 200; i++) {
+            sketch.add("rifter fitting");
+        }
+
+        assertThat(sketch.width()).isEqualTo(1024);
+        assertThat(sketch.estimate("rifter fitting")).isBetween(200, 230);
+        assertThat(sketch.estimate("topic 7")).isGreaterThanOrEqualTo(10);
+        sketch.halve();
+        assertThat(sketch.estimate("rifter fitting")).isBetween(100, 115);
+    }
+
+    @Test
+    void warmsHotTopicsWithinBudgetAndServesThemFromCache() {
+        for (int i = 0; i < 3; i++) {
+            cacheWarmer.recordQuery("How do I fit a Rifter?");
+        }
+        cacheWarmer.recordQuery("Rifter skills");
+        cacheWarmer.recordQuery("rifter skills ");
+        cacheWarmer.recordQuery("Where is Jita?");
+        assertThat(cacheWarmer.hotTopics()).containsExactly("how do i fit a rifter", "rifter skills");
+
+        // Both searches and the page of the hottest topic, then the budget allows one more search
+        assertThat(cacheWarmer.warm().block()).isEqualTo(4);
+        assertThat(upstreams.hits("wiki_search")).isEqualTo(2);
+        assertThat(upstreams.hits("official_search")).isEqualTo(1);
+        assertThat(upstreams.hits("page")).isEqualTo(1);
+
+        ChatRequest request = new ChatRequest("How do I fit a Rifter?");
+        webTestClient.post().uri("/api/v1/chat").bodyValue(request).exchange().expectStatus().isOk();
+        assertThat(upstreams.hits("wiki_search")).isEqualTo(2);
+        assertThat(upstreams.hits("page")).isEqualTo(1);
+
+        // Fresh entries are skipped; only the search the budget cut off is loaded
+        assertThat(cacheWarmer.warm().block()).isEqualTo(1);
+        assertThat(upstreams.hits("official_search")).isEqualTo(2);
+    }
+}
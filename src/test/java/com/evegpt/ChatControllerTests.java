@@ -0,0 +1,54 @@
+package com.evegpt;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.boot.web.embedded.netty.NettyWebServer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ChatControllerTests {
+
+    @Autowired
+    private WebTestClient webTestClient;
+    @Autowired
+    private WebServerApplicationContext applicationContext;
+
+    @Test
+    void runsOnReactorNetty() {
+        assertThat(applicationContext.getWebServer()).isInstanceOf(NettyWebServer.class);
+    }
+
+    @Test
+    void allowsCrossOriginRequestsFromFrontend() {
+        webTestClient.options().uri("/api/v1/chat")
+                .header(HttpHeaders.ORIGIN, "http://localhost:5173")
+                .header(HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD, "POST")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN, "http://localhost:5173")
+                .expectHeader().valueEquals(HttpHeaders.ACCESS_CONTROL_ALLOW_CREDENTIALS, "true");
+
+        webTestClient.options().uri("/api/v1/chat")
+                .header(HttpHeaders.ORIGIN, "https://example.com")
+                .header(HttpHeaders.ACCESS_CONTROL_REQUEST_METHOD, "POST")
+                .exchange()
+                .expectStatus().isForbidden();
+    }
+
+    @Test
+    void rejectsBlankPrompt() {
+        webTestClient.post().uri("/api/v1/chat")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("prompt", " "))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+}
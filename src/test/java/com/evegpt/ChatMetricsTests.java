@@ -0,0 +1,48 @@
+package com.evegpt;
+
+import com.evegpt.service.ChatMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ChatMetricsTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ChatMetrics metrics = new ChatMetrics(registry);
+
+    @Test
+    void timesStagesByOutcome() {
+        Map<String, Long> stageTimings = new HashMap<>();
+
+        metrics.timed("wiki_search", Mono.just("ok"), stageTimings).block();
+        assertThatThrownBy(() -> metrics.timed("page_extraction", Mono.never(), stageTimings)
+                .timeout(Duration.ofMillis(20)).block())
+                .hasCauseInstanceOf(TimeoutException.class);
+
+        assertThat(registry.get("evegpt.chat.stage").tags("stage", "wiki_search", "outcome", "success").timer().count())
+                .isEqualTo(1);
+        assertThat(registry.get("evegpt.chat.stage").tags("stage", "page_extraction", "outcome", "cancelled").timer().count())
+                .isEqualTo(1);
+        assertThat(stageTimings).containsKeys("wiki_search", "page_extraction");
+        assertThat(stageTimings.get("page_extraction")).isGreaterThanOrEqualTo(20);
+    }
+
+    @Test
+    void countsTokensAndResponseSources() {
+        metrics.recordTokens(120, 30);
+        metrics.recordTokens(80, null);
+        metrics.recordResponse("completion_cache");
+
+        assertThat(registry.get("evegpt.openai.tokens").tag("type", "prompt").counter().count()).isEqualTo(200);
+        assertThat(registry.get("evegpt.openai.tokens").tag("type", "completion").counter().count()).isEqualTo(30);
+        assertThat(registry.get("evegpt.chat.responses").tag("source", "completion_cache").counter().count()).isEqualTo(1);
+    }
+}
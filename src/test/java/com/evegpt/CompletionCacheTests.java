@@ -0,0 +1,110 @@
+package com.evegpt;
+
+import com.evegpt.model.ChatRequest;
+import com.evegpt.model.ChatResponse;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** The exact-match completion cache in front of a local stub of the completions API. */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class CompletionCacheTests {
+
+    private static final StubUpstreams upstreams = StubUpstreams.start()
+            .completions((body, response) -> body.toString().contains("Drake")
+                    // Slow enough for concurrent identical requests to overlap
+                    ? Mono.delay(Duration.ofSeconds(1)).then(Mono.from(StubUpstreams.reply(response, "Fly safe")))
+                    : StubUpstreams.reply(response, "Fly safe"));
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @DynamicPropertySource
+    static void upstreamProperties(DynamicPropertyRegistry registry) {
+        upstreams.register(registry);
+        // Only the completion cache: the semantic cache would answer repeated prompts before it
+        registry.add("chat.semantic-cache.enabled", () -> "false");
+        registry.add("openai.cache.max-temperature", () -> "0.7");
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstreams.stop();
+    }
+
+    @BeforeEach
+    void resetCounts() {
+        upstreams.resetHits();
+    }
+
+    @Test
+    void servesIdenticalRequestsFromTheCache() {
+        ChatResponse first = chat(directRequest("How do I fit a Rifter?", 0.2));
+        ChatResponse second = chat(directRequest("How do I fit a Rifter?", 0.2));
+
+        assertThat(first.isCacheHit()).isFalse();
+        assertThat(second.isCacheHit()).isTrue();
+        assertThat(second.getResponse()).isEqualTo("Fly safe");
+        assertThat(upstreams.hits("completion")).isEqualTo(1);
+    }
+
+    @Test
+    void bypassesTheCacheAboveTheMaxTemperature() {
+        ChatResponse first = chat(directRequest("Is the Slasher fast?", 0.9));
+        ChatResponse second = chat(directRequest("Is the Slasher fast?", 0.9));
+
+        assertThat(first.isCacheHit()).isFalse();
+        assertThat(second.isCacheHit()).isFalse();
+        assertThat(upstreams.hits("completion")).isEqualTo(2);
+    }
+
+    @Test
+    void collapsesConcurrentIdenticalMissesIntoOneUpstreamCall() {
+        WebClient client = WebClient.create("http://localhost:" + port);
+
+        List<ChatResponse> responses = Flux.range(0, 4)
+                .flatMap(i -> client.post().uri("/api/v1/chat")
+                        .bodyValue(directRequest("Is the Drake good for ratting?", 0.2))
+                        .retrieve()
+                        .bodyToMono(ChatResponse.class))
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        assertThat(responses).hasSize(4).allSatisfy(response -> assertThat(response.getResponse()).isEqualTo("Fly safe"));
+        assertThat(upstreams.hits("completion")).isEqualTo(1);
+        assertThat(chat(directRequest("Is the Drake good for ratting?", 0.2)).isCacheHit()).isTrue();
+    }
+
+    private ChatResponse chat(ChatRequest request) {
+        return webTestClient.post().uri("/api/v1/chat")
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(ChatResponse.class)
+                .returnResult().getResponseBody();
+    }
+
+    private static ChatRequest directRequest(String prompt, double temperature) {
+        ChatRequest request = new ChatRequest(prompt);
+        request.setIncludeWebSearch(false);
+        request.setTemperature(temperature);
+        return request;
+    }
+}
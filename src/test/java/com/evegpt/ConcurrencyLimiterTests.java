@@ -0,0 +1,134 @@
+package com.evegpt;
+
+import com.evegpt.config.ChatProperties;
+import com.evegpt.service.ChatRejectedException;
+import com.evegpt.service.ConcurrencyLimiter;
+import com.evegpt.service.UpstreamUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ConcurrencyLimiterTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ChatProperties properties = new ChatProperties();
+
+    ConcurrencyLimiterTests() {
+        properties.getAdmission().setInitialLimit(2);
+        properties.getAdmission().setMinLimit(1);
+        properties.getAdmission().setMaxQueueSize(1);
+        properties.getAdmission().setMaxQueueTime(200L);
+    }
+
+    @Test
+    void queuesBeyondTheLimitAndRejectsWhenTheQueueIsFull() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(properties, registry);
+        Sinks.One<String> first = Sinks.one();
+        Sinks.One<String> second = Sinks.one();
+        limiter.admit(first::asMono).subscribe();
+        limiter.admit(second::asMono).subscribe();
+
+        AtomicReference<String> queued = new AtomicReference<>();
+        limiter.admit(() -> Mono.just("queued")).subscribe(queued::set);
+        AtomicReference<Throwable> rejected = new AtomicReference<>();
+        limiter.admit(() -> Mono.just("rejected")).subscribe(value -> {}, rejected::set);
+
+        assertThat(limiter.inFlight()).isEqualTo(2);
+        assertThat(limiter.queued()).isEqualTo(1);
+        assertThat(rejected.get()).isInstanceOfSatisfying(ChatRejectedException.class, error -> {
+            assertThat(error.isQueueFull()).isTrue();
+            assertThat(error.getRetryAfter()).isPositive();
+        });
+
+        first.tryEmitValue("done");
+        assertThat(queued.get()).isEqualTo("queued");
+        assertThat(limiter.queued()).isZero();
+        assertThat(registry.get("evegpt.admission.rejected").tag("reason", "queue_full").counter().count()).isEqualTo(1);
+        assertThat(registry.get("evegpt.admission.queue").timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    void rejectsChatsThatWaitTooLong() {
+        properties.getAdmission().setInitialLimit(1);
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(properties, registry);
+        limiter.admit(Mono::never).subscribe();
+
+        assertThatThrownBy(() -> limiter.admit(() -> Mono.just("late")).block(Duration.ofSeconds(2))).isInstanceOfSatisfying(ChatRejectedException.class,
+                rejected -> assertThat(rejected.isQueueFull()).isFalse());
+        assertThat(limiter.queued()).isZero();
+        assertThat(registry.get("evegpt.admission.rejected").tag("reason", "queue_timeout").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void backsOffOnUpstreamFailuresAndGrowsOnSuccess() {
+        properties.getAdmission().setInitialLimit(10);
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(properties, registry);
+        Mono<String> overloaded = Mono.error(WebClientResponseException.create(503, "Unavailable", null, null, null));
+
+        for (int i = 0; i < 5; i++) {
+            limiter.admit(() -> overloaded).onErrorResume(e -> Mono.empty()).block();
+        }
+        assertThat(limiter.limit()).isEqualTo(5);
+
+        // A 400 says nothing about load, and a chat turned away by an open breaker never reached the upstream
+        limiter.admit(() -> Mono.error(WebClientResponseException.create(400, "Bad Request", null, null, null)))
+                .onErrorResume(e -> Mono.empty()).block();
+        limiter.admit(() -> Mono.error(new UpstreamUnavailableException("openai", Duration.ofSeconds(30))))
+                .onErrorResume(e -> Mono.empty()).block();
+        assertThat(limiter.limit()).isEqualTo(5);
+
+        for (int i = 0; i < 30; i++) {
+            Sinks.One<String> a = Sinks.one();
+            Sinks.One<String> b = Sinks.one();
+            Sinks.One<String> c = Sinks.one();
+            limiter.admit(a::asMono).subscribe();
+            limiter.admit(b::asMono).subscribe();
+            limiter.admit(c::asMono).subscribe();
+            a.tryEmitValue("ok");
+            b.tryEmitValue("ok");
+            c.tryEmitValue("ok");
+        }
+        assertThat(limiter.limit()).isGreaterThan(5);
+        assertThat(limiter.inFlight()).isZero();
+    }
+
+    @Test
+    void cancelledChatsFreeTheirSlot() {
+        properties.getAdmission().setInitialLimit(1);
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(properties, registry);
+
+        limiter.admit(Mono::never).subscribe().dispose();
+        limiter.admitMany(() -> Mono.never().flux()).take(Duration.ofMillis(10)).blockLast();
+
+        assertThat(limiter.inFlight()).isZero();
+        assertThat(limiter.admit(() -> Mono.just("next")).block()).isEqualTo("next");
+    }
+
+    @Test
+    void drainsALongQueueOfFailingChatsWithoutRecursing() {
+        properties.getAdmission().setInitialLimit(1);
+        properties.getAdmission().setMaxQueueSize(10_000);
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(properties, registry);
+        Sinks.One<String> first = Sinks.one();
+        limiter.admit(first::asMono).subscribe();
+        AtomicInteger failed = new AtomicInteger();
+        for (int i = 0; i < 10_000; i++) {
+            limiter.admit(() -> Mono.<String>error(new IllegalStateException())).subscribe(value -> {}, error -> failed.incrementAndGet());
+        }
+
+        first.tryEmitValue("done");
+
+        assertThat(failed).hasValue(10_000);
+        assertThat(limiter.inFlight()).isZero();
+        assertThat(limiter.queued()).isZero();
+    }
+}
@@ -0,0 +1,109 @@
+package com.evegpt;
+
+import com.evegpt.service.HtmlFetcher;
+import com.evegpt.service.ScrapingExecutor;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Page fetches against a local site whose pages never end, stall after their first paragraph or
+ * are larger than the buffered search page limit.
+ */
+@SpringBootTest
+class HtmlFetcherTests {
+
+    private static final int MAX_PAGE_CHARS = 1000;
+    private static final int MAX_PAGE_BYTES = 64 * 1024;
+    private static final String PARAGRAPH = "<p>The Rifter is a Minmatar frigate that fits autocannons.</p>\n";
+
+    private static final AtomicInteger endlessChunks = new AtomicInteger();
+    private static final AtomicBoolean endlessCancelled = new AtomicBoolean();
+
+    private static final DisposableServer site = HttpServer.create()
+            .host("127.0.0.1")
+            .port(0)
+            .route(routes -> routes
+                    .get("/endless", (request, response) -> response.sendString(Flux.concat(
+                            Flux.just("<html><body><div id=\"mw-content-text\">"),
+                            Flux.interval(Duration.ofMillis(5))
+                                    .doOnNext(tick -> endlessChunks.incrementAndGet())
+                                    .map(tick -> PARAGRAPH)
+                                    .doOnCancel(() -> endlessCancelled.set(true)))))
+                    .get("/stalled", (request, response) -> response.sendString(Flux.concat(
+                            Flux.just("<html><body><div id=\"mw-content-text\">" + PARAGRAPH),
+                            Flux.never())))
+                    .get("/huge", (request, response) -> response.sendString(
+                            Mono.just("<html><body>" + PARAGRAPH.repeat(2 * MAX_PAGE_BYTES / PARAGRAPH.length())))))
+            .bindNow();
+
+    @Autowired
+    private HtmlFetcher htmlFetcher;
+
+    @Autowired
+    private ScrapingExecutor scrapingExecutor;
+
+    @DynamicPropertySource
+    static void scrapingProperties(DynamicPropertyRegistry registry) {
+        StubUpstreams.disableCaches(registry);
+        registry.add("eve.sources.wiki.index.enabled", () -> "false");
+        registry.add("web.scraping.page-store.enabled", () -> "false");
+        registry.add("web.scraping.max-page-chars", () -> String.valueOf(MAX_PAGE_CHARS));
+        registry.add("web.scraping.max-page-bytes", () -> String.valueOf(MAX_PAGE_BYTES));
+        registry.add("web.scraping.timeout", () -> "1000");
+    }
+
+    @AfterAll
+    static void stopSite() {
+        site.disposeNow();
+    }
+
+    @Test
+    void stopsReadingAPageOnceItsTextBudgetIsFull() {
+        String text = htmlFetcher.fetchPage(url("/endless")).block(Duration.ofSeconds(10));
+
+        assertThat(text).startsWith("The Rifter is a Minmatar frigate").hasSizeLessThanOrEqualTo(MAX_PAGE_CHARS);
+        StubUpstreams.await(endlessCancelled::get);
+        assertThat(endlessChunks.get()).isLessThan(200);
+        StubUpstreams.await(() -> scrapingExecutor.getActiveCount() == 0);
+    }
+
+    @Test
+    void aStalledPageHoldsOneSlotUntilItTimesOut() {
+        CompletableFuture<String> fetch = htmlFetcher.fetchPage(url("/stalled")).toFuture();
+
+        StubUpstreams.await(() -> scrapingExecutor.getActiveCount() == 1);
+        assertThat(fetch).isNotDone();
+        assertThatThrownBy(fetch::join).hasRootCauseInstanceOf(TimeoutException.class);
+        // Cancelling the call closes the body, which unblocks the parser and frees its slot
+        StubUpstreams.await(() -> scrapingExecutor.getActiveCount() == 0);
+    }
+
+    @Test
+    void rejectsSearchPagesBeyondTheByteLimit() {
+        assertThatThrownBy(() -> htmlFetcher.fetch(url("/huge")).block(Duration.ofSeconds(10)))
+                .isInstanceOf(DataBufferLimitException.class);
+        assertThat(scrapingExecutor.getActiveCount()).isZero();
+    }
+
+    private static String url(String path) {
+        return "http://127.0.0.1:" + site.port() + path;
+    }
+}
@@ -0,0 +1,95 @@
+package com.evegpt;
+
+import com.evegpt.service.CompletionRequest;
+import com.evegpt.service.OpenAICodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OpenAICodecTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final OpenAICodec codec = new OpenAICodec(objectMapper.getFactory());
+
+    @Test
+    void writesTheSameBytesAsTheObjectMapper() throws Exception {
+        CompletionRequest request = new CompletionRequest("gpt-4o-mini", List.of(
+                new CompletionRequest.Message("system", "You are an \"EVE\" expert"),
+                new CompletionRequest.Message("user", "Rifter → Jaguar?\n")), 800, null, false, 100);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("model", "gpt-4o-mini");
+        body.put("messages", List.of(
+                message("system", "You are an \"EVE\" expert"),
+                message("user", "Rifter → Jaguar?\n")));
+        body.put("max_tokens", 800);
+        body.put("temperature", null);
+
+        DataBuffer buffer = codec.write(request, DefaultDataBufferFactory.sharedInstance);
+
+        assertThat(buffer.toString(StandardCharsets.UTF_8)).isEqualTo(objectMapper.writeValueAsString(body));
+        assertThat(codec.cacheKey(request)).isEqualTo(codec.cacheKey(request)).hasSize(64)
+                .isNotEqualTo(codec.cacheKey(request.streaming()));
+        assertThat(objectMapper.readTree(codec.write(request.streaming(), DefaultDataBufferFactory.sharedInstance)
+                .toString(StandardCharsets.UTF_8)).path("stream_options").path("include_usage").asBoolean()).isTrue();
+    }
+
+    @Test
+    void readsContentAndUsageAcrossAnyBufferSplit() {
+        byte[] body = ("{\"id\":\"x\",\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\"Fly safe o7 — ✓\","
+                + "\"usage\":{\"total_tokens\":1}}},{\"message\":{\"content\":\"second\"}}],"
+                + "\"usage\":{\"prompt_tokens\":12,\"completion_tokens\":5,\"total_tokens\":17}}").getBytes(StandardCharsets.UTF_8);
+
+        for (int split = 0; split <= body.length; split++) {
+            OpenAICodec.ParsedCompletion parsed = codec.readCompletion(Flux.just(
+                    Arrays.copyOfRange(body, 0, split), Arrays.copyOfRange(body, split, body.length))
+                    .map(DefaultDataBufferFactory.sharedInstance::wrap)).block();
+
+            assertThat(parsed.content()).isEqualTo("Fly safe o7 — ✓");
+            assertThat(parsed.hasChoice()).isTrue();
+            assertThat(parsed.promptTokens()).isEqualTo(12);
+            assertThat(parsed.completionTokens()).isEqualTo(5);
+            assertThat(parsed.totalTokens()).isEqualTo(17);
+        }
+    }
+
+    @Test
+    void reportsMissingChoicesAndRejectsMalformedBodies() {
+        OpenAICodec.ParsedCompletion parsed = codec.readCompletion(Flux.just(
+                DefaultDataBufferFactory.sharedInstance.wrap("{\"choices\":[]}".getBytes(StandardCharsets.UTF_8)))).block();
+
+        assertThat(parsed.hasChoice()).isFalse();
+        assertThat(parsed.content()).isNull();
+        assertThat(parsed.totalTokens()).isNull();
+        assertThatThrownBy(() -> codec.readCompletion(Flux.just(
+                DefaultDataBufferFactory.sharedInstance.wrap("{\"choices\":[{".getBytes(StandardCharsets.UTF_8)))).block())
+                .hasMessageContaining("end-of-input");
+    }
+
+    @Test
+    void readsStreamedDeltas() throws Exception {
+        assertThat(codec.readChunk("{\"choices\":[{\"index\":0,\"delta\":{\"content\":\"Fly\"}}]}").content()).isEqualTo("Fly");
+        OpenAICodec.ParsedCompletion last = codec.readChunk(
+                "{\"choices\":[],\"usage\":{\"prompt_tokens\":3,\"completion_tokens\":2,\"total_tokens\":5}}");
+        assertThat(last.content()).isNull();
+        assertThat(last.totalTokens()).isEqualTo(5);
+    }
+
+    /** Ordered like the codec writes it; {@code Map.of} iteration order varies between runs */
+    private static Map<String, Object> message(String role, String content) {
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("role", role);
+        message.put("content", content);
+        return message;
+    }
+}
@@ -0,0 +1,104 @@
+package com.evegpt;
+
+import com.evegpt.config.OpenAIProperties;
+import com.evegpt.service.OpenAIRateLimiter;
+import com.evegpt.service.RateLimitedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OpenAIRateLimiterTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final OpenAIProperties properties = new OpenAIProperties();
+
+    OpenAIRateLimiterTests() {
+        properties.getRateLimit().setRequestsPerMinute(6000);
+        // 100 tokens per second
+        properties.getRateLimit().setTokensPerMinute(6000);
+        properties.getRateLimit().setMaxWait(2000L);
+    }
+
+    @Test
+    void delaysCompletionsUntilTokensRefill() {
+        OpenAIRateLimiter limiter = new OpenAIRateLimiter(properties, registry);
+        limiter.acquire(6000).block();
+
+        long start = System.nanoTime();
+        limiter.acquire(50).block(Duration.ofSeconds(2));
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(400));
+        assertThat(registry.get("evegpt.openai.ratelimit.wait").tag("priority", "interactive").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void sendsInteractiveCompletionsBeforeBatchWork() throws Exception {
+        OpenAIRateLimiter limiter = new OpenAIRateLimiter(properties, registry);
+        limiter.acquire(6000).block();
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<Void> batch = limiter.acquire(30).doOnSuccess(done -> order.add("batch"))
+                .contextWrite(OpenAIRateLimiter::batchPriority)
+                .toFuture();
+        CompletableFuture<Void> interactive = limiter.acquire(30).doOnSuccess(done -> order.add("interactive")).toFuture();
+        CompletableFuture.allOf(batch, interactive).get(3, TimeUnit.SECONDS);
+
+        assertThat(order).startsWith("interactive", "batch");
+    }
+
+    @Test
+    void rejectsCompletionsThatWouldWaitTooLong() {
+        OpenAIRateLimiter limiter = new OpenAIRateLimiter(properties, registry);
+        limiter.acquire(6000).block();
+
+        assertThatThrownBy(() -> limiter.acquire(1000).block())
+                .isInstanceOfSatisfying(RateLimitedException.class,
+                        error -> assertThat(error.getRetryAfter()).isGreaterThan(Duration.ofSeconds(9)));
+        assertThat(registry.get("evegpt.openai.ratelimit.rejected").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void followsTheLimitsReportedByTheApi() {
+        OpenAIRateLimiter limiter = new OpenAIRateLimiter(properties, registry);
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("x-ratelimit-limit-tokens", "60000");
+        headers.add("x-ratelimit-remaining-tokens", "100");
+        headers.add("x-ratelimit-limit-requests", "600");
+        headers.add("x-ratelimit-remaining-requests", "599");
+
+        limiter.recalibrate(headers);
+
+        assertThat(registry.get("evegpt.openai.ratelimit.available").tag("budget", "tokens").gauge().value())
+                .isBetween(100.0, 200.0);
+        assertThat(registry.get("evegpt.openai.ratelimit.available").tag("budget", "requests").gauge().value())
+                .isBetween(599.0, 600.0);
+        // Refills at the reported 1000 tokens per second rather than the configured 100
+        long start = System.nanoTime();
+        limiter.acquire(600).block(Duration.ofSeconds(2));
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(1500));
+    }
+
+    @Test
+    void pausesForTheDelayA429AsksFor() {
+        OpenAIRateLimiter limiter = new OpenAIRateLimiter(properties, registry);
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("x-ratelimit-reset-tokens", "1m30s");
+        assertThat(OpenAIRateLimiter.retryAfter(headers)).isEqualTo(Duration.ofSeconds(90));
+        headers.add("x-ratelimit-reset-requests", "20ms");
+        headers.add(HttpHeaders.RETRY_AFTER, "1");
+
+        assertThat(limiter.pause(headers)).isEqualTo(Duration.ofSeconds(1));
+        long start = System.nanoTime();
+        limiter.acquire(1).block(Duration.ofSeconds(2));
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(900));
+    }
+}
@@ -0,0 +1,93 @@
+package com.evegpt;
+
+import com.evegpt.config.WebScrapingProperties;
+import com.evegpt.service.PageStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PageStoreTests {
+
+    @TempDir
+    Path directory;
+
+    private PageStore openStore() {
+        WebScrapingProperties properties = new WebScrapingProperties();
+        properties.getPageStore().setEnabled(true);
+        properties.getPageStore().setDirectory(directory.toString());
+        return new PageStore(properties);
+    }
+
+    @Test
+    void storedPagesSurviveReopen() throws Exception {
+        PageStore store = openStore();
+        store.put("https://wiki.eveuniversity.org/Rifter", "The Rifter is a Minmatar frigate.", "\"v1\"", null);
+        store.put("https://wiki.eveuniversity.org/Rifter", "The Rifter is a Minmatar T1 frigate.", "\"v2\"", null);
+        store.close();
+
+        PageStore reopened = openStore();
+        PageStore.StoredPage page = reopened.get("https://wiki.eveuniversity.org/Rifter").orElseThrow();
+        assertThat(page.content()).isEqualTo("The Rifter is a Minmatar T1 frigate.");
+        assertThat(page.etag()).isEqualTo("\"v2\"");
+        assertThat(page.isFresh()).isTrue();
+        assertThat(reopened.get("https://wiki.eveuniversity.org/Drake")).isEmpty();
+        reopened.close();
+    }
+
+    @Test
+    void tornTailIsDiscardedOnOpen() throws Exception {
+        PageStore store = openStore();
+        store.put("https://wiki.eveuniversity.org/Wormholes", "Wormholes connect known space to J-space.", null, "Mon, 01 Jan 2024 00:00:00 GMT");
+        store.close();
+        Files.write(directory.resolve("pages.dat"), new byte[] {0x50, 0x41, 0x47}, StandardOpenOption.APPEND);
+
+        PageStore reopened = openStore();
+        assertThat(reopened.get("https://wiki.eveuniversity.org/Wormholes").orElseThrow().lastModified())
+                .isEqualTo("Mon, 01 Jan 2024 00:00:00 GMT");
+        reopened.close();
+    }
+
+    @Test
+    void growsInChunksAndTrimsTheUnusedTail() throws Exception {
+        PageStore store = openStore();
+        for (int i = 0; i < 200; i++) {
+            store.put("https://wiki.eveuniversity.org/Page_" + i, "Content of page " + i + ". ".repeat(100), null, null);
+        }
+        assertThat(store.get("https://wiki.eveuniversity.org/Page_199").orElseThrow().content()).startsWith("Content of page 199.");
+        long written = Files.size(directory.resolve("pages.dat"));
+
+        // Opened again without closing, as after a crash: the zero-filled tail is not a record
+        PageStore recovered = openStore();
+        assertThat(recovered.urls()).hasSize(200);
+        assertThat(Files.size(directory.resolve("pages.dat"))).isLessThan(written);
+        recovered.put("https://wiki.eveuniversity.org/Page_200", "Content of page 200.", null, null);
+        recovered.close();
+
+        PageStore reopened = openStore();
+        assertThat(reopened.get("https://wiki.eveuniversity.org/Page_200").orElseThrow().content()).isEqualTo("Content of page 200.");
+        assertThat(reopened.urls()).hasSize(201);
+        reopened.close();
+        store.close();
+    }
+
+    @Test
+    void compactionKeepsOnlyLatestRecords() throws Exception {
+        PageStore store = openStore();
+        for (int i = 0; i < 50; i++) {
+            store.put("https://wiki.eveuniversity.org/Drake", "revision " + i, null, null);
+        }
+        store.touch("https://wiki.eveuniversity.org/Drake");
+        long before = Files.size(directory.resolve("pages.dat"));
+
+        store.compact();
+
+        assertThat(Files.size(directory.resolve("pages.dat"))).isLessThan(before);
+        assertThat(store.get("https://wiki.eveuniversity.org/Drake").orElseThrow().content()).isEqualTo("revision 49");
+        store.close();
+    }
+}
@@ -0,0 +1,70 @@
+package com.evegpt;
+
+import com.evegpt.service.PageTextExtractor;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PageTextExtractorTests {
+
+    private static final String URL = "https://wiki.eveuniversity.org/Rifter";
+
+    @Test
+    void extractsContentContainerWithoutBoilerplate() {
+        String html = "<html><head><title>Rifter</title><style>p { color: red }</style></head><body>"
+                + "<nav><ul><li>Main page</li><li>Random page</li></ul></nav>"
+                + "<div id=\"mw-content-text\"><div class=\"mw-parser-output\">"
+                + "<h2>Fitting<span class=\"mw-editsection\">[<a href=\"?action=edit\">edit</a>]</span></h2>"
+                + "<p>Fit <b>200mm autocannons</b>.</p><script>track()</script>"
+                + "<ul><li>Warp scrambler<ul><li>Faction if you can</li></ul></li></ul>"
+                + "<div class=\"toc\"><ol><li>Contents</li></ol></div>Loose text"
+                + "</div></div><footer>Privacy policy</footer></body></html>";
+
+        assertThat(PageTextExtractor.extract(html, URL, 1000))
+                .isEqualTo("Fitting Fit 200mm autocannons. Warp scrambler Faction if you can Loose text");
+    }
+
+    @Test
+    void fallsBackToBodyWithoutContentContainer() {
+        String html = "<html><body><nav>Home</nav><p>Patch notes for the Rifter.</p><div>Skins<p>Autumn</p></div>"
+                + "</body></html>";
+
+        assertThat(PageTextExtractor.extract(html, URL, 1000)).isEqualTo("Patch notes for the Rifter. Autumn Skins");
+    }
+
+    @Test
+    void stopsReadingOnceTheBudgetIsReached() throws IOException {
+        String html = "<html><body><div id=\"mw-content-text\">"
+                + "<p>The Rifter is a Minmatar frigate with autocannons.</p>".repeat(50_000)
+                + "</div></body></html>";
+        CountingReader reader = new CountingReader(html);
+
+        String text = PageTextExtractor.extract(reader, URL, 200);
+
+        assertThat(text).hasSizeGreaterThan(150).hasSizeLessThanOrEqualTo(200);
+        // Cut at a word boundary
+        assertThat("The Rifter is a Minmatar frigate with autocannons. ".repeat(5)).startsWith(text + " ");
+        assertThat(reader.read).isLessThan(html.length() / 10);
+    }
+
+    /** Counts the characters the parser actually pulled from the input. */
+    private static final class CountingReader extends StringReader {
+
+        private long read;
+
+        CountingReader(String text) {
+            super(text);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            read += Math.max(count, 0);
+            return count;
+        }
+    }
+}
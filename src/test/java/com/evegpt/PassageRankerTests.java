@@ -0,0 +1,45 @@
+package com.evegpt;
+
+import com.evegpt.config.ChatProperties;
+import com.evegpt.model.WebSearchResult;
+import com.evegpt.service.PassageRanker;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PassageRankerTests {
+
+    private final ChatProperties chatProperties = new ChatProperties();
+
+    @Test
+    void selectsAnswerBearingPassagesWithinBudget() {
+        chatProperties.getContext().setMaxChars(300);
+        chatProperties.getContext().setPassageChars(120);
+        String navigation = "Main page. Recent changes. Random page. Help. ".repeat(20);
+        WebSearchResult rifter = new WebSearchResult("https://wiki/Rifter", "Rifter",
+                navigation + "The Rifter is best fitted with 200mm autocannons and a warp scrambler.", "eve-university");
+        WebSearchResult news = new WebSearchResult("https://eveonline.com/news", "Patch notes",
+                "This patch rebalances mining barges and adds new skins.", "eve-online");
+
+        List<WebSearchResult> selected = new PassageRanker(chatProperties)
+                .select("How should I fit autocannons on a Rifter?", List.of(news, rifter));
+
+        assertThat(selected).extracting(WebSearchResult::getTitle).containsExactly("Rifter");
+        assertThat(selected.get(0).getContent()).contains("200mm autocannons").doesNotContain("Random page");
+        assertThat(selected.get(0).getRelevanceScore()).isEqualTo(100);
+        assertThat(selected.get(0).getContent().length()).isLessThanOrEqualTo(300);
+    }
+
+    @Test
+    void fallsBackToOpeningPassagesWithoutLexicalOverlap() {
+        WebSearchResult first = new WebSearchResult("https://wiki/A", "A", "Alpha text. More alpha.", "eve-university");
+        WebSearchResult second = new WebSearchResult("https://wiki/B", "B", "Beta text.", "eve-university");
+
+        List<WebSearchResult> selected = new PassageRanker(chatProperties).select("wormholes", List.of(first, second));
+
+        assertThat(selected).extracting(WebSearchResult::getContent).containsExactly("Alpha text. More alpha.", "Beta text.");
+        assertThat(selected).allMatch(result -> result.getRelevanceScore() == 0);
+    }
+}
@@ -0,0 +1,37 @@
+package com.evegpt;
+
+import com.evegpt.config.OpenAIProperties;
+import com.evegpt.service.PromptTokenizer;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PromptTokenizerTests {
+
+    private final PromptTokenizer tokenizer = tokenizerFor("gpt-4o-mini");
+
+    @Test
+    void countsTokensWithModelEncoding() {
+        assertThat(tokenizer.count("hello world")).isEqualTo(2);
+        assertThat(tokenizer.countMessages("hello world")).isEqualTo(2 + 3 + 3);
+        assertThat(tokenizerFor("some-future-model").count("hello world")).isEqualTo(2);
+    }
+
+    @Test
+    void truncatesToWholeWordsWithinBudget() {
+        String text = "The Rifter is a Minmatar frigate favoured by new pilots for its speed and autocannons.";
+
+        String truncated = tokenizer.truncate(text, 8);
+
+        assertThat(text).startsWith(truncated);
+        assertThat(tokenizer.count(truncated)).isLessThanOrEqualTo(8);
+        assertThat(truncated).doesNotEndWith(" ");
+        assertThat(tokenizer.truncate(text, 1000)).isEqualTo(text);
+    }
+
+    private static PromptTokenizer tokenizerFor(String model) {
+        OpenAIProperties properties = new OpenAIProperties();
+        properties.setModel(model);
+        return new PromptTokenizer(properties);
+    }
+}
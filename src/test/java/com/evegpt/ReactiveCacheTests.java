@@ -0,0 +1,41 @@
+package com.evegpt;
+
+import com.evegpt.config.WebScrapingProperties;
+import com.evegpt.service.ReactiveCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReactiveCacheTests {
+
+    private final WebScrapingProperties.CacheSpec spec = new WebScrapingProperties().getCache().getPage();
+
+    @Test
+    void repeatedKeysAreServedFromCache() {
+        AtomicInteger loads = new AtomicInteger();
+        ReactiveCache<String, String> cache = new ReactiveCache<>("test", spec, (key, value) -> 1,
+                key -> Mono.fromCallable(() -> key + "#" + loads.incrementAndGet()), new SimpleMeterRegistry());
+
+        assertThat(cache.get("rifter").block()).isEqualTo("rifter#1");
+        assertThat(cache.get("rifter").block()).isEqualTo("rifter#1");
+        assertThat(loads).hasValue(1);
+        assertThat(cache.stats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    void failedLoadsAreNotCached() {
+        AtomicInteger loads = new AtomicInteger();
+        ReactiveCache<String, String> cache = new ReactiveCache<>("test", spec, (key, value) -> 1,
+                key -> loads.incrementAndGet() == 1 ? Mono.error(new IllegalStateException("boom")) : Mono.just("ok"),
+                new SimpleMeterRegistry());
+
+        assertThatThrownBy(() -> cache.get("drake").block()).isInstanceOf(IllegalStateException.class);
+        assertThat(cache.get("drake").block()).isEqualTo("ok");
+        assertThat(loads).hasValue(2);
+    }
+}
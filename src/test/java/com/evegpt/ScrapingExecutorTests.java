@@ -0,0 +1,57 @@
+package com.evegpt;
+
+import com.evegpt.config.WebScrapingProperties;
+import com.evegpt.service.ScrapingExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ScrapingExecutorTests {
+
+    @ParameterizedTest
+    @EnumSource(WebScrapingProperties.ExecutionMode.class)
+    void rejectsAtOnceWhenTheQueueIsFull(WebScrapingProperties.ExecutionMode mode) throws InterruptedException {
+        WebScrapingProperties properties = new WebScrapingProperties();
+        properties.getExecutor().setMode(mode);
+        properties.getExecutor().setMaxConcurrency(1);
+        properties.getExecutor().setMaxQueued(1);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ScrapingExecutor executor = new ScrapingExecutor(properties, registry);
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            CompletableFuture<String> running = executor.submit(() -> {
+                started.countDown();
+                release.await();
+                return "running";
+            }).toFuture();
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            CompletableFuture<String> queued = executor.submit(() -> "queued").toFuture();
+            assertThat(executor.getQueuedCount()).isEqualTo(1);
+
+            long start = System.nanoTime();
+            assertThatThrownBy(() -> executor.submit(() -> "rejected").block(Duration.ofSeconds(5)))
+                    .isInstanceOf(RejectedExecutionException.class);
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+            assertThat(registry.get("evegpt.scraping.rejected").counter().count()).isEqualTo(1);
+            assertThat(executor.getActiveCount()).isEqualTo(1);
+
+            release.countDown();
+            assertThat(running.join()).isEqualTo("running");
+            assertThat(queued.join()).isEqualTo("queued");
+            assertThat(executor.getQueuedCount()).isZero();
+            assertThat(executor.submit(() -> "next").block(Duration.ofSeconds(5))).isEqualTo("next");
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
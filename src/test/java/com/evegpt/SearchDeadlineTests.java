@@ -0,0 +1,78 @@
+package com.evegpt;
+
+import com.evegpt.model.ChatRequest;
+import com.evegpt.model.ChatResponse;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Per-stage deadlines in the retrieval pipeline: an official search and a wiki page that both
+ * hang far beyond their deadlines must not hold back the wiki results that did arrive.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class SearchDeadlineTests {
+
+    private static final Duration HANG = Duration.ofSeconds(10);
+    private static final String SNIPPET = "Autocannons are short range projectile turrets fitted to the Rifter";
+
+    private static final StubUpstreams upstreams = StubUpstreams.start()
+            .wikiSearch(query -> Mono.just(StubUpstreams.searchResults("Rifter")
+                    + "<li class=\"mw-search-result\"><div class=\"mw-search-result-heading\">"
+                    + "<a href=\"/Autocannons\">Autocannons</a></div>"
+                    + "<div class=\"searchresult\">" + SNIPPET + "</div></li>"))
+            .pages(title -> title.equals("Autocannons")
+                    ? Mono.delay(HANG).thenReturn("<div id=\"mw-content-text\">Too late.</div>")
+                    : Mono.just("<div id=\"mw-content-text\">The " + title
+                            + " is a Minmatar frigate that fits autocannons.</div>"))
+            .officialSearch(query -> Mono.delay(HANG).thenReturn(""));
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @DynamicPropertySource
+    static void upstreamProperties(DynamicPropertyRegistry registry) {
+        upstreams.register(registry);
+        StubUpstreams.disableCaches(registry);
+        registry.add("web.scraping.search-timeout", () -> "500");
+        registry.add("web.scraping.extract-timeout", () -> "500");
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstreams.stop();
+    }
+
+    @Test
+    void slowStagesOnlyCostTheirOwnResults() {
+        long start = System.nanoTime();
+        ChatResponse response = webTestClient.post().uri("/api/v1/chat")
+                .bodyValue(new ChatRequest("Which autocannons suit a Rifter?"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(ChatResponse.class)
+                .returnResult().getResponseBody();
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        assertThat(elapsed).isLessThan(Duration.ofSeconds(5));
+        assertThat(response.getResponse()).isEqualTo("Fly safe");
+        assertThat(response.isWebSearchPerformed()).isTrue();
+        assertThat(response.getSourcesConsulted()).anyMatch(source -> source.startsWith("Rifter"))
+                .anyMatch(source -> source.startsWith("Autocannons"));
+        assertThat(response.getStageTimingsMs().get("official_search")).isBetween(400L, 3000L);
+
+        // The Rifter page arrived in full; the hanging Autocannons page kept its search snippet
+        String prompt = upstreams.lastCompletion().toString();
+        assertThat(prompt).contains("Minmatar frigate that fits autocannons").contains(SNIPPET).doesNotContain("Too late");
+        assertThat(upstreams.hits("official_search")).isEqualTo(1);
+    }
+}
@@ -0,0 +1,71 @@
+package com.evegpt;
+
+import com.evegpt.config.ChatProperties;
+import com.evegpt.model.ChatRequest;
+import com.evegpt.model.ChatResponse;
+import com.evegpt.service.SemanticCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SemanticCacheTests {
+
+    private final ChatProperties chatProperties = new ChatProperties();
+    private final SemanticCache cache = new SemanticCache(chatProperties, new SimpleMeterRegistry());
+
+    @Test
+    void reusesAnswerForRewordedPrompt() {
+        cache.store(new ChatRequest("How do wormholes work?"), new ChatResponse("Wormholes are..."));
+
+        assertThat(cache.lookup(new ChatRequest("how do wormholes work")))
+                .map(ChatResponse::getResponse).contains("Wormholes are...");
+        assertThat(cache.lookup(new ChatRequest("What is the best Rifter fit?"))).isEmpty();
+    }
+
+    @Test
+    void doesNotReuseAnswersAboutAnotherFactionOrShip() {
+        String faction = "I am a new %s pilot who wants to fly frigates in faction warfare, which ships and skills should I train first?";
+        String ship = "What is the best way to fit a %s for solo PvP in low security space with a small budget?";
+        cache.store(new ChatRequest(faction.formatted("Minmatar")), new ChatResponse("Start in a Rifter..."));
+        cache.store(new ChatRequest(ship.formatted("Rifter")), new ChatResponse("Autocannons..."));
+
+        assertThat(cache.lookup(new ChatRequest(faction.formatted("Amarr")))).isEmpty();
+        assertThat(cache.lookup(new ChatRequest(ship.formatted("Slasher")))).isEmpty();
+        assertThat(cache.lookup(new ChatRequest(faction.formatted("minmatar").replace("?", ""))))
+                .map(ChatResponse::getResponse).contains("Start in a Rifter...");
+    }
+
+    @Test
+    void respectsWebSearchSettingMaxTokensAndTemperature() {
+        cache.store(new ChatRequest("best rifter fit for pvp"), new ChatResponse("Autocannons..."));
+
+        ChatRequest withoutSearch = new ChatRequest("best rifter fit for pvp");
+        withoutSearch.setIncludeWebSearch(false);
+        ChatRequest hot = new ChatRequest("best rifter fit for pvp");
+        hot.setTemperature(1.2);
+        ChatRequest brief = new ChatRequest("best rifter fit for pvp");
+        brief.setMaxTokens(100);
+
+        assertThat(cache.lookup(withoutSearch)).isEmpty();
+        assertThat(cache.lookup(hot)).isEmpty();
+        assertThat(cache.lookup(brief)).isEmpty();
+        cache.store(brief, new ChatResponse("Autocannons."));
+        assertThat(cache.lookup(brief)).map(ChatResponse::getResponse).contains("Autocannons.");
+        assertThat(cache.lookup(new ChatRequest("Best Rifter fit for PvP?"))).isPresent();
+    }
+
+    @Test
+    void evictsOldestBeyondCapacity() {
+        chatProperties.getSemanticCache().setMaxEntries(50);
+        SemanticCache small = new SemanticCache(chatProperties, new SimpleMeterRegistry());
+        for (int i = 0; i < 200; i++) {
+            small.store(new ChatRequest("question number " + i + " about system " + (i * 7919)), new ChatResponse("answer " + i));
+        }
+
+        assertThat(small.size()).isEqualTo(50);
+        assertThat(small.lookup(new ChatRequest("question number 199 about system " + (199 * 7919))))
+                .map(ChatResponse::getResponse).contains("answer 199");
+        assertThat(small.lookup(new ChatRequest("question number 3 about system " + (3 * 7919)))).isEmpty();
+    }
+}
@@ -0,0 +1,195 @@
+package com.evegpt;
+
+import com.evegpt.model.ChatRequest;
+import com.evegpt.model.ChatResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Multi-turn sessions against a local stub serving the wiki and the completions API. */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class SessionTests {
+
+    /** The Rifter's article, long enough to be split into several passages */
+    private static final String RIFTER_PAGE = """
+            <div id="mw-content-text">
+            <p>The Rifter is a Minmatar frigate and one of the most popular ships for new pilots. It is cheap,
+            fast and agile, and its hull bonuses favour small projectile turrets and tackle modules.
+            Many veterans still fly it as a disposable ship for roams.</p>
+            <p>A typical Rifter fit uses 200mm autocannons with a 1MN afterburner or a 5MN microwarpdrive,
+            a warp scrambler and a stasis webifier. Autocannons need no capacitor to fire, which suits the
+            small capacitor of the hull, and a damage control keeps it alive for longer.</p>
+            <p>Rifter pilots should train the Small Projectile Turret, Gunnery and Navigation skills first,
+            then Minmatar Frigate to raise the damage bonus of the hull. Good drone and shield skills are
+            not needed, as the Rifter usually fits armor or buffer modules.</p>
+            <p>In faction warfare and in low security space the Rifter is flown in small gangs, where it
+            can choose its fights and leave when the odds turn.</p>
+            </div>""";
+
+    private static final StubUpstreams upstreams = StubUpstreams.start()
+            .pages(title -> Mono.just(title.equals("Rifter") ? RIFTER_PAGE : "<div id=\"mw-content-text\">The " + title + " page.</div>"))
+            // An answer without content becomes a placeholder, for questions about the Vexor
+            .completions((body, response) -> StubUpstreams.reply(response, isSummary(body) ? "Pilot flies a Rifter"
+                    : body.toString().contains("Vexor") ? null : "Fly safe"));
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @DynamicPropertySource
+    static void upstreamProperties(DynamicPropertyRegistry registry) {
+        upstreams.register(registry);
+        StubUpstreams.disableCaches(registry);
+        // About 15 tokens per turn: the third turn of a session triggers compaction
+        registry.add("openai.prompt.history-max-tokens", () -> "40");
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstreams.stop();
+    }
+
+    @Test
+    void followUpsReuseSourcesBehindAStablePrefixAndCompactOldTurns() {
+        ChatResponse first = startSession("How do I fit a Rifter?");
+        String session = first.getSessionId();
+        assertThat(session).hasSize(36);
+        assertThat(first.getSourcesConsulted()).isNotEmpty();
+        int pagesAfterFirst = upstreams.hits("page");
+
+        ChatResponse second = chat(session, "Which autocannons does the Rifter fit?");
+        assertThat(second.getSessionId()).isEqualTo(session);
+        assertThat(upstreams.hits("page")).isEqualTo(pagesAfterFirst);
+        assertThat(second.getSourcesConsulted()).isEqualTo(first.getSourcesConsulted());
+        List<JsonNode> answers = answers();
+        JsonNode firstMessages = answers.get(answers.size() - 2).path("messages");
+        JsonNode secondMessages = answers.get(answers.size() - 1).path("messages");
+        assertThat(roles(secondMessages)).containsExactly("system", "system", "user", "assistant", "user");
+        // System prompt and source context are byte-identical, then the conversation so far
+        assertThat(secondMessages.get(0)).isEqualTo(firstMessages.get(0));
+        assertThat(secondMessages.get(1)).isEqualTo(firstMessages.get(1));
+        assertThat(secondMessages.get(2)).isEqualTo(firstMessages.get(2));
+        assertThat(secondMessages.get(3).path("content").asText()).isEqualTo("Fly safe");
+        assertThat(secondMessages.get(4).path("content").asText()).isEqualTo("Which autocannons does the Rifter fit?");
+
+        chat(session, "Is the Rifter fast?");
+        StubUpstreams.await(() -> meterRegistry.find("evegpt.chat.session.compactions").tag("outcome", "success").counter() != null);
+        List<JsonNode> summaries = upstreams.completions().stream().filter(SessionTests::isSummary).toList();
+        assertThat(summaries).hasSize(1);
+        assertThat(summaries.get(0).path("messages").path(1).path("content").asText())
+                .contains("User: How do I fit a Rifter?").contains("Assistant: Fly safe");
+
+        chat(session, "Which skills does a Rifter pilot need?");
+        JsonNode compacted = lastAnswer().path("messages");
+        assertThat(roles(compacted)).containsExactly("system", "system", "system", "user", "assistant", "user");
+        assertThat(compacted.get(1)).isEqualTo(firstMessages.get(1));
+        assertThat(compacted.get(2).path("content").asText()).endsWith("Pilot flies a Rifter");
+        assertThat(compacted.get(3).path("content").asText()).isEqualTo("Is the Rifter fast?");
+        assertThat(upstreams.hits("page")).isEqualTo(pagesAfterFirst);
+
+        // Another ship or topic searches again, even where a word of it appears in the pinned passages
+        chat(session, "Is the Drake fast?");
+        assertThat(upstreams.hits("page")).isEqualTo(pagesAfterFirst + 1);
+        chat(session, "What's the best mining ship?");
+        assertThat(upstreams.hits("page")).isEqualTo(pagesAfterFirst + 2);
+    }
+
+    @Test
+    void newSessionRequestsStartOverEvenWithAKnownId() {
+        String known = startSession("How do I fit a Rifter?").getSessionId();
+
+        ChatRequest request = new ChatRequest("Which autocannons does the Rifter fit?");
+        request.setSessionId(known);
+        request.setNewSession(true);
+        ChatResponse restarted = chat(request);
+
+        assertThat(restarted.getSessionId()).isNotEqualTo(known).hasSize(36);
+        assertThat(roles(lastAnswer().path("messages"))).containsExactly("system", "system", "user");
+    }
+
+    @Test
+    void unknownSessionIdsStartANewSession() {
+        ChatResponse known = startSession("How do I fit a Rifter?");
+
+        ChatResponse guessed = chat("pilot-1", "Which autocannons does the Rifter fit?");
+
+        assertThat(guessed.getSessionId()).isNotIn("pilot-1", known.getSessionId()).hasSize(36);
+        assertThat(roles(lastAnswer().path("messages"))).containsExactly("system", "system", "user");
+    }
+
+    @Test
+    void placeholderAnswersAreNotRecordedNorIssueASession() {
+        ChatResponse failed = startSession("How do I fit a Vexor?");
+
+        assertThat(failed.getResponse()).isEqualTo("No response generated");
+        assertThat(failed.getSessionId()).isNull();
+
+        String session = startSession("How do I fit a Rifter?").getSessionId();
+        ChatResponse followUp = chat(session, "Would a Vexor do better?");
+        assertThat(followUp.getSessionId()).isNull();
+        chat(session, "Which autocannons does the Rifter fit?");
+        JsonNode messages = lastAnswer().path("messages");
+        assertThat(roles(messages)).containsExactly("system", "system", "user", "assistant", "user");
+        assertThat(messages.toString()).doesNotContain("Vexor");
+    }
+
+    @Test
+    void requestsWithoutSessionStandAlone() {
+        ChatResponse response = chat(null, "How do I fit a Rifter?");
+
+        assertThat(response.getSessionId()).isNull();
+        assertThat(roles(lastAnswer().path("messages"))).containsExactly("system", "system", "user");
+    }
+
+    private ChatResponse startSession(String prompt) {
+        ChatRequest request = new ChatRequest(prompt);
+        request.setNewSession(true);
+        return chat(request);
+    }
+
+    private ChatResponse chat(String sessionId, String prompt) {
+        ChatRequest request = new ChatRequest(prompt);
+        request.setSessionId(sessionId);
+        return chat(request);
+    }
+
+    private ChatResponse chat(ChatRequest request) {
+        return webTestClient.post().uri("/api/v1/chat")
+                .bodyValue(request)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(ChatResponse.class)
+                .returnResult().getResponseBody();
+    }
+
+    private static List<String> roles(JsonNode messages) {
+        return messages.findValuesAsText("role");
+    }
+
+    /** Completion requests that answer a question, in arrival order; summary requests are left out */
+    private static List<JsonNode> answers() {
+        return upstreams.completions().stream().filter(body -> !isSummary(body)).toList();
+    }
+
+    private static JsonNode lastAnswer() {
+        List<JsonNode> answers = answers();
+        return answers.get(answers.size() - 1);
+    }
+
+    private static boolean isSummary(JsonNode body) {
+        return body.path("messages").path(0).path("content").asText().startsWith("Summarize");
+    }
+}
@@ -0,0 +1,60 @@
+package com.evegpt;
+
+import com.evegpt.service.SingleFlight;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SingleFlightTests {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+    @Test
+    void concurrentCallersShareOneExecution() {
+        AtomicInteger calls = new AtomicInteger();
+        Sinks.One<String> upstream = Sinks.one();
+        AtomicReference<String> first = new AtomicReference<>();
+        AtomicReference<String> second = new AtomicReference<>();
+
+        singleFlight.execute("rifter", () -> { calls.incrementAndGet(); return upstream.asMono(); }).subscribe(first::set);
+        singleFlight.execute("rifter", () -> { calls.incrementAndGet(); return upstream.asMono(); }).subscribe(second::set);
+        upstream.tryEmitValue("fitting");
+
+        assertThat(calls).hasValue(1);
+        assertThat(first).hasValue("fitting");
+        assertThat(second).hasValue("fitting");
+        assertThat(singleFlight.inFlightCount()).isZero();
+    }
+
+    @Test
+    void finishedCallsAreNotReused() {
+        AtomicInteger calls = new AtomicInteger();
+
+        singleFlight.execute("drake", () -> Mono.fromCallable(() -> "#" + calls.incrementAndGet())).block();
+        String again = singleFlight.execute("drake", () -> Mono.fromCallable(() -> "#" + calls.incrementAndGet())).block();
+
+        assertThat(again).isEqualTo("#2");
+    }
+
+    @Test
+    void callIsCancelledOnlyWhenEverySubscriberLeaves() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Mono<String> never = Mono.<String>never().doOnCancel(() -> cancelled.set(true));
+
+        Disposable first = singleFlight.execute("hurricane", () -> never).subscribe();
+        Disposable second = singleFlight.execute("hurricane", () -> never).subscribe();
+
+        first.dispose();
+        assertThat(cancelled).isFalse();
+        second.dispose();
+        assertThat(cancelled).isTrue();
+        assertThat(singleFlight.inFlightCount()).isZero();
+    }
+}
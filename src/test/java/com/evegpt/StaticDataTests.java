@@ -0,0 +1,172 @@
+package com.evegpt;
+
+import com.evegpt.model.ChatRequest;
+import com.evegpt.model.ChatResponse;
+import com.evegpt.service.StaticData;
+import com.evegpt.service.StaticDataIndex;
+import com.evegpt.service.StaticDataIndex.FactGroup;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** Static data lookups from a miniature SDE export, against a local stub serving the wiki and the completions API. */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class StaticDataTests {
+
+    private static final Path sde = writeExport();
+    private static final StubUpstreams upstreams = StubUpstreams.start()
+            .pages(title -> Mono.just("<div id=\"mw-content-text\">The " + title + " is a favourite of faction warfare pilots.</div>"));
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private StaticData staticData;
+
+    @DynamicPropertySource
+    static void upstreamProperties(DynamicPropertyRegistry registry) {
+        upstreams.register(registry);
+        StubUpstreams.disableCaches(registry);
+        registry.add("eve.sources.sde.directory", sde::toString);
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstreams.stop();
+    }
+
+    @BeforeEach
+    void awaitLoad() {
+        StubUpstreams.await(() -> staticData.size() > 0);
+    }
+
+    @Test
+    void indexesPublishedTypesAndMatchesNamesFuzzily() throws IOException {
+        StaticDataIndex index = StaticDataIndex.load(sde, List.of(6, 7), "en");
+
+        // Unpublished types and types outside the categories are left out
+        assertThat(index.size()).isEqualTo(3);
+        int rifter = index.lookup("RIFTER");
+        assertThat(index.name(rifter)).isEqualTo("Rifter");
+        assertThat(index.lookup("Minmatar Frigate")).isEqualTo(-1);
+
+        List<StaticDataIndex.Mention> mentions = index.findMentions(
+                List.of("rifer", "200mm", "autocannon", "ii", "slot"), 3, true, Set.of("slot"));
+        assertThat(mentions).extracting(mention -> index.name(mention.entity()))
+                .containsExactly("Rifter", "200mm AutoCannon II");
+        assertThat(mentions.get(0).distance()).isEqualTo(1);
+        assertThat(index.findMentions(List.of("rifer"), 3, false, Set.of())).isEmpty();
+
+        assertThat(index.has(rifter, FactGroup.SLOTS)).isTrue();
+        assertThat(index.has(rifter, FactGroup.DRONES)).isFalse();
+        assertThat(index.describe(rifter, EnumSet.allOf(FactGroup.class), 10))
+                .isEqualTo("""
+                        Rifter (Frigate, Ship)
+                        Required skills: Minmatar Frigate I
+                        Slots: High Slots 4, Medium Slots 3, Low Slots 3
+                        Fitting: CPU Output 130 tf, Powergrid Output 41 MW
+                        Navigation: Maximum Velocity 365 m/sec, Mass 1067000 kg
+                        Cargo: Cargo Capacity 140 m3
+                        Other attributes: Volume 27289 m3, Kinetic Damage Resistance 40%""");
+    }
+
+    @Test
+    void answersPureLookupsWithoutSearchingOrCompleting() {
+        int pagesBefore = upstreams.hits("page");
+        int completionsBefore = upstreams.completions().size();
+
+        ChatResponse response = chat("How many low slots does a Rifter have?");
+
+        assertThat(response.getResponse()).isEqualTo("""
+                Rifter (Frigate, Ship)
+                Slots: High Slots 4, Medium Slots 3, Low Slots 3""");
+        assertThat(response.getSourcesConsulted()).containsExactly("Rifter (sde:type/587)");
+        assertThat(upstreams.hits("page")).isEqualTo(pagesBefore);
+        assertThat(upstreams.completions()).hasSize(completionsBefore);
+    }
+
+    @Test
+    void answersLookupsFromFactsAndSearchesOnlyForOtherQuestions() {
+        int pagesBefore = upstreams.hits("page");
+
+        chat("Is the Rifer's slot layout good for solo PvP?");
+        assertThat(upstreams.hits("page")).isEqualTo(pagesBefore);
+        String facts = upstreams.lastCompletion().path("messages").path(1).path("content").asText();
+        assertThat(facts).contains("Low Slots 3").doesNotContain("faction warfare");
+
+        ChatResponse searched = chat("How do I fly a Rifter in faction warfare?");
+        assertThat(upstreams.hits("page")).isGreaterThan(pagesBefore);
+        assertThat(searched.getSourcesConsulted()).first().isEqualTo("Rifter (sde:type/587)");
+        String context = upstreams.lastCompletion().path("messages").path(1).path("content").asText();
+        assertThat(context.indexOf("Low Slots 3")).isLessThan(context.indexOf("faction warfare pilots"));
+    }
+
+    private ChatResponse chat(String prompt) {
+        return webTestClient.post().uri("/api/v1/chat")
+                .bodyValue(new ChatRequest(prompt))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(ChatResponse.class)
+                .returnResult().getResponseBody();
+    }
+
+    private static Path writeExport() {
+        try {
+            Path directory = Files.createTempDirectory("sde");
+            Files.writeString(directory.resolve("categories.jsonl"), """
+                    {"_key":6,"name":{"en":"Ship","de":"Schiff"},"published":true}
+                    {"_key":7,"name":{"en":"Module"},"published":true}
+                    {"_key":16,"name":{"en":"Skill"},"published":true}
+                    """);
+            Files.writeString(directory.resolve("groups.jsonl"), """
+                    {"_key":25,"categoryID":6,"name":{"en":"Frigate"},"published":true}
+                    {"_key":55,"categoryID":7,"name":{"en":"Projectile Weapon"},"published":true}
+                    {"_key":257,"categoryID":16,"name":{"en":"Spaceship Command"},"published":true}
+                    """);
+            Files.writeString(directory.resolve("dogmaAttributes.jsonl"), """
+                    {"_key":11,"name":"powerOutput","displayName":{"en":"Powergrid Output"},"published":true,"unitID":107}
+                    {"_key":12,"name":"lowSlots","displayName":{"en":"Low Slots"},"published":true}
+                    {"_key":13,"name":"medSlots","displayName":{"en":"Medium Slots"},"published":true}
+                    {"_key":14,"name":"hiSlots","displayName":{"en":"High Slots"},"published":true}
+                    {"_key":37,"name":"maxVelocity","displayName":{"en":"Maximum Velocity"},"published":true,"unitID":11}
+                    {"_key":48,"name":"cpuOutput","displayName":{"en":"CPU Output"},"published":true,"unitID":106}
+                    {"_key":109,"name":"kineticDamageResonance","displayName":{"en":"Kinetic Damage Resistance"},"published":true,"unitID":108}
+                    {"_key":182,"name":"requiredSkill1","displayName":{"en":"Primary Skill required"},"published":true,"unitID":116}
+                    {"_key":277,"name":"requiredSkill1Level","published":false}
+                    {"_key":1500,"name":"internalOnly","published":false}
+                    """);
+            Files.writeString(directory.resolve("types.jsonl"), """
+                    {"_key":587,"groupID":25,"name":{"en":"Rifter"},"published":true,"mass":1067000.0,"volume":27289.0,"capacity":140.0}
+                    {"_key":603,"groupID":25,"name":{"en":"Merlin"},"published":true}
+                    {"_key":2881,"groupID":55,"name":{"en":"200mm AutoCannon II"},"published":true}
+                    {"_key":9999,"groupID":25,"name":{"en":"Rifter Prototype"},"published":false}
+                    {"_key":3329,"groupID":257,"name":{"en":"Minmatar Frigate"},"published":true}
+                    """);
+            Files.writeString(directory.resolve("typeDogma.jsonl"), """
+                    {"_key":587,"dogmaAttributes":[{"attributeID":14,"value":4.0},{"attributeID":13,"value":3.0},\
+                    {"attributeID":12,"value":3.0},{"attributeID":48,"value":130.0},{"attributeID":11,"value":41.0},\
+                    {"attributeID":37,"value":365.0},{"attributeID":109,"value":0.6},{"attributeID":182,"value":3329.0},\
+                    {"attributeID":277,"value":1.0},{"attributeID":1500,"value":7.0}]}
+                    """);
+            return directory;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.evegpt;
+
+import com.evegpt.model.ChatRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** The streaming chat endpoint against a stub completions API that answers in server-sent events. */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class StreamingChatTests {
+
+    private static final List<String> CHUNKS = List.of("Fit ", "200mm ", "autocannons.");
+    private static final ParameterizedTypeReference<ServerSentEvent<JsonNode>> EVENT = new ParameterizedTypeReference<>() {};
+
+    private static final StubUpstreams upstreams = StubUpstreams.start()
+            .completions((body, response) -> body.toString().contains("broken")
+                    ? stream(response, Flux.concat(Flux.just(chunk("Fit ")),
+                            Flux.error(new IOException("upstream went away"))))
+                    : stream(response, Flux.fromIterable(CHUNKS).map(StreamingChatTests::chunk)
+                            .concatWithValues("{\"choices\":[],\"usage\":{\"prompt_tokens\":30,\"completion_tokens\":12,\"total_tokens\":42}}",
+                                    "[DONE]")));
+
+    @LocalServerPort
+    private int port;
+
+    @DynamicPropertySource
+    static void upstreamProperties(DynamicPropertyRegistry registry) {
+        upstreams.register(registry);
+        StubUpstreams.disableCaches(registry);
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstreams.stop();
+    }
+
+    @Test
+    void relaysDeltasInOrderThenOneDoneEvent() {
+        List<ServerSentEvent<JsonNode>> events = stream("How do I fit a Rifter?");
+
+        assertThat(events).extracting(ServerSentEvent::event).containsExactly("delta", "delta", "delta", "done");
+        assertThat(events.subList(0, 3)).extracting(event -> event.data().path("content").asText())
+                .containsExactlyElementsOf(CHUNKS);
+        JsonNode done = events.get(3).data();
+        assertThat(done.path("response").asText()).isEqualTo("Fit 200mm autocannons.");
+        assertThat(done.path("sources_consulted")).isNotEmpty();
+        assertThat(done.path("web_search_performed").asBoolean()).isTrue();
+        assertThat(done.path("tokens_used").asInt()).isEqualTo(42);
+        assertThat(done.path("stage_timings_ms").has("first_token")).isTrue();
+        assertThat(done.path("stage_timings_ms").has("completion")).isTrue();
+        assertThat(done.path("stage_timings_ms").has("retrieval")).isTrue();
+        assertThat(upstreams.lastCompletion().path("stream").asBoolean()).isTrue();
+    }
+
+    @Test
+    void reportsAFailureMidStreamAsAnErrorEvent() {
+        List<ServerSentEvent<JsonNode>> events = stream("Is the broken Rifter fit any good?");
+
+        assertThat(events).extracting(ServerSentEvent::event).containsExactly("delta", "error");
+        assertThat(events.get(0).data().path("content").asText()).isEqualTo("Fit ");
+        assertThat(events.get(1).data().path("message").asText()).isEqualTo("Error generating response");
+    }
+
+    private List<ServerSentEvent<JsonNode>> stream(String prompt) {
+        return WebClient.create("http://localhost:" + port).post().uri("/api/v1/chat/stream")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue(new ChatRequest(prompt))
+                .retrieve()
+                .bodyToFlux(EVENT)
+                .collectList()
+                .block(Duration.ofSeconds(10));
+    }
+
+    private static String chunk(String content) {
+        return "{\"choices\":[{\"index\":0,\"delta\":{\"content\":\"" + content + "\"}}]}";
+    }
+
+    private static Flux<Void> stream(HttpServerResponse response, Flux<String> data) {
+        return Flux.from(response.header("Content-Type", "text/event-stream")
+                .sendString(data.map(payload -> "data: " + payload + "\n\n")));
+    }
+}
@@ -0,0 +1,187 @@
+package com.evegpt;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.reactivestreams.Publisher;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A local stub of the wiki, the official site and the completions API for Spring Boot tests.
+ * By default the wiki search finds the Rifter, every wiki page says a sentence about its title,
+ * the official search finds nothing and every completion answers "Fly safe"; a test class swaps
+ * any of these before its first request. Requests are counted by kind ({@code wiki_search},
+ * {@code page}, {@code official_search}, {@code completion}) and completion bodies are kept.
+ */
+final class StubUpstreams {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<String, AtomicInteger> hits = new ConcurrentHashMap<>();
+    private final List<JsonNode> completions = new CopyOnWriteArrayList<>();
+    private volatile Function<String, Mono<String>> wikiSearch = query -> Mono.just(searchResults("Rifter"));
+    private volatile Function<String, Mono<String>> pages = title -> Mono.just(
+            "<div id=\"mw-content-text\">The " + title + " is used by Minmatar frigate pilots to fit autocannons.</div>");
+    private volatile Function<String, Mono<String>> officialSearch = query -> Mono.just("");
+    private volatile BiFunction<JsonNode, HttpServerResponse, Publisher<Void>> completion =
+            (body, response) -> reply(response, "Fly safe");
+    private final DisposableServer server;
+
+    private StubUpstreams() {
+        this.server = HttpServer.create()
+                .host("127.0.0.1")
+                .port(0)
+                .route(routes -> routes
+                        .get("/wiki/index.php", (request, response) -> {
+                            count("wiki_search");
+                            return response.sendString(wikiSearch.apply(request.uri()).map(StubUpstreams::page));
+                        })
+                        .get("/wiki/{title}", (request, response) -> {
+                            count("page");
+                            return response.sendString(pages.apply(request.param("title")).map(StubUpstreams::page));
+                        })
+                        .get("/search", (request, response) -> {
+                            count("official_search");
+                            return response.sendString(officialSearch.apply(request.uri()).map(StubUpstreams::page));
+                        })
+                        .post("/v1/chat/completions", (request, response) -> request.receive().aggregate().asString()
+                                .flatMap(body -> {
+                                    count("completion");
+                                    JsonNode json = read(body);
+                                    completions.add(json);
+                                    return Mono.from(completion.apply(json, response));
+                                })))
+                .bindNow();
+    }
+
+    static StubUpstreams start() {
+        return new StubUpstreams();
+    }
+
+    /** Answers wiki searches with the body {@code results} returns for the request URI. */
+    StubUpstreams wikiSearch(Function<String, Mono<String>> results) {
+        this.wikiSearch = results;
+        return this;
+    }
+
+    /** Answers wiki article requests with the body {@code content} returns for the title. */
+    StubUpstreams pages(Function<String, Mono<String>> content) {
+        this.pages = content;
+        return this;
+    }
+
+    /** Answers official site searches with the body {@code results} returns for the request URI. */
+    StubUpstreams officialSearch(Function<String, Mono<String>> results) {
+        this.officialSearch = results;
+        return this;
+    }
+
+    /** Answers completions with {@code handler}, given the parsed request body. */
+    StubUpstreams completions(BiFunction<JsonNode, HttpServerResponse, Publisher<Void>> handler) {
+        this.completion = handler;
+        return this;
+    }
+
+    /**
+     * Points the application at the stub, with the wiki index and the page store off so every
+     * search and page goes upstream.
+     */
+    void register(DynamicPropertyRegistry registry) {
+        String baseUrl = "http://127.0.0.1:" + server.port();
+        registry.add("openai.api.url", () -> baseUrl + "/v1/chat/completions");
+        registry.add("eve.sources.wiki.base-url", () -> baseUrl + "/wiki");
+        registry.add("eve.sources.official.base-url", () -> baseUrl);
+        registry.add("eve.sources.official.search-url", () -> baseUrl + "/search?q=");
+        registry.add("eve.sources.wiki.index.enabled", () -> "false");
+        registry.add("web.scraping.page-store.enabled", () -> "false");
+    }
+
+    /** Turns off the completion, semantic and page caches, so repeated questions reach the stub. */
+    static void disableCaches(DynamicPropertyRegistry registry) {
+        registry.add("openai.cache.enabled", () -> "false");
+        registry.add("chat.semantic-cache.enabled", () -> "false");
+        registry.add("web.scraping.cache.page.enabled", () -> "false");
+    }
+
+    int hits(String kind) {
+        AtomicInteger count = hits.get(kind);
+        return count != null ? count.get() : 0;
+    }
+
+    void resetHits() {
+        hits.clear();
+    }
+
+    /** Completion request bodies in arrival order. */
+    List<JsonNode> completions() {
+        return completions;
+    }
+
+    JsonNode lastCompletion() {
+        return completions.get(completions.size() - 1);
+    }
+
+    void stop() {
+        server.disposeNow();
+    }
+
+    /** A completion whose message is {@code content}. */
+    static Publisher<Void> reply(HttpServerResponse response, String content) {
+        String body = objectMapper.createObjectNode()
+                .set("choices", objectMapper.createArrayNode().add(objectMapper.createObjectNode()
+                        .set("message", objectMapper.createObjectNode().put("content", content))))
+                .toString();
+        return response.header("Content-Type", "application/json").sendString(Mono.just(body)).then();
+    }
+
+    /** A wiki search results list linking to the given titles. */
+    static String searchResults(String... titles) {
+        StringBuilder results = new StringBuilder();
+        for (String title : titles) {
+            results.append("<li class=\"mw-search-result\"><div class=\"mw-search-result-heading\"><a href=\"/")
+                    .append(title).append("\">").append(title.replace('_', ' ')).append("</a></div></li>");
+        }
+        return results.toString();
+    }
+
+    static String page(String body) {
+        return "<html><body>" + body + "</body></html>";
+    }
+
+    static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition within 5s").isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+
+    private void count(String kind) {
+        hits.computeIfAbsent(kind, key -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private static JsonNode read(String body) {
+        try {
+            return objectMapper.readTree(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
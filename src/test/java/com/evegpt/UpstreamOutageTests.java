@@ -0,0 +1,88 @@
+package com.evegpt;
+
+import com.evegpt.model.ChatRequest;
+import com.evegpt.service.UpstreamRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/** The OpenAI circuit breaker against a completions API that is out of quota and then fails outright. */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class UpstreamOutageTests {
+
+    private static final StubUpstreams upstreams = StubUpstreams.start()
+            .completions((body, response) -> body.toString().contains("quota")
+                    ? response.status(429).header("retry-after", "0").send()
+                    : response.status(500).send());
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private UpstreamRegistry upstreamRegistry;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @DynamicPropertySource
+    static void upstreamProperties(DynamicPropertyRegistry registry) {
+        upstreams.register(registry);
+        StubUpstreams.disableCaches(registry);
+        registry.add("openai.api.max-retries", () -> "0");
+        registry.add("upstreams.breaker.window-size", () -> "4");
+        registry.add("upstreams.breaker.min-calls", () -> "4");
+        registry.add("upstreams.breaker.open-duration", () -> "20000");
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstreams.stop();
+    }
+
+    @Test
+    void openBreakerShedsChatsWithRetryAfterButRateLimitsDoNotOpenIt() {
+        for (int i = 0; i < 4; i++) {
+            webTestClient.post().uri("/api/v1/chat")
+                    .bodyValue(directRequest("Over quota?"))
+                    .exchange()
+                    .expectStatus().isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        }
+        assertThat(upstreamRegistry.snapshots().get("openai").state()).isEqualTo("CLOSED");
+
+        for (int i = 0; i < 4; i++) {
+            webTestClient.post().uri("/api/v1/chat")
+                    .bodyValue(directRequest("Is the API down?"))
+                    .exchange()
+                    .expectStatus().isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        assertThat(upstreamRegistry.snapshots().get("openai").state()).isEqualTo("OPEN");
+        int completions = upstreams.hits("completion");
+        double fallbacks = meterRegistry.get("evegpt.chat.fallbacks").counter().count();
+
+        String retryAfter = webTestClient.post().uri("/api/v1/chat")
+                .bodyValue(new ChatRequest("How do I fit a Rifter?"))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE)
+                .returnResult(String.class).getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+
+        assertThat(Long.parseLong(retryAfter)).isBetween(1L, 20L);
+        // Neither the completion with sources nor a direct answer was sent
+        assertThat(upstreams.hits("completion")).isEqualTo(completions);
+        assertThat(meterRegistry.get("evegpt.chat.fallbacks").counter().count()).isEqualTo(fallbacks);
+    }
+
+    private static ChatRequest directRequest(String prompt) {
+        ChatRequest request = new ChatRequest(prompt);
+        request.setIncludeWebSearch(false);
+        return request;
+    }
+}
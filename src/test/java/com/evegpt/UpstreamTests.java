@@ -0,0 +1,115 @@
+package com.evegpt;
+
+import com.evegpt.config.UpstreamProperties;
+import com.evegpt.service.Upstream;
+import com.evegpt.service.UpstreamRegistry;
+import com.evegpt.service.UpstreamUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UpstreamTests {
+
+    private final UpstreamProperties properties = new UpstreamProperties();
+    private final UpstreamRegistry registry = new UpstreamRegistry(properties, new SimpleMeterRegistry());
+
+    UpstreamTests() {
+        properties.setMinSamples(5);
+        properties.setMinTimeout(10L);
+        properties.getBreaker().setWindowSize(4);
+        properties.getBreaker().setMinCalls(4);
+        properties.getBreaker().setOpenDuration(100L);
+        properties.getBreaker().setHalfOpenCalls(1);
+    }
+
+    @Test
+    void adaptsTimeoutToObservedLatency() {
+        Upstream upstream = registry.get("wiki", Duration.ofSeconds(30));
+        assertThat(upstream.timeout()).isEqualTo(Duration.ofSeconds(30));
+
+        for (int i = 0; i < 5; i++) {
+            upstream.call(() -> Mono.delay(Duration.ofMillis(20)).thenReturn("page")).block();
+        }
+
+        assertThat(upstream.timeout()).isBetween(Duration.ofMillis(30), Duration.ofMillis(500));
+        assertThatThrownBy(() -> upstream.call(() -> Mono.delay(Duration.ofSeconds(5))).block())
+                .hasCauseInstanceOf(java.util.concurrent.TimeoutException.class);
+    }
+
+    @Test
+    void opensOnFailuresAndClosesAfterSuccessfulTrial() throws InterruptedException {
+        Upstream upstream = registry.get("google", Duration.ofSeconds(1));
+        AtomicInteger attempts = new AtomicInteger();
+        Mono<String> failing = Mono.error(WebClientResponseException.create(503, "Unavailable", null, null, null));
+
+        for (int i = 0; i < 4; i++) {
+            upstream.call(() -> failing.doOnSubscribe(s -> attempts.incrementAndGet())).onErrorResume(e -> Mono.empty()).block();
+        }
+        assertThat(upstream.snapshot().state()).isEqualTo("OPEN");
+        assertThatThrownBy(() -> upstream.call(() -> failing.doOnSubscribe(s -> attempts.incrementAndGet())).block())
+                .isInstanceOf(UpstreamUnavailableException.class);
+        assertThat(attempts).hasValue(4);
+
+        Thread.sleep(150);
+        assertThat(upstream.call(() -> Mono.just("ok")).block()).isEqualTo("ok");
+        assertThat(upstream.snapshot().state()).isEqualTo("CLOSED");
+    }
+
+    @Test
+    void clientErrorsDoNotOpenTheBreaker() {
+        Upstream upstream = registry.get("eveonline", Duration.ofSeconds(1));
+        Mono<String> notFound = Mono.error(WebClientResponseException.create(HttpStatus.NOT_FOUND.value(), "Not Found", null, null, null));
+
+        for (int i = 0; i < 6; i++) {
+            upstream.call(() -> notFound).onErrorResume(e -> Mono.empty()).block();
+        }
+
+        assertThat(upstream.snapshot().state()).isEqualTo("CLOSED");
+    }
+
+    @Test
+    void doesNotHedgeCallsThatAlreadyFailed() throws InterruptedException {
+        Upstream upstream = registry.get("missing-wiki", Duration.ofSeconds(5));
+        for (int i = 0; i < 5; i++) {
+            upstream.call(() -> Mono.delay(Duration.ofMillis(10)).thenReturn("page")).block();
+        }
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> upstream.hedgedCall(() -> Mono.<String>error(
+                        WebClientResponseException.create(HttpStatus.NOT_FOUND.value(), "Not Found", null, null, null))
+                .doOnSubscribe(s -> attempts.incrementAndGet())).block())
+                .isInstanceOf(WebClientResponseException.NotFound.class);
+        Thread.sleep(100);
+
+        assertThat(attempts).hasValue(1);
+        assertThat(upstream.snapshot().hedges()).isZero();
+    }
+
+    @Test
+    void hedgesSlowCallsWithASecondRequest() {
+        properties.getHedge().setMaxRatio(1.0);
+        Upstream upstream = registry.get("slow-wiki", Duration.ofSeconds(5));
+        for (int i = 0; i < 5; i++) {
+            upstream.call(() -> Mono.delay(Duration.ofMillis(10)).thenReturn("page")).block();
+        }
+        AtomicInteger attempts = new AtomicInteger();
+
+        long start = System.nanoTime();
+        String page = upstream.hedgedCall(() -> attempts.incrementAndGet() == 1
+                ? Mono.delay(Duration.ofSeconds(2)).thenReturn("slow")
+                : Mono.just("hedged")).block();
+
+        assertThat(page).isEqualTo("hedged");
+        assertThat(attempts).hasValue(2);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+        assertThat(upstream.snapshot().hedges()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,93 @@
+package com.evegpt;
+
+import com.evegpt.config.EveSourcesProperties;
+import com.evegpt.config.WebScrapingProperties;
+import com.evegpt.model.WebSearchResult;
+import com.evegpt.service.MediaWikiDumpReader;
+import com.evegpt.service.PageStore;
+import com.evegpt.service.WikiIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WikiIndexTests {
+
+    private static final String WIKI = "https://wiki.eveuniversity.org";
+
+    private final WebScrapingProperties webScrapingProperties = new WebScrapingProperties();
+    private final WikiIndex wikiIndex = newIndex();
+
+    @Test
+    void ranksArticlesByRelevance() {
+        wikiIndex.indexPage(WIKI + "/Rifter", "The Rifter is a Minmatar frigate. Rifter fits use autocannons.");
+        wikiIndex.indexPage(WIKI + "/Autocannons", "Autocannons are short range projectile turrets used by Minmatar ships.");
+        wikiIndex.indexPage(WIKI + "/Wormholes", "Wormholes connect known space to unknown systems.");
+
+        List<WebSearchResult> results = wikiIndex.search("Rifter with autocannons?");
+
+        assertThat(results).extracting(WebSearchResult::getTitle).containsExactly("Rifter", "Autocannons");
+        assertThat(results).allMatch(result -> result.getSource().equals("eve-university"));
+    }
+
+    @Test
+    void returnsNothingWhenTooFewArticlesMatch() {
+        wikiIndex.indexPage(WIKI + "/Rifter", "The Rifter is a Minmatar frigate.");
+
+        assertThat(wikiIndex.search("how do wormholes work")).isEmpty();
+    }
+
+    @Test
+    void reindexesChangedPagesAndIgnoresNonArticles() {
+        wikiIndex.indexPage(WIKI + "/Rifter", "The Rifter is a Minmatar frigate.");
+        wikiIndex.indexPage(WIKI + "/Rifter", "The Rifter is a fast Minmatar frigate with projectile turrets.");
+        wikiIndex.indexPage(WIKI + "/index.php?search=rifter", "Search results for rifter");
+        wikiIndex.indexPage(WIKI + "/Category:Frigates", "Rifter, Slasher, Breacher");
+        wikiIndex.indexPage("https://www.eveonline.com/rifter", "Rifter");
+
+        assertThat(wikiIndex.size()).isEqualTo(1);
+        assertThat(wikiIndex.search("rifter")).singleElement()
+                .extracting(WebSearchResult::getContent).asString().contains("projectile turrets");
+    }
+
+    @Test
+    void readsArticlesFromMediaWikiDump(@TempDir Path directory) throws IOException {
+        Path dump = directory.resolve("dump.xml");
+        Files.writeString(dump, """
+                <mediawiki xmlns="http://www.mediawiki.org/xml/export-0.11/">
+                  <page><title>Rifter</title><ns>0</ns>
+                    <revision><text>{{ShipInfobox|race=Minmatar}}The '''Rifter''' is a [[Minmatar]] [[Frigate|frigate]].&lt;ref&gt;Patch notes&lt;/ref&gt;</text></revision>
+                  </page>
+                  <page><title>Frigates</title><ns>0</ns><redirect title="Frigate"/>
+                    <revision><text>#REDIRECT [[Frigate]]</text></revision>
+                  </page>
+                  <page><title>Template:ShipInfobox</title><ns>10</ns>
+                    <revision><text>{{{race}}}</text></revision>
+                  </page>
+                </mediawiki>
+                """);
+        List<MediaWikiDumpReader.Article> articles = new ArrayList<>();
+
+        int count = new MediaWikiDumpReader().read(dump, articles::add);
+
+        assertThat(count).isEqualTo(1);
+        assertThat(articles).singleElement().satisfies(article -> {
+            assertThat(article.title()).isEqualTo("Rifter");
+            assertThat(article.text()).isEqualTo("The Rifter is a Minmatar frigate.");
+        });
+    }
+
+    private WikiIndex newIndex() {
+        EveSourcesProperties eveSourcesProperties = new EveSourcesProperties();
+        eveSourcesProperties.getWiki().setBaseUrl(WIKI);
+        eveSourcesProperties.getWiki().getIndex().setMinResults(1);
+        return new WikiIndex(eveSourcesProperties, new PageStore(webScrapingProperties), new SimpleMeterRegistry());
+    }
+}